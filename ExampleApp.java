@@ -26,35 +26,39 @@ class Product extends Entity {
 
     public Product() {
         fields(name, price, category);
+        sketches(price, category);
     }
 }
 
 // Example: Adding a new entity is as simple as:
 // 1. Define the entity class extending Entity
 // 2. Register it in the Matte with .register("resource-name", () -> new EntityClass())
-// 
-// class Order extends Entity {
-//     final Field<Long> userId = field("userId", Long.class);
-//     final Field<String> status = field("status", String.class);
-//     final Field<Integer> total = field("total", Integer.class);
-//     
-//     public Order() {
-//         fields(userId, status, total);
-//     }
-// }
 //
-// Then just add: app.register("orders", () -> new Order());
+// userId holds ids of users: GET /api/orders?expand=userId embeds the user,
+// and /api/orders?userId=1 finds a user's orders through an index.
+class Order extends Entity {
+    final Field<Long> userId = field("userId", Long.class);
+    final Field<String> status = field("status", String.class);
+    final Field<Integer> total = field("total", Integer.class);
+
+    public Order() {
+        fields(userId, status, total);
+        indexes(reference(userId, "users"));
+    }
+}
 
 public class ExampleApp {
   public static void main(String[] args) throws IOException {
     // Create the app and register entities
     Matte app = new Matte(8080)
         .register("users", () -> new User())
-        .register("products", () -> new Product());
+        .register("products", () -> new Product())
+        .register("orders", () -> new Order());
 
     // Get repositories to add sample data
     Repository<User> userRepo = app.getRepository("users");
     Repository<Product> productRepo = app.getRepository("products");
+    Repository<Order> orderRepo = app.getRepository("orders");
 
     // Add sample users
     User user1 = new User();
@@ -80,6 +84,13 @@ public class ExampleApp {
     product2.category.set("Kitchen");
     productRepo.save(product2);
 
+    // Add a sample order for the first user
+    Order order1 = new Order();
+    order1.userId.set(user1.id.get());
+    order1.status.set("open");
+    order1.total.set(1014);
+    orderRepo.save(order1);
+
     System.out.println("Sample users created:");
     System.out.println(JsonSerializer.toJson(user1));
     System.out.println(JsonSerializer.toJson(user2));
@@ -0,0 +1,269 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Grouped count, sum, min, max and average over Integer and Long fields, as
+// in /_aggregate?groupBy=category&sum=price&count. One pass over the matches:
+// each group holds a single long[] of running totals, so numbers are added as
+// primitives and nothing is kept per entity. Partial results from parallel
+// workers merge group by group.
+final class Aggregation {
+    static final String[] METRICS = {"sum", "min", "max", "avg"};
+
+    private final Schema schema;
+    private final int[] groupBy;
+    private final boolean count;
+    // Numeric fields with any metric; each has n, sum, min and max slots
+    private final int[] fields;
+    // Per metric in METRICS order, indexes into fields
+    private final int[][] requested;
+
+    private Aggregation(Schema schema, int[] groupBy, boolean count, int[] fields, int[][] requested) {
+        this.schema = schema;
+        this.groupBy = groupBy;
+        this.count = count;
+        this.fields = fields;
+        this.requested = requested;
+    }
+
+    // metrics maps "sum", "min", "max" and "avg" to field names. Without any
+    // metric the count is returned.
+    static Aggregation compile(Schema schema, List<String> groupBy, boolean count, Map<String, List<String>> metrics) {
+        int[] groups = new int[groupBy.size()];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = schema.require(groupBy.get(i));
+        }
+        Set<Integer> fields = new LinkedHashSet<>();
+        List<List<Integer>> positions = new ArrayList<>();
+        for (String metric : METRICS) {
+            List<Integer> metricFields = new ArrayList<>();
+            for (String name : metrics.getOrDefault(metric, List.of())) {
+                int position = schema.require(name);
+                Class<?> type = schema.type(position);
+                if (type != Integer.class && type != Long.class) {
+                    throw new IllegalArgumentException("Cannot " + metric + " non-numeric field " + name);
+                }
+                fields.add(position);
+                if (!metricFields.contains(position)) metricFields.add(position);
+            }
+            positions.add(metricFields);
+        }
+        int[] numeric = fields.stream().mapToInt(Integer::intValue).toArray();
+        int[][] requested = new int[METRICS.length][];
+        boolean any = false;
+        for (int m = 0; m < METRICS.length; m++) {
+            List<Integer> metricFields = positions.get(m);
+            requested[m] = new int[metricFields.size()];
+            for (int i = 0; i < requested[m].length; i++) {
+                requested[m][i] = indexOf(numeric, metricFields.get(i));
+            }
+            any |= requested[m].length > 0;
+        }
+        return new Aggregation(schema, groups, count || !any, numeric, requested);
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    Partial newPartial() {
+        return new Partial();
+    }
+
+    // Running totals per group key: a field value, a List of values when
+    // grouping by several fields, or a single constant key without groupBy
+    final class Partial {
+        private final Map<Object, long[]> groups = new HashMap<>();
+
+        void add(Entity entity) {
+            long[] totals = groups.computeIfAbsent(key(entity), k -> newTotals());
+            totals[0]++;
+            for (int i = 0; i < fields.length; i++) {
+                Object value = schema.value(entity, fields[i]);
+                if (value == null) continue;
+                long x = ((Number) value).longValue();
+                int base = 1 + 4 * i;
+                totals[base]++;
+                totals[base + 1] += x;
+                if (x < totals[base + 2]) totals[base + 2] = x;
+                if (x > totals[base + 3]) totals[base + 3] = x;
+            }
+        }
+
+        void merge(Partial other) {
+            for (Map.Entry<Object, long[]> entry : other.groups.entrySet()) {
+                long[] totals = groups.get(entry.getKey());
+                if (totals == null) {
+                    groups.put(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                long[] more = entry.getValue();
+                totals[0] += more[0];
+                for (int base = 1; base < totals.length; base += 4) {
+                    totals[base] += more[base];
+                    totals[base + 1] += more[base + 1];
+                    totals[base + 2] = Math.min(totals[base + 2], more[base + 2]);
+                    totals[base + 3] = Math.max(totals[base + 3], more[base + 3]);
+                }
+            }
+        }
+
+        int size() {
+            return groups.size();
+        }
+
+        String toJson() {
+            return Aggregation.this.toJson(groups);
+        }
+    }
+
+    // {"groups":[{"category":"Kitchen","count":3,"sum":{"price":60}},...]},
+    // groups in key order with null keys last
+    String toJson(Map<Object, long[]> groups) {
+        List<Map.Entry<Object, long[]>> entries = new ArrayList<>(groups.entrySet());
+        // Without groupBy there is always exactly one group
+        if (groupBy.length == 0 && entries.isEmpty()) entries.add(Map.entry(Boolean.TRUE, newTotals()));
+        entries.sort((a, b) -> compareKeys(a.getKey(), b.getKey()));
+        StringBuilder json = new StringBuilder("{\"groups\":[");
+        for (int g = 0; g < entries.size(); g++) {
+            if (g > 0) json.append(',');
+            json.append('{');
+            Object key = entries.get(g).getKey();
+            long[] totals = entries.get(g).getValue();
+            boolean first = true;
+            for (int i = 0; i < groupBy.length; i++) {
+                if (!first) json.append(',');
+                first = false;
+                Object value = groupBy.length == 1 ? key : ((List<?>) key).get(i);
+                json.append('"').append(schema.name(groupBy[i])).append("\":");
+                appendValue(json, value);
+            }
+            if (count) {
+                if (!first) json.append(',');
+                first = false;
+                json.append("\"count\":").append(totals[0]);
+            }
+            for (int m = 0; m < METRICS.length; m++) {
+                if (requested[m].length == 0) continue;
+                if (!first) json.append(',');
+                first = false;
+                json.append('"').append(METRICS[m]).append("\":{");
+                for (int i = 0; i < requested[m].length; i++) {
+                    if (i > 0) json.append(',');
+                    int field = requested[m][i];
+                    json.append('"').append(schema.name(fields[field])).append("\":");
+                    appendMetric(json, m, totals, 1 + 4 * field);
+                }
+                json.append('}');
+            }
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private Object key(Entity entity) {
+        if (groupBy.length == 0) return Boolean.TRUE;
+        if (groupBy.length == 1) return schema.value(entity, groupBy[0]);
+        Object[] values = new Object[groupBy.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = schema.value(entity, groupBy[i]);
+        }
+        return Arrays.asList(values);
+    }
+
+    // Group key of a row in Schema order, as delivered to change listeners
+    Object key(Object[] row) {
+        if (groupBy.length == 0) return Boolean.TRUE;
+        if (groupBy.length == 1) return row[groupBy[0]];
+        Object[] values = new Object[groupBy.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row[groupBy[i]];
+        }
+        return Arrays.asList(values);
+    }
+
+    // Group key for explicit groupBy values, converted to the field types
+    Object groupKey(Object[] values) {
+        if (values.length != groupBy.length) {
+            throw new IllegalArgumentException("Expected " + groupBy.length + " group values, got " + values.length);
+        }
+        if (groupBy.length == 0) return Boolean.TRUE;
+        Object[] key = new Object[values.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = schema.coerce(groupBy[i], values[i]);
+        }
+        return key.length == 1 ? key[0] : Arrays.asList(key);
+    }
+
+    // Schema positions of the numeric fields; field i owns totals slots
+    // 1 + 4 * i (n, sum, min, max)
+    int[] fields() {
+        return fields;
+    }
+
+    // Whether min or max is requested for the i-th numeric field
+    boolean reportsExtremes(int field) {
+        return indexOf(requested[1], field) >= 0 || indexOf(requested[2], field) >= 0;
+    }
+
+    long[] newTotals() {
+        long[] totals = new long[1 + 4 * fields.length];
+        for (int base = 1; base < totals.length; base += 4) {
+            totals[base + 2] = Long.MAX_VALUE;
+            totals[base + 3] = Long.MIN_VALUE;
+        }
+        return totals;
+    }
+
+    // Sum of no values is 0; min, max and average of none are null
+    private static void appendMetric(StringBuilder json, int metric, long[] totals, int base) {
+        long n = totals[base];
+        if (metric == 0) {
+            json.append(totals[base + 1]);
+        } else if (n == 0) {
+            json.append("null");
+        } else if (metric == 1) {
+            json.append(totals[base + 2]);
+        } else if (metric == 2) {
+            json.append(totals[base + 3]);
+        } else {
+            json.append((double) totals[base + 1] / n);
+        }
+    }
+
+    private static void appendValue(StringBuilder json, Object value) {
+        if (value instanceof String) {
+            json.append('"').append(JsonSerializer.escape((String) value)).append('"');
+        } else {
+            json.append(value);
+        }
+    }
+
+    private int compareKeys(Object a, Object b) {
+        if (groupBy.length <= 1) return compareValues(a, b);
+        List<?> left = (List<?>) a;
+        List<?> right = (List<?>) b;
+        for (int i = 0; i < groupBy.length; i++) {
+            int c = compareValues(left.get(i), right.get(i));
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == b) return 0;
+        if (a == null) return 1;
+        if (b == null) return -1;
+        return ((Comparable) a).compareTo(b);
+    }
+}
@@ -0,0 +1,109 @@
+package io.matte;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// Equality index for fields with few distinct values (categories, flags):
+// one compressed bitmap of ids per value, plus a bitmap of every live id
+// so that negations can be answered as well. Repository combines the
+// bitmaps of several filters with AND/OR/AND-NOT and counts matches from
+// their cardinality without visiting entities.
+final class BitmapIndex extends EntityIndex {
+    private final String field;
+    private final int position;
+    private final Map<Object, RoaringBitmap> bitmaps = new HashMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    BitmapIndex(Schema schema, String field) {
+        this.field = field;
+        this.position = schema.require(field);
+    }
+
+    @Override
+    String describe() {
+        return "bitmap(" + field + ")";
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        Object oldValue = before == null ? null : before[position];
+        Object newValue = after == null ? null : after[position];
+        lock.writeLock().lock();
+        try {
+            if (before == null) all.add(id);
+            if (after == null) all.remove(id);
+            if (before != null && after != null && Objects.equals(oldValue, newValue)) return;
+            if (oldValue != null) {
+                RoaringBitmap ids = bitmaps.get(oldValue);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    bitmaps.remove(oldValue);
+                }
+            }
+            if (newValue != null) {
+                bitmaps.computeIfAbsent(newValue, v -> new RoaringBitmap()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    boolean supports(Condition condition) {
+        return condition instanceof Condition.Eq && ((Condition.Eq) condition).field.equals(field)
+            && ((Condition.Eq) condition).value != null;
+    }
+
+    @Override
+    long[] lookup(Condition condition) {
+        return supports(condition) ? withBitmap(condition, RoaringBitmap::toArray) : null;
+    }
+
+    @Override
+    long count(Condition condition) {
+        if (!supports(condition)) return -1;
+        lock.readLock().lock();
+        try {
+            RoaringBitmap ids = bitmaps.get(((Condition.Eq) condition).value);
+            return ids == null ? 0 : ids.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Applies the action to the ids matching an equality filter this index
+    // supports. The bitmap is lent under the read lock rather than copied, so
+    // the action must neither modify it nor keep it.
+    <R> R withBitmap(Condition condition, Function<RoaringBitmap, R> action) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap ids = bitmaps.get(((Condition.Eq) condition).value);
+            return action.apply(ids == null ? new RoaringBitmap() : ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Same for every id in the repository, the universe for negations
+    <R> R withAll(Function<RoaringBitmap, R> action) {
+        lock.readLock().lock();
+        try {
+            return action.apply(all);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long size() {
+        lock.readLock().lock();
+        try {
+            return all.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
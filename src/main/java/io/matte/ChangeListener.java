@@ -0,0 +1,9 @@
+package io.matte;
+
+// Receives every write to a Repository as a delta between two rows in Schema
+// order: before is null for inserts and after is null for deletes. Called
+// while the repository's write lock is held, so deltas arrive one at a time
+// and in commit order.
+interface ChangeListener {
+    void onChange(long id, Object[] before, Object[] after);
+}
@@ -0,0 +1,388 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Stores entities column by column: one primitive array per Integer/Long
+// field, bitsets for Booleans and nulls, and a reference array for Strings
+// and other types. A row costs a few bytes per field instead of an Entity,
+// its HashMap and one Field plus boxed value per attribute. Entities are
+// materialized through the factory only when read.
+//
+// Usage: new Matte().register("products", Product::new, ColumnarEntityStore::new)
+public class ColumnarEntityStore<T extends Entity> implements EntityStore<T> {
+    private static final int CHUNK = 1024;
+
+    private final EntityFactory<T> factory;
+    private final Schema schema;
+    private final Column[] columns;
+    private final StampedLock lock = new StampedLock();
+
+    // id -> row and row -> id; freed rows are reused before the table grows
+    private final LongLongHashMap rowsById = new LongLongHashMap();
+    private long[] idsByRow = new long[16];
+    private long[] liveRows = new long[1];
+    private int rowCount;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    public ColumnarEntityStore(EntityFactory<T> factory) {
+        this.factory = factory;
+        this.schema = Schema.of(factory.create());
+        this.columns = new Column[schema.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.forType(schema.type(i));
+            columns[i].ensureCapacity(idsByRow.length);
+        }
+    }
+
+    @Override
+    public T get(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T entity = read(id);
+                if (lock.validate(stamp)) return entity;
+            } catch (RuntimeException e) {
+                // Torn read while a writer grew the columns; retry under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private T read(long id) {
+        long row = rowsById.get(id, -1);
+        return row < 0 ? null : materialize((int) row);
+    }
+
+    private T materialize(int row) {
+        T entity = factory.create();
+        for (int i = 0; i < columns.length; i++) {
+            schema.set(entity, i, columns[i].get(row));
+        }
+        return entity;
+    }
+
+    @Override
+    public boolean copiesOnRead() {
+        return true;
+    }
+
+    @Override
+    public void put(long id, T entity) {
+        long stamp = lock.writeLock();
+        try {
+            long existing = rowsById.get(id, -1);
+            int row = existing >= 0 ? (int) existing : allocateRow(id);
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].set(row, schema.value(entity, i));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int allocateRow(long id) {
+        int row;
+        if (freeCount > 0) {
+            row = freeRows[--freeCount];
+        } else {
+            row = rowCount++;
+            if (row == idsByRow.length) {
+                int capacity = idsByRow.length * 2;
+                idsByRow = Arrays.copyOf(idsByRow, capacity);
+                for (Column column : columns) {
+                    column.ensureCapacity(capacity);
+                }
+            }
+            if ((row >>> 6) == liveRows.length) {
+                liveRows = Arrays.copyOf(liveRows, liveRows.length * 2);
+            }
+        }
+        idsByRow[row] = id;
+        Column.setBit(liveRows, row, true);
+        rowsById.put(id, row);
+        return row;
+    }
+
+    @Override
+    public boolean remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            long row = rowsById.remove(id, -1);
+            if (row < 0) return false;
+            for (Column column : columns) {
+                column.set((int) row, null);
+            }
+            Column.setBit(liveRows, (int) row, false);
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+            }
+            freeRows[freeCount++] = (int) row;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return rowsById.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Materializes rows a chunk at a time, so the action runs without the lock held
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        spliterator().forEachRemaining(action);
+    }
+
+    // Weakly consistent and splittable by row range. Rows added after the
+    // spliterator was created are not visited.
+    @Override
+    public Spliterator<T> spliterator() {
+        long stamp = lock.readLock();
+        try {
+            return new RowSpliterator(0, rowCount);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private final class RowSpliterator implements Spliterator<T> {
+        private final List<T> chunk = new ArrayList<>();
+        private int row;
+        private int end;
+        private int next;
+
+        RowSpliterator(int row, int end) {
+            this.row = row;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (next == chunk.size()) {
+                if (row == end) return false;
+                chunk.clear();
+                next = 0;
+                long stamp = lock.readLock();
+                try {
+                    int last = Math.min(end, row + CHUNK);
+                    for (; row < last; row++) {
+                        if (Column.bit(liveRows, row)) chunk.add(materialize(row));
+                    }
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            action.accept(chunk.get(next++));
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (end - row < 2 * CHUNK) return null;
+            int middle = (row + end) >>> 1;
+            Spliterator<T> upper = new RowSpliterator(middle, end);
+            end = middle;
+            return upper;
+        }
+
+        @Override
+        public long estimateSize() {
+            return chunk.size() - next + end - row;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+
+    // Visits every non-null value of an Integer or Long field without
+    // materializing entities or boxing, walking a single primitive array.
+    public void scanLong(String fieldName, LongConsumer action) {
+        int position = schema.indexOf(fieldName);
+        if (position < 0) throw new IllegalArgumentException("Unknown field: " + fieldName);
+        if (!(columns[position] instanceof NumericColumn)) {
+            throw new IllegalArgumentException("Field is not numeric: " + fieldName);
+        }
+        scan((NumericColumn) columns[position], action);
+    }
+
+    private void scan(NumericColumn column, LongConsumer action) {
+        long stamp = lock.readLock();
+        try {
+            for (int row = 0; row < rowCount; row++) {
+                if (Column.bit(liveRows, row) && column.isPresent(row)) {
+                    action.accept(column.getLong(row));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    abstract static class Column {
+        long[] present = new long[1];
+
+        static Column forType(Class<?> type) {
+            if (type == Integer.class) return new IntColumn();
+            if (type == Long.class) return new LongColumn();
+            if (type == Boolean.class) return new BooleanColumn();
+            return new ObjectColumn();
+        }
+
+        static boolean bit(long[] words, int index) {
+            return (words[index >>> 6] & (1L << index)) != 0;
+        }
+
+        static void setBit(long[] words, int index, boolean on) {
+            if (on) {
+                words[index >>> 6] |= 1L << index;
+            } else {
+                words[index >>> 6] &= ~(1L << index);
+            }
+        }
+
+        void ensureCapacity(int rows) {
+            int words = (rows + 63) >>> 6;
+            if (present.length < words) present = Arrays.copyOf(present, words);
+        }
+
+        boolean isPresent(int row) {
+            return bit(present, row);
+        }
+
+        void set(int row, Object value) {
+            setBit(present, row, value != null);
+            if (value != null) write(row, value);
+        }
+
+        Object get(int row) {
+            return isPresent(row) ? read(row) : null;
+        }
+
+        abstract void write(int row, Object value);
+
+        abstract Object read(int row);
+    }
+
+    // Integer and Long columns, readable as primitive longs
+    abstract static class NumericColumn extends Column {
+        abstract long getLong(int row);
+    }
+
+    static final class IntColumn extends NumericColumn {
+        int[] values = new int[0];
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            if (values.length < rows) values = Arrays.copyOf(values, rows);
+        }
+
+        @Override
+        void write(int row, Object value) {
+            values[row] = (Integer) value;
+        }
+
+        @Override
+        Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        long getLong(int row) {
+            return values[row];
+        }
+    }
+
+    static final class LongColumn extends NumericColumn {
+        long[] values = new long[0];
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            if (values.length < rows) values = Arrays.copyOf(values, rows);
+        }
+
+        @Override
+        void write(int row, Object value) {
+            values[row] = (Long) value;
+        }
+
+        @Override
+        Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        long getLong(int row) {
+            return values[row];
+        }
+    }
+
+    static final class BooleanColumn extends Column {
+        long[] bits = new long[1];
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            int words = (rows + 63) >>> 6;
+            if (bits.length < words) bits = Arrays.copyOf(bits, words);
+        }
+
+        @Override
+        void write(int row, Object value) {
+            setBit(bits, row, (Boolean) value);
+        }
+
+        @Override
+        Object read(int row) {
+            return bit(bits, row);
+        }
+    }
+
+    static final class ObjectColumn extends Column {
+        Object[] values = new Object[0];
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            if (values.length < rows) values = Arrays.copyOf(values, rows);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            super.set(row, value);
+            // Drop the reference so deleted strings can be collected
+            if (value == null) values[row] = null;
+        }
+
+        @Override
+        void write(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        Object read(int row) {
+            return values[row];
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Ordered index over several fields, e.g. (category, price): entries sort by
+// the first field, then the second, and so on, then by id. It answers
+// equality on a leading run of its fields plus an optional range on the next
+// one in O(log n + k).
+//
+// A partial index only holds entities matching its filter, and is used only
+// for queries that include that filter. A covering index also stores the
+// values of extra fields with each entry, so queries that read nothing else
+// are answered by Repository.select without loading any entity.
+final class CompositeIndex extends EntityIndex {
+    private static final Object[] NOTHING = new Object[0];
+
+    private final Schema schema;
+    private final String[] fields;
+    private final int[] positions;
+    private final int[] included;
+    private final Condition filter;
+    // Top-level conjuncts of the filter; a query must contain all of them
+    private final Set<Condition> filterParts;
+    private final Set<String> covered = new HashSet<>();
+    private final ConcurrentSkipListMap<Key, Object[]> entries = new ConcurrentSkipListMap<>();
+
+    CompositeIndex(Schema schema, String[] fields, String[] included, Condition filter) {
+        this.schema = schema;
+        this.fields = fields;
+        this.positions = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            positions[i] = schema.require(fields[i]);
+            if (!Comparable.class.isAssignableFrom(schema.type(positions[i]))) {
+                throw new IllegalArgumentException("Cannot create a composite index on " + fields[i]
+                    + " of type " + schema.type(positions[i]).getSimpleName());
+            }
+            covered.add(fields[i]);
+        }
+        this.included = new int[included.length];
+        for (int i = 0; i < included.length; i++) {
+            this.included[i] = schema.require(included[i]);
+            covered.add(included[i]);
+        }
+        covered.add("id");
+        this.filter = filter == null ? null : filter.bind(schema);
+        this.filterParts = this.filter == null ? Collections.emptySet() : new HashSet<>(conjuncts(this.filter));
+    }
+
+    // An entry's sort key; probes used as range bounds carry fewer values and
+    // sort before (LOW) or after (HIGH) every entry sharing their values
+    private static final class Key implements Comparable<Key> {
+        static final int ENTRY = 0;
+        static final int LOW = -1;
+        static final int HIGH = 1;
+
+        final Object[] values;
+        final long id;
+        final int side;
+
+        Key(Object[] values, long id, int side) {
+            this.values = values;
+            this.id = id;
+            this.side = side;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public int compareTo(Key other) {
+            int common = Math.min(values.length, other.values.length);
+            for (int i = 0; i < common; i++) {
+                Object a = values[i];
+                Object b = other.values[i];
+                if (a == b) continue;
+                if (a == null) return 1;
+                if (b == null) return -1;
+                int c = ((Comparable) a).compareTo(b);
+                if (c != 0) return c;
+            }
+            if (values.length != other.values.length) {
+                return values.length < other.values.length ? side(side) : -side(other.side);
+            }
+            if (side != other.side) return Integer.compare(side, other.side);
+            return Long.compare(id, other.id);
+        }
+
+        // Entries always carry every value, so the shorter key is a probe
+        private static int side(int side) {
+            return side == HIGH ? 1 : -1;
+        }
+    }
+
+    @Override
+    String describe() {
+        StringBuilder text = new StringBuilder("composite(").append(String.join(", ", fields)).append(")");
+        if (included.length > 0) {
+            text.append(" include(");
+            for (int i = 0; i < included.length; i++) {
+                if (i > 0) text.append(", ");
+                text.append(schema.name(included[i]));
+            }
+            text.append(")");
+        }
+        if (filter != null) text.append(" where ").append(filter);
+        return text.toString();
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        if (before != null && (filter == null || filter.test(schema, before))) {
+            entries.remove(key(before, id));
+        }
+        if (after != null && (filter == null || filter.test(schema, after))) {
+            Object[] values = NOTHING;
+            if (included.length > 0) {
+                values = new Object[included.length];
+                for (int i = 0; i < included.length; i++) {
+                    values[i] = after[included[i]];
+                }
+            }
+            entries.put(key(after, id), values);
+        }
+    }
+
+    @Override
+    boolean supports(Condition condition) {
+        return matches(condition) != null;
+    }
+
+    @Override
+    long[] lookup(Condition condition) {
+        NavigableMap<Key, Object[]> matches = matches(condition);
+        if (matches == null) return null;
+        long[] ids = new long[16];
+        int n = 0;
+        for (Key key : matches.keySet()) {
+            if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+            ids[n++] = key.id;
+        }
+        ids = Arrays.copyOf(ids, n);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // Rows of the requested field values for entities matching the condition,
+    // built from the index entries alone; null unless the index covers every
+    // field the condition and the projection read
+    List<Object[]> select(Condition condition, int[] projection) {
+        if (condition == null) return null;
+        for (int position : projection) {
+            if (!covered.contains(schema.name(position))) return null;
+        }
+        Set<String> read = new HashSet<>();
+        condition.collectFields(read);
+        if (!covered.containsAll(read)) return null;
+        NavigableMap<Key, Object[]> matches = matches(condition);
+        if (matches == null) return null;
+        List<Object[]> rows = new ArrayList<>();
+        Object[] row = new Object[schema.size()];
+        int idPosition = schema.indexOf("id");
+        for (Map.Entry<Key, Object[]> entry : matches.entrySet()) {
+            Key key = entry.getKey();
+            for (int i = 0; i < positions.length; i++) {
+                row[positions[i]] = key.values[i];
+            }
+            for (int i = 0; i < included.length; i++) {
+                row[included[i]] = entry.getValue()[i];
+            }
+            if (idPosition >= 0) row[idPosition] = key.id;
+            if (!condition.test(schema, row)) continue;
+            Object[] values = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                values[i] = row[projection[i]];
+            }
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Entries for the equality prefix and optional range the condition
+    // places on this index's fields, or null if it constrains none of them
+    private NavigableMap<Key, Object[]> matches(Condition condition) {
+        List<Condition> parts = conjuncts(condition);
+        if (!parts.containsAll(filterParts)) return null;
+        List<Object> prefix = new ArrayList<>();
+        Condition.Range range = null;
+        for (String field : fields) {
+            Object value = equalityOn(parts, field);
+            if (value != null) {
+                prefix.add(value);
+                continue;
+            }
+            range = rangeOn(parts, field);
+            break;
+        }
+        if (prefix.isEmpty() && range == null) return null;
+        Object[] values = prefix.toArray();
+        Key low = new Key(values, Long.MIN_VALUE, Key.LOW);
+        Key high = new Key(values, Long.MAX_VALUE, Key.HIGH);
+        if (range != null) {
+            Object[] bounded = Arrays.copyOf(values, values.length + 1);
+            if (range.lower != null) {
+                bounded[values.length] = range.lower;
+                low = new Key(bounded.clone(), Long.MIN_VALUE, range.lowerInclusive ? Key.LOW : Key.HIGH);
+            }
+            // Without an upper bound, stop before entries whose value is null
+            bounded[values.length] = range.upper;
+            high = new Key(bounded, Long.MIN_VALUE, range.upper != null && range.upperInclusive ? Key.HIGH : Key.LOW);
+        }
+        if (low.compareTo(high) > 0) return Collections.emptyNavigableMap();
+        return entries.subMap(low, true, high, true);
+    }
+
+    private Key key(Object[] row, long id) {
+        Object[] values = new Object[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            values[i] = row[positions[i]];
+        }
+        return new Key(values, id, Key.ENTRY);
+    }
+
+    private static Object equalityOn(List<Condition> parts, String field) {
+        for (Condition part : parts) {
+            if (part instanceof Condition.Eq && ((Condition.Eq) part).field.equals(field)) {
+                return ((Condition.Eq) part).value;
+            }
+        }
+        return null;
+    }
+
+    private static Condition.Range rangeOn(List<Condition> parts, String field) {
+        for (Condition part : parts) {
+            if (part instanceof Condition.Range && ((Condition.Range) part).field.equals(field)) {
+                return (Condition.Range) part;
+            }
+        }
+        return null;
+    }
+
+    private static List<Condition> conjuncts(Condition condition) {
+        return condition instanceof Condition.And
+            ? ((Condition.And) condition).conditions : Collections.singletonList(condition);
+    }
+}
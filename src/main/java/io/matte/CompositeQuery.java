@@ -0,0 +1,243 @@
+package io.matte;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+// Several reads answered in one round trip, the body of POST /api/_query:
+//
+//     {"users": "/api/users?fields=id,name&limit=20",
+//      "kitchen": {"resource": "products", "filter": "price < 50", "sort": "price", "limit": 10},
+//      "userCount": "/api/users/_count"}
+//
+// A query is either a GET path or an object naming the resource (and an
+// optional sub-path such as _count) whose other members become query
+// parameters. Each one is handled exactly like the same GET on its own, so
+// filters, projections, sorting, pages and aggregates all work. The queries
+// run concurrently and their results are written under the same names and in
+// the same order; a failing query reports its error in place of its result.
+final class CompositeQuery {
+    static final int MAX_QUERIES = 32;
+
+    private final Map<String, String> paths;
+
+    private CompositeQuery(Map<String, String> paths) {
+        this.paths = paths;
+    }
+
+    static CompositeQuery parse(String body) {
+        Map<String, String> paths = new LinkedHashMap<>();
+        Parser parser = new Parser(body == null ? "" : body);
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String name = parser.string();
+                parser.expect(':');
+                if (paths.put(name, parser.peek('{') ? path(parser.members()) : parser.string()) != null) {
+                    throw new IllegalArgumentException("Duplicate query name: " + name);
+                }
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.end();
+        if (paths.isEmpty()) throw new IllegalArgumentException("No queries given");
+        if (paths.size() > MAX_QUERIES) {
+            throw new IllegalArgumentException("Too many queries (max " + MAX_QUERIES + ")");
+        }
+        return new CompositeQuery(paths);
+    }
+
+    Map<String, String> paths() {
+        return paths;
+    }
+
+    // Starts every query on the executor, then writes the results in document
+    // order as each completes, so early results go out while later ones are
+    // still running. The executor must not be the one running the caller, or
+    // a burst of composite requests could wait on their own queued queries.
+    void execute(Function<String, EntityController<?>> controllers, Executor executor, Appendable out)
+            throws IOException {
+        List<CompletableFuture<String>> results = new ArrayList<>(paths.size());
+        for (String path : paths.values()) {
+            EntityController<?> controller = controllers.apply(resource(path));
+            results.add(controller == null
+                ? CompletableFuture.completedFuture(error("Not Found", 404))
+                : CompletableFuture.supplyAsync(() -> controller.handleRequest("GET", path, ""), executor));
+        }
+        out.append('{');
+        int i = 0;
+        for (String name : paths.keySet()) {
+            if (i > 0) out.append(',');
+            out.append('"').append(JsonSerializer.escape(name)).append("\":").append(result(results.get(i++)));
+            if (out instanceof Flushable) ((Flushable) out).flush();
+        }
+        out.append('}');
+    }
+
+    String execute(Function<String, EntityController<?>> controllers, Executor executor) {
+        StringBuilder json = new StringBuilder();
+        try {
+            execute(controllers, executor, json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    private static String result(CompletableFuture<String> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            return error("Internal Server Error", 500);
+        }
+    }
+
+    // "/api/users/_count?x=1" -> "users"; anything outside /api/ matches no resource
+    private static String resource(String path) {
+        if (!path.startsWith("/api/")) return "";
+        int end = path.length();
+        for (int i = "/api/".length(); i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' || c == '?') {
+                end = i;
+                break;
+            }
+        }
+        return path.substring("/api/".length(), end);
+    }
+
+    private static String path(Map<String, String> members) {
+        String resource = members.remove("resource");
+        if (resource == null || resource.isEmpty()) throw new IllegalArgumentException("Query without resource");
+        String sub = members.remove("path");
+        StringBuilder path = new StringBuilder("/api/").append(resource);
+        if (sub != null && !sub.isEmpty()) path.append('/').append(sub);
+        char separator = '?';
+        for (Map.Entry<String, String> member : members.entrySet()) {
+            path.append(separator).append(encode(member.getKey()));
+            if (!member.getValue().isEmpty()) path.append('=').append(encode(member.getValue()));
+            separator = '&';
+        }
+        return path.toString();
+    }
+
+    private static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8);
+    }
+
+    private static String error(String message, int status) {
+        return "{\"error\":\"" + JsonSerializer.escape(message) + "\",\"status\":" + status + "}";
+    }
+
+    // Just enough JSON for the query document: objects of strings, numbers,
+    // booleans and one level of nested objects
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> members() {
+            Map<String, String> members = new LinkedHashMap<>();
+            expect('{');
+            if (consume('}')) return members;
+            do {
+                String name = string();
+                expect(':');
+                String value = scalar();
+                if (value != null) members.put(name, value);
+            } while (consume(','));
+            expect('}');
+            return members;
+        }
+
+        // true stands for a bare flag such as count or explain, false leaves it out
+        String scalar() {
+            if (peek('"')) return string();
+            int start = pos;
+            while (pos < text.length() && "-+.eE0123456789truefalsn".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.equals("true")) return "";
+            if (literal.equals("false")) return null;
+            try {
+                Double.parseDouble(literal);
+            } catch (NumberFormatException e) {
+                throw error("Expected a string, number or boolean");
+            }
+            return literal;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') return value.toString();
+                if (c == '\\' && pos < text.length()) {
+                    c = text.charAt(pos++);
+                    switch (c) {
+                        case 'n': c = '\n'; break;
+                        case 't': c = '\t'; break;
+                        case 'r': c = '\r'; break;
+                        case 'b': c = '\b'; break;
+                        case 'f': c = '\f'; break;
+                        case 'u':
+                            if (pos + 4 > text.length()) throw error("Bad escape");
+                            try {
+                                c = (char) Integer.parseInt(text.substring(pos, pos + 4), 16);
+                            } catch (NumberFormatException e) {
+                                throw error("Bad escape");
+                            }
+                            pos += 4;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                value.append(c);
+            }
+            throw error("Unterminated string");
+        }
+
+        boolean peek(char c) {
+            skipSpaces();
+            return pos < text.length() && text.charAt(pos) == c;
+        }
+
+        boolean consume(char c) {
+            if (!peek(c)) return false;
+            pos++;
+            return true;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) throw error("Expected '" + c + "'");
+        }
+
+        void end() {
+            skipSpaces();
+            if (pos < text.length()) throw error("Unexpected '" + text.charAt(pos) + "'");
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid query document at position " + pos + ": " + message);
+        }
+    }
+}
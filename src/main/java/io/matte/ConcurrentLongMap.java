@@ -0,0 +1,240 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+// Thread-safe long-keyed map built from striped LongHashMap segments.
+// Reads use optimistic stamps, so they never write to shared memory and scale
+// with the number of cores; writes lock only the segment that owns the key.
+class ConcurrentLongMap<V> {
+    private static final int SEGMENT_BITS = 6;
+
+    private final Segment<V>[] segments;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ConcurrentLongMap() {
+        segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    private Segment<V> segmentFor(long key) {
+        return segments[segmentIndex(key)];
+    }
+
+    // Top bits pick the segment, LongHashMap uses the low bits for slots
+    private static int segmentIndex(long key) {
+        return (int) (LongHashMap.mix(key) >>> (64 - SEGMENT_BITS));
+    }
+
+    V get(long key) {
+        Segment<V> segment = segmentFor(key);
+        long stamp = segment.lock.tryOptimisticRead();
+        V value = segment.map.get(key);
+        if (segment.lock.validate(stamp)) {
+            return value;
+        }
+        stamp = segment.lock.readLock();
+        try {
+            return segment.map.get(key);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    // Looks up many keys with one optimistic read per segment rather than one
+    // per key, by bucketing the keys by segment first. values[i] receives the
+    // value for keys[i], or null.
+    void getAll(long[] keys, Object[] values) {
+        int[] starts = new int[segments.length + 1];
+        for (long key : keys) {
+            starts[segmentIndex(key) + 1]++;
+        }
+        for (int s = 0; s < segments.length; s++) {
+            starts[s + 1] += starts[s];
+        }
+        int[] order = new int[keys.length];
+        int[] next = starts.clone();
+        for (int i = 0; i < keys.length; i++) {
+            order[next[segmentIndex(keys[i])]++] = i;
+        }
+        for (int s = 0; s < segments.length; s++) {
+            if (starts[s] == starts[s + 1]) continue;
+            Segment<V> segment = segments[s];
+            long stamp = segment.lock.tryOptimisticRead();
+            for (int j = starts[s]; j < starts[s + 1]; j++) {
+                values[order[j]] = segment.map.get(keys[order[j]]);
+            }
+            if (segment.lock.validate(stamp)) continue;
+            stamp = segment.lock.readLock();
+            try {
+                for (int j = starts[s]; j < starts[s + 1]; j++) {
+                    values[order[j]] = segment.map.get(keys[order[j]]);
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    V put(long key, V value) {
+        Segment<V> segment = segmentFor(key);
+        long stamp = segment.lock.writeLock();
+        try {
+            V previous = segment.map.put(key, value);
+            segment.size = segment.map.size();
+            return previous;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    V remove(long key) {
+        Segment<V> segment = segmentFor(key);
+        long stamp = segment.lock.writeLock();
+        try {
+            V previous = segment.map.remove(key);
+            segment.size = segment.map.size();
+            return previous;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.map = new LongHashMap<>();
+                segment.size = 0;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    // Visits each segment under its read lock; entries written to other
+    // segments meanwhile may or may not be seen.
+    void forEach(Consumer<? super V> action) {
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                segment.map.forEach(action);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        forEach(values::add);
+        return values;
+    }
+
+    // Weakly consistent iteration without copying the map: walks one segment
+    // at a time, reading small chunks of its slot array under the read lock.
+    // Entries present throughout are seen exactly once; concurrent writes may
+    // or may not be. Splits by halving the remaining range of segments.
+    Spliterator<V> spliterator() {
+        return new ValueSpliterator(0, segments.length);
+    }
+
+    private final class ValueSpliterator implements Spliterator<V> {
+        private static final int CHUNK = 256;
+
+        private final Object[] buffer = new Object[CHUNK];
+        private int segment;
+        private int end;
+        private Object[] slots; // pinned slot array of the current segment
+        private int slot;
+        private int buffered;
+        private int next;
+
+        ValueSpliterator(int segment, int end) {
+            this.segment = segment;
+            this.end = end;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (next == buffered) {
+                if (!fill()) return false;
+            }
+            V value = (V) buffer[next];
+            buffer[next++] = null;
+            action.accept(value);
+            return true;
+        }
+
+        // Buffers the next chunk of live values; false at the end
+        private boolean fill() {
+            if (segment == end) return false;
+            Segment<V> current = segments[segment];
+            long stamp = current.lock.readLock();
+            try {
+                if (slots == null) {
+                    slots = current.map.slots();
+                    slot = 0;
+                }
+                buffered = 0;
+                next = 0;
+                int end = Math.min(slots.length, slot + CHUNK);
+                for (; slot < end; slot++) {
+                    Object value = slots[slot];
+                    if (LongHashMap.isLive(value)) buffer[buffered++] = value;
+                }
+            } finally {
+                current.lock.unlockRead(stamp);
+            }
+            if (slot == slots.length) {
+                slots = null;
+                segment++;
+            }
+            return true;
+        }
+
+        // Keeps the current segment and hands off the upper half of the rest
+        @Override
+        public Spliterator<V> trySplit() {
+            if (end - segment < 2) return null;
+            int middle = (segment + end + 1) >>> 1;
+            Spliterator<V> upper = new ValueSpliterator(middle, end);
+            end = middle;
+            return upper;
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = buffered - next;
+            for (int i = segment; i < end; i++) {
+                size += segments[i].size;
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+
+    private static final class Segment<V> {
+        final StampedLock lock = new StampedLock();
+        LongHashMap<V> map = new LongHashMap<>();
+        volatile int size;
+    }
+}
@@ -0,0 +1,505 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// A filter over an entity's fields, e.g. Condition.eq("category", "Kitchen").
+// Repository.find binds a condition to the entity schema, which checks the
+// field names and converts values to the field types, then answers it from
+// an index where one exists and by scanning otherwise.
+public abstract class Condition {
+
+    public static Condition eq(String field, Object value) {
+        return new Eq(field, value);
+    }
+
+    // Values between lower and upper; a null bound leaves that side open
+    public static Condition range(String field, Object lower, boolean lowerInclusive,
+                                  Object upper, boolean upperInclusive) {
+        return new Range(field, lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    public static Condition gt(String field, Object value) {
+        return range(field, value, false, null, false);
+    }
+
+    public static Condition gte(String field, Object value) {
+        return range(field, value, true, null, false);
+    }
+
+    public static Condition lt(String field, Object value) {
+        return range(field, null, false, value, false);
+    }
+
+    public static Condition lte(String field, Object value) {
+        return range(field, null, false, value, true);
+    }
+
+    // Inclusive on both ends
+    public static Condition between(String field, Object lower, Object upper) {
+        return range(field, lower, true, upper, true);
+    }
+
+    // Substring filters on String fields; case-sensitive
+    public static Condition contains(String field, String text) {
+        return new Match(field, text, Match.Mode.CONTAINS);
+    }
+
+    public static Condition startsWith(String field, String text) {
+        return new Match(field, text, Match.Mode.STARTS_WITH);
+    }
+
+    public static Condition endsWith(String field, String text) {
+        return new Match(field, text, Match.Mode.ENDS_WITH);
+    }
+
+    public static Condition and(Condition... conditions) {
+        return new And(Arrays.asList(conditions));
+    }
+
+    public static Condition or(Condition... conditions) {
+        return new Or(Arrays.asList(conditions));
+    }
+
+    public static Condition not(Condition condition) {
+        return new Not(condition);
+    }
+
+    public static Condition ne(String field, Object value) {
+        return not(eq(field, value));
+    }
+
+    // Field equal to any of the values
+    public static Condition in(String field, Object... values) {
+        Condition[] conditions = new Condition[values.length];
+        for (int i = 0; i < values.length; i++) {
+            conditions[i] = eq(field, values[i]);
+        }
+        return or(conditions);
+    }
+
+    abstract Condition bind(Schema schema);
+
+    abstract boolean test(Entity entity);
+
+    // Same as test(Entity), against a row of field values laid out by the schema
+    abstract boolean test(Schema schema, Object[] row);
+
+    // Adds the names of the fields this condition reads
+    abstract void collectFields(Set<String> fields);
+
+    static Object valueOf(Entity entity, String field) {
+        Field<?> f = entity.data.get(field);
+        return f == null ? null : f.get();
+    }
+
+    static final class Eq extends Condition {
+        final String field;
+        final Object value;
+
+        Eq(String field, Object value) {
+            this.field = field;
+            this.value = value;
+        }
+
+        @Override
+        Condition bind(Schema schema) {
+            return new Eq(field, schema.coerce(schema.require(field), value));
+        }
+
+        @Override
+        boolean test(Entity entity) {
+            return Objects.equals(value, valueOf(entity, field));
+        }
+
+        @Override
+        boolean test(Schema schema, Object[] row) {
+            return Objects.equals(value, row[schema.indexOf(field)]);
+        }
+
+        @Override
+        void collectFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Eq)) return false;
+            Eq eq = (Eq) other;
+            return field.equals(eq.field) && Objects.equals(value, eq.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * field.hashCode() + Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return field + " = " + value;
+        }
+    }
+
+    static final class Range extends Condition {
+        final String field;
+        final Object lower;
+        final boolean lowerInclusive;
+        final Object upper;
+        final boolean upperInclusive;
+        // Inclusive primitive bounds when both ends are Integer/Long or open,
+        // so numeric values are compared without going through Comparable
+        private final boolean integral;
+        private final long min;
+        private final long max;
+
+        Range(String field, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+            this.field = field;
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+            this.integral = (lower == null || isIntegral(lower)) && (upper == null || isIntegral(upper));
+            long from = lower == null ? Long.MIN_VALUE : integral ? ((Number) lower).longValue() : 0;
+            long to = upper == null ? Long.MAX_VALUE : integral ? ((Number) upper).longValue() : 0;
+            if (lower != null && !lowerInclusive) {
+                // An exclusive bound at the very top leaves nothing: min > max
+                if (from == Long.MAX_VALUE) to = Long.MIN_VALUE;
+                else from++;
+            }
+            if (upper != null && !upperInclusive) {
+                if (to == Long.MIN_VALUE) from = Long.MAX_VALUE;
+                else to--;
+            }
+            this.min = from;
+            this.max = to;
+        }
+
+        private static boolean isIntegral(Object value) {
+            return value instanceof Integer || value instanceof Long;
+        }
+
+        @Override
+        Condition bind(Schema schema) {
+            int position = schema.require(field);
+            if (!Comparable.class.isAssignableFrom(schema.type(position))) {
+                throw new IllegalArgumentException("Field " + field + " does not support range filters");
+            }
+            return new Range(field, schema.coerce(position, lower), lowerInclusive,
+                schema.coerce(position, upper), upperInclusive);
+        }
+
+        @Override
+        boolean test(Entity entity) {
+            return matches(valueOf(entity, field));
+        }
+
+        @Override
+        boolean test(Schema schema, Object[] row) {
+            return matches(row[schema.indexOf(field)]);
+        }
+
+        @Override
+        void collectFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        boolean matches(Object value) {
+            if (value == null) return false;
+            if (integral && isIntegral(value)) {
+                long v = ((Number) value).longValue();
+                return v >= min && v <= max;
+            }
+            if (lower != null) {
+                int c = ((Comparable) value).compareTo(lower);
+                if (c < 0 || (c == 0 && !lowerInclusive)) return false;
+            }
+            if (upper != null) {
+                int c = ((Comparable) value).compareTo(upper);
+                if (c > 0 || (c == 0 && !upperInclusive)) return false;
+            }
+            return true;
+        }
+
+        // Inclusiveness of an open side does not matter
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Range)) return false;
+            Range range = (Range) other;
+            return field.equals(range.field)
+                && Objects.equals(lower, range.lower) && (lower == null || lowerInclusive == range.lowerInclusive)
+                && Objects.equals(upper, range.upper) && (upper == null || upperInclusive == range.upperInclusive);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, lower, lower != null && lowerInclusive, upper, upper != null && upperInclusive);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            if (lower != null) text.append(field).append(lowerInclusive ? " >= " : " > ").append(lower);
+            if (lower != null && upper != null) text.append(" and ");
+            if (upper != null) text.append(field).append(upperInclusive ? " <= " : " < ").append(upper);
+            return text.length() == 0 ? field + " is not null" : text.toString();
+        }
+    }
+
+    static final class Match extends Condition {
+        enum Mode { CONTAINS, STARTS_WITH, ENDS_WITH }
+
+        final String field;
+        final String text;
+        final Mode mode;
+
+        Match(String field, String text, Mode mode) {
+            this.field = field;
+            this.text = text;
+            this.mode = mode;
+        }
+
+        @Override
+        Condition bind(Schema schema) {
+            if (schema.type(schema.require(field)) != String.class) {
+                throw new IllegalArgumentException("Field " + field + " does not support substring filters");
+            }
+            if (text == null) throw new IllegalArgumentException("Missing substring for field " + field);
+            return this;
+        }
+
+        @Override
+        boolean test(Entity entity) {
+            return matches(valueOf(entity, field));
+        }
+
+        @Override
+        boolean test(Schema schema, Object[] row) {
+            return matches(row[schema.indexOf(field)]);
+        }
+
+        @Override
+        void collectFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        boolean matches(Object value) {
+            if (!(value instanceof String)) return false;
+            String string = (String) value;
+            switch (mode) {
+                case STARTS_WITH:
+                    return string.startsWith(text);
+                case ENDS_WITH:
+                    return string.endsWith(text);
+                case CONTAINS:
+                default:
+                    return string.contains(text);
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Match)) return false;
+            Match match = (Match) other;
+            return field.equals(match.field) && Objects.equals(text, match.text) && mode == match.mode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, text, mode);
+        }
+
+        @Override
+        public String toString() {
+            switch (mode) {
+                case STARTS_WITH:
+                    return field + " like '" + text + "%'";
+                case ENDS_WITH:
+                    return field + " like '%" + text + "'";
+                case CONTAINS:
+                default:
+                    return field + " like '%" + text + "%'";
+            }
+        }
+    }
+
+    static final class And extends Condition {
+        final List<Condition> conditions;
+
+        And(List<Condition> conditions) {
+            this.conditions = conditions;
+        }
+
+        @Override
+        Condition bind(Schema schema) {
+            List<Condition> bound = new ArrayList<>(conditions.size());
+            for (Condition condition : conditions) {
+                bound.add(condition.bind(schema));
+            }
+            return new And(bound);
+        }
+
+        @Override
+        boolean test(Entity entity) {
+            for (Condition condition : conditions) {
+                if (!condition.test(entity)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        boolean test(Schema schema, Object[] row) {
+            for (Condition condition : conditions) {
+                if (!condition.test(schema, row)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        void collectFields(Set<String> fields) {
+            for (Condition condition : conditions) {
+                condition.collectFields(fields);
+            }
+        }
+
+        // Operand order does not change the result
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof And)) return false;
+            List<Condition> others = ((And) other).conditions;
+            return conditions.containsAll(others) && others.containsAll(conditions);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (Condition condition : conditions) {
+                hash += condition.hashCode();
+            }
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("(");
+            for (int i = 0; i < conditions.size(); i++) {
+                if (i > 0) text.append(" and ");
+                text.append(conditions.get(i));
+            }
+            return text.append(")").toString();
+        }
+    }
+
+    static final class Or extends Condition {
+        final List<Condition> conditions;
+
+        Or(List<Condition> conditions) {
+            this.conditions = conditions;
+        }
+
+        @Override
+        Condition bind(Schema schema) {
+            List<Condition> bound = new ArrayList<>(conditions.size());
+            for (Condition condition : conditions) {
+                bound.add(condition.bind(schema));
+            }
+            return new Or(bound);
+        }
+
+        @Override
+        boolean test(Entity entity) {
+            for (Condition condition : conditions) {
+                if (condition.test(entity)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        boolean test(Schema schema, Object[] row) {
+            for (Condition condition : conditions) {
+                if (condition.test(schema, row)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        void collectFields(Set<String> fields) {
+            for (Condition condition : conditions) {
+                condition.collectFields(fields);
+            }
+        }
+
+        // Operand order does not change the result
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Or)) return false;
+            List<Condition> others = ((Or) other).conditions;
+            return conditions.containsAll(others) && others.containsAll(conditions);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 2;
+            for (Condition condition : conditions) {
+                hash += condition.hashCode();
+            }
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("(");
+            for (int i = 0; i < conditions.size(); i++) {
+                if (i > 0) text.append(" or ");
+                text.append(conditions.get(i));
+            }
+            return text.append(")").toString();
+        }
+    }
+
+    static final class Not extends Condition {
+        final Condition condition;
+
+        Not(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        Condition bind(Schema schema) {
+            return new Not(condition.bind(schema));
+        }
+
+        @Override
+        boolean test(Entity entity) {
+            return !condition.test(entity);
+        }
+
+        @Override
+        boolean test(Schema schema, Object[] row) {
+            return !condition.test(schema, row);
+        }
+
+        @Override
+        void collectFields(Set<String> fields) {
+            condition.collectFields(fields);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Not && condition.equals(((Not) other).condition);
+        }
+
+        @Override
+        public int hashCode() {
+            return ~condition.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "not " + condition;
+        }
+    }
+}
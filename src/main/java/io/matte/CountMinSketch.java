@@ -0,0 +1,101 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Approximate frequency of each value of a field in fixed memory. A value
+// increments one counter in each of DEPTH rows, picked by independent hashes,
+// and its count is read as the smallest of them: collisions can only add, so
+// this overcounts by at most 2N/WIDTH with high probability. Counters go down
+// again on removal. The values that were most frequent when last added are
+// kept as heavy-hitter candidates and re-estimated when read.
+final class CountMinSketch {
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 2048;
+    static final int CANDIDATES = 64;
+
+    private final long[] counters = new long[DEPTH * WIDTH];
+    // Candidate value -> estimate when it was last written
+    private final Map<Object, Long> candidates = new ConcurrentHashMap<>();
+    // Smallest estimate among the candidates, to skip most non-candidates
+    private long floor;
+
+    void add(Object value) {
+        long estimate = update(value, 1);
+        if (candidates.containsKey(value) || candidates.size() < CANDIDATES) {
+            candidates.put(value, estimate);
+            if (candidates.size() == CANDIDATES) floor = smallestCandidate();
+        } else if (estimate > floor) {
+            Object smallest = null;
+            long least = Long.MAX_VALUE;
+            for (Map.Entry<Object, Long> candidate : candidates.entrySet()) {
+                if (candidate.getValue() < least) {
+                    least = candidate.getValue();
+                    smallest = candidate.getKey();
+                }
+            }
+            candidates.remove(smallest);
+            candidates.put(value, estimate);
+            floor = smallestCandidate();
+        }
+    }
+
+    void remove(Object value) {
+        long estimate = update(value, -1);
+        if (candidates.containsKey(value)) {
+            if (estimate <= 0) {
+                candidates.remove(value);
+            } else {
+                candidates.put(value, estimate);
+                floor = Math.min(floor, estimate);
+            }
+        }
+    }
+
+    // Applies the delta in every row and returns the new estimate
+    private long update(Object value, int delta) {
+        long hash = HyperLogLog.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[slot(hash, row)] += delta);
+        }
+        return estimate;
+    }
+
+    // Kirsch-Mitzenmacher: the row hashes are combined from the two halves
+    // of one 64-bit hash
+    private static int slot(long hash, int row) {
+        int column = (((int) hash + row * (int) (hash >>> 32)) & Integer.MAX_VALUE) % WIDTH;
+        return row * WIDTH + column;
+    }
+
+    private long smallestCandidate() {
+        long least = Long.MAX_VALUE;
+        for (long estimate : candidates.values()) {
+            least = Math.min(least, estimate);
+        }
+        return least;
+    }
+
+    long estimate(Object value) {
+        long hash = HyperLogLog.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[slot(hash, row)]);
+        }
+        return Math.max(0, estimate);
+    }
+
+    // Up to k most frequent values with their estimated counts, most frequent first
+    List<Map.Entry<Object, Long>> top(int k) {
+        List<Map.Entry<Object, Long>> top = new ArrayList<>();
+        for (Object value : candidates.keySet()) {
+            long estimate = estimate(value);
+            if (estimate > 0) top.add(Map.entry(value, estimate));
+        }
+        top.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return top.size() > k ? top.subList(0, k) : top;
+    }
+}
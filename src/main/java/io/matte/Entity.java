@@ -2,9 +2,13 @@ package io.matte;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
 
 public class Entity {
     final Map<Object, Field<?>> data = new HashMap<>();
+    final List<IndexDefinition> indexes = new ArrayList<>();
+    final List<String> sketches = new ArrayList<>();
     public final Field<Long> id = field("id", Long.class);
 
     public Entity() {
@@ -21,4 +25,54 @@ public class Entity {
             data.put(field.fieldName(), field);
         }
     }
+
+    protected static IndexDefinition hashIndex(Field<?> field) {
+        return IndexDefinition.hash(field);
+    }
+
+    protected static IndexDefinition uniqueIndex(Field<?> field) {
+        return IndexDefinition.unique(field);
+    }
+
+    protected static IndexDefinition sortedIndex(Field<?> field) {
+        return IndexDefinition.sorted(field);
+    }
+
+    protected static IndexDefinition textIndex(Field<?>... fields) {
+        return IndexDefinition.text(fields);
+    }
+
+    protected static IndexDefinition trigramIndex(Field<?> field) {
+        return IndexDefinition.trigram(field);
+    }
+
+    protected static IndexDefinition prefixIndex(Field<?> field) {
+        return IndexDefinition.prefix(field);
+    }
+
+    protected static IndexDefinition bitmapIndex(Field<?> field) {
+        return IndexDefinition.bitmap(field);
+    }
+
+    protected static IndexDefinition compositeIndex(Field<?>... fields) {
+        return IndexDefinition.composite(fields);
+    }
+
+    protected static IndexDefinition reference(Field<?> field, String resource) {
+        return IndexDefinition.reference(field, resource);
+    }
+
+    protected void indexes(IndexDefinition... definitions) {
+        for (IndexDefinition definition : definitions) {
+            indexes.add(definition);
+        }
+    }
+
+    // Fields with approximate distinct counts, quantiles and most frequent
+    // values at /_stats, maintained on every write in fixed memory
+    protected void sketches(Field<?>... fields) {
+        for (Field<?> field : fields) {
+            sketches.add(field.fieldName().toString());
+        }
+    }
 }
@@ -1,28 +1,94 @@
 package io.matte;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class EntityController<T extends Entity> {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PROJECTIONS = 64;
+    // A live query with more unread changes than this is dropped, and one not
+    // polled for this long is closed
+    private static final int MAX_PENDING_CHANGES = 10_000;
+    private static final long LIVE_IDLE_TIMEOUT_MS = 5 * 60_000;
+    private static final int MAX_MGET_IDS = 10_000;
+
     private final Repository<T> repository;
     private final String resourceName;
     private final String basePath;
     private final EntityFactory<T> entityFactory;
+    // Other resources by name, for ?expand= on reference fields
+    private final Function<String, Repository<?>> repositories;
+    // Compiled ?fields= projections by parameter text, least recently used evicted
+    private final Map<String, Projection> projections = Collections.synchronizedMap(
+        new LinkedHashMap<String, Projection>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Projection> eldest) {
+                return size() > MAX_CACHED_PROJECTIONS;
+            }
+        });
+
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong subscriptionIds = new AtomicLong(1);
 
     public EntityController(Repository<T> repository, String resourceName, EntityFactory<T> entityFactory) {
+        this(repository, resourceName, entityFactory, name -> null);
+    }
+
+    public EntityController(Repository<T> repository, String resourceName, EntityFactory<T> entityFactory,
+                            Function<String, Repository<?>> repositories) {
         this.repository = repository;
         this.resourceName = resourceName;
         this.basePath = "/api/" + resourceName;
         this.entityFactory = entityFactory;
+        this.repositories = repositories;
     }
 
+    // path may carry a raw query string, e.g. /api/products?category=Kitchen
     public String handleRequest(String method, String path, String body) {
+        String query = null;
+        int queryStart = path.indexOf('?');
+        if (queryStart >= 0) {
+            query = path.substring(queryStart + 1);
+            path = path.substring(0, queryStart);
+        }
         try {
             if (method.equals("GET") && path.equals(basePath)) {
-                return getAll();
+                return getAll(QueryString.parse(query));
+            } else if (method.equals("GET") && path.equals(basePath + "/_count")) {
+                Condition condition = conditionFrom(QueryString.parse(query));
+                long count = condition == null ? repository.count() : repository.count(condition);
+                return "{\"count\":" + count + "}";
+            } else if (method.equals("GET") && path.equals(basePath + "/_suggest")) {
+                return suggest(QueryString.parse(query));
+            } else if (method.equals("GET") && path.equals(basePath + "/_aggregate")) {
+                return aggregate(QueryString.parse(query));
+            } else if (method.equals("GET") && path.equals(basePath + "/_stats")) {
+                return stats(QueryString.parse(query));
+            } else if (method.equals("GET") && path.equals(basePath + "/_views")) {
+                return views();
+            } else if (method.equals("GET") && path.startsWith(basePath + "/_views/")) {
+                return view(path.substring(basePath.length() + "/_views/".length()));
+            } else if (method.equals("POST") && path.equals(basePath + "/_mget")) {
+                return multiGet(idsFromBody(body), projectionFrom(QueryString.parse(query)));
+            } else if (method.equals("POST") && path.equals(basePath + "/_live")) {
+                return subscribe(QueryString.parse(query));
+            } else if (method.equals("GET") && path.startsWith(basePath + "/_live/")) {
+                return poll(path.substring(basePath.length() + "/_live/".length()));
+            } else if (method.equals("DELETE") && path.startsWith(basePath + "/_live/")) {
+                return unsubscribe(path.substring(basePath.length() + "/_live/".length()));
             } else if (method.equals("GET") && path.startsWith(basePath + "/")) {
                 String idStr = path.substring(basePath.length() + 1);
-                return getById(Long.parseLong(idStr));
+                return getById(Long.parseLong(idStr), projectionFrom(QueryString.parse(query)));
             } else if (method.equals("POST") && path.equals(basePath)) {
                 return create(body);
             } else if (method.equals("PUT") && path.startsWith(basePath + "/")) {
@@ -36,31 +102,461 @@ public class EntityController<T extends Entity> {
             }
         } catch (NumberFormatException e) {
             return errorResponse("Invalid ID format", 400);
+        } catch (UniqueConstraintException e) {
+            return errorResponse(e.getMessage(), 409);
+        } catch (IllegalArgumentException e) {
+            return errorResponse(e.getMessage(), 400);
         } catch (Exception e) {
             return errorResponse("Internal Server Error: " + e.getMessage(), 500);
         }
     }
 
-    private String getAll() {
-        List<T> entities = repository.findAll();
+    private String getAll(Map<String, List<String>> params) {
+        if (params.containsKey("ids")) return multiGet(listParam(params, "ids"), projectionFrom(params));
+        Condition condition = conditionFrom(params);
+        // ?explain returns the query plan instead of the results
+        if (params.containsKey("explain")) return repository.explain(condition);
+        Projection projection = projectionFrom(params);
+        List<T> entities;
+        if (params.containsKey("q")) {
+            // Ranked full-text search, best match first
+            entities = repository.search(params.get("q").get(0), condition, intParam(params, "limit", 10));
+        } else if (params.containsKey("limit") || params.containsKey("cursor")) {
+            return page(params, condition, projection);
+        } else if (params.containsKey("sort") || params.containsKey("offset")) {
+            entities = ordered(params, condition, null).list();
+        } else {
+            entities = condition == null ? repository.findAll() : repository.find(condition);
+        }
+        return toJsonArray(entities, projection);
+    }
+
+    // ?limit=20 returns {"items":[...],"next":"<cursor>"}; pass the cursor back
+    // with the same filters for the following page (next is null on the last).
+    // A page reads only about limit entities when it is in id order or
+    // ordered by a field with a sorted index; other sorts select the page with
+    // a bounded heap, and offset skips entities one by one. The cursor already
+    // marks where the next page starts, so offset only applies to the first.
+    private String page(Map<String, List<String>> params, Condition condition, Projection projection) {
+        int limit = intParam(params, "limit", DEFAULT_PAGE_SIZE);
+        if (limit < 1) throw new IllegalArgumentException("Parameter limit must be at least 1");
+        String[] cursor = params.containsKey("cursor") ? decodeCursor(params.get("cursor").get(0)) : null;
+        Query<T> query = ordered(params, condition, cursor).limit(limit + 1L);
+        List<T> entities = query.list();
+        String next = null;
+        if (entities.size() > limit) {
+            entities = entities.subList(0, limit);
+            next = encodeCursor(sortParam(params, cursor), entities.get(limit - 1));
+        }
+        return "{\"items\":" + toJsonArray(entities, projection) + ",\"next\":"
+            + (next == null ? "null" : "\"" + next + "\"") + "}";
+    }
+
+    // ?sort=price,-name orders by price, then by name descending; id by default
+    private Query<T> ordered(Map<String, List<String>> params, Condition condition, String[] cursor) {
+        Schema schema = repository.schema();
+        if (schema == null) return repository.query();
+        Sort sort = Sort.parse(schema, sortParam(params, cursor));
+        Query<T> query = repository.query().where(condition).skip(cursor == null ? intParam(params, "offset", 0) : 0);
+        for (int i = 0; i < sort.size(); i++) {
+            query.thenBy(sort.field(i), sort.descending(i));
+        }
+        if (cursor != null) {
+            if (cursor.length != sort.size() + 2) throw new IllegalArgumentException("Invalid cursor");
+            try {
+                query.after(Arrays.copyOfRange(cursor, 2, cursor.length), Long.parseLong(cursor[1]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        return query;
+    }
+
+    private String sortParam(Map<String, List<String>> params, String[] cursor) {
+        String sort = params.containsKey("sort") ? params.get("sort").get(0) : null;
+        if (cursor == null) return sort == null ? "id" : sort;
+        if (sort != null && !sort.equals(cursor[0])) throw new IllegalArgumentException("Cursor does not match sort " + sort);
+        return cursor[0];
+    }
+
+    // The cursor is the sort and the id and sort values of the last entity of
+    // a page, one per line, base64url-encoded so clients treat it as opaque
+    private String encodeCursor(String spec, T last) {
+        StringBuilder key = new StringBuilder(spec).append('\n').append(last.id.get());
+        for (Object value : Sort.parse(repository.schema(), spec).key(last)) {
+            key.append('\n');
+            if (value != null) {
+                key.append('=').append(value.toString().replace("\\", "\\\\").replace("\n", "\\n"));
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Sort, id, then the sort values (null when absent)
+    private static String[] decodeCursor(String token) {
+        try {
+            String[] key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", -1);
+            if (key.length < 3) throw new IllegalArgumentException("Invalid cursor");
+            for (int i = 2; i < key.length; i++) {
+                if (key[i].isEmpty()) {
+                    key[i] = null;
+                } else if (key[i].startsWith("=")) {
+                    key[i] = unescape(key[i].substring(1));
+                } else {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+            }
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static String unescape(String value) {
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                c = value.charAt(++i) == 'n' ? '\n' : value.charAt(i);
+            }
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    // Autocomplete: /_suggest?field=name&prefix=jo&limit=5
+    private String suggest(Map<String, List<String>> params) {
+        String field = requiredParam(params, "field");
+        String prefix = requiredParam(params, "prefix");
+        return toJsonArray(repository.suggest(field, prefix, intParam(params, "limit", 10)));
+    }
+
+    // Grouped metrics over the entities matching any filters given alongside:
+    // /_aggregate?groupBy=category&sum=price&avg=price&count (also min, max)
+    private String aggregate(Map<String, List<String>> params) {
+        Schema schema = repository.schema();
+        if (schema == null) return "{\"groups\":[]}";
+        Map<String, List<String>> metrics = new HashMap<>();
+        for (String metric : Aggregation.METRICS) {
+            metrics.put(metric, listParam(params, metric));
+        }
+        Aggregation aggregation = Aggregation.compile(schema, listParam(params, "groupBy"), params.containsKey("count"), metrics);
+        return repository.aggregate(aggregation, conditionFrom(params)).toJson();
+    }
+
+    // Sketch-based estimates for fields declared with sketches(...), e.g.
+    // /_stats?field=price&quantiles=0.5,0.99&top=3
+    private String stats(Map<String, List<String>> params) {
+        Sketches sketches = repository.sketches();
+        if (sketches == null) return "{\"count\":" + repository.count() + ",\"fields\":{}}";
+        List<String> fields = listParam(params, "field");
+        for (String field : fields) {
+            if (!sketches.contains(field)) throw new IllegalArgumentException("Field " + field + " is not sketched");
+        }
+        double[] quantiles = Sketches.DEFAULT_QUANTILES;
+        List<String> requested = listParam(params, "quantiles");
+        if (!requested.isEmpty()) {
+            quantiles = new double[requested.size()];
+            for (int i = 0; i < quantiles.length; i++) {
+                try {
+                    quantiles[i] = Double.parseDouble(requested.get(i));
+                } catch (NumberFormatException e) {
+                    quantiles[i] = Double.NaN;
+                }
+                if (!(quantiles[i] >= 0 && quantiles[i] <= 1)) {
+                    throw new IllegalArgumentException("Invalid quantile " + requested.get(i) + ", expected 0 to 1");
+                }
+            }
+        }
+        int top = Math.min(intParam(params, "top", 5), CountMinSketch.CANDIDATES);
+        return sketches.toJson(fields, quantiles, top);
+    }
+
+    private String views() {
+        StringBuilder json = new StringBuilder("{\"views\":[");
+        List<String> names = repository.viewNames();
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append('"').append(JsonSerializer.escape(names.get(i))).append('"');
+        }
+        return json.append("]}").toString();
+    }
+
+    // Materialized views are kept current on every write, so this is a
+    // lookup of the cached result
+    private String view(String name) {
+        MaterializedView view = repository.view(name);
+        if (view == null) return errorResponse("View not found", 404);
+        return view.toJson();
+    }
+
+    // ?ids=1,2,3 or POST /_mget: the entities in request order, with
+    // {"id":4,"error":"Not found"} in place of each missing one
+    private String multiGet(List<String> idList, Projection projection) {
+        if (idList.size() > MAX_MGET_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_MGET_IDS + " ids per request");
+        }
+        long[] ids = new long[idList.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Long.parseLong(idList.get(i));
+        }
+        List<T> entities = repository.findAllById(ids);
+        if (projection != null) projection.prepare(entities);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) json.append(',');
+            T entity = entities.get(i);
+            if (entity == null) {
+                json.append("{\"id\":").append(ids[i]).append(",\"error\":\"Not found\"}");
+            } else {
+                json.append(projection == null ? JsonSerializer.toJson(entity) : projection.toJson(entity));
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    // {"ids":[1,2,3]}, ids optionally quoted
+    private static List<String> idsFromBody(String body) {
+        int key = body == null ? -1 : body.indexOf("\"ids\"");
+        int open = key < 0 ? -1 : body.indexOf('[', key);
+        int close = open < 0 ? -1 : body.indexOf(']', open);
+        if (close < 0) throw new IllegalArgumentException("Expected a body like {\"ids\":[1,2,3]}");
+        List<String> ids = new ArrayList<>();
+        for (String id : body.substring(open + 1, close).split(",")) {
+            String trimmed = id.replace("\"", "").trim();
+            if (!trimmed.isEmpty()) ids.add(trimmed);
+        }
+        return ids;
+    }
+
+    // POST /_live?status=open&total.gt=100 registers a live query. The
+    // response holds its id and the current result as inserts; each
+    // GET /_live/{id} then returns only the changes since the previous one.
+    private String subscribe(Map<String, List<String>> params) {
+        expireIdleSubscriptions();
+        Subscription subscription = new Subscription(projectionFrom(params));
+        subscription.query = repository.subscribe(conditionFrom(params), subscription);
+        String id = Long.toString(subscriptionIds.getAndIncrement());
+        subscriptions.put(id, subscription);
+        return "{\"id\":\"" + id + "\"," + subscription.drain().substring(1);
+    }
+
+    private String poll(String id) {
+        expireIdleSubscriptions();
+        Subscription subscription = subscriptions.get(id);
+        if (subscription == null) return errorResponse("Live query not found", 404);
+        if (subscription.overflowed) {
+            subscriptions.remove(id);
+            return errorResponse("Live query fell too far behind, subscribe again", 410);
+        }
+        return subscription.drain();
+    }
+
+    private String unsubscribe(String id) {
+        Subscription subscription = subscriptions.remove(id);
+        if (subscription == null) return errorResponse("Live query not found", 404);
+        subscription.query.close();
+        return "{\"message\":\"Live query closed\"}";
+    }
+
+    private void expireIdleSubscriptions() {
+        long now = System.currentTimeMillis();
+        subscriptions.values().removeIf(subscription -> {
+            if (now - subscription.lastPolled <= LIVE_IDLE_TIMEOUT_MS) return false;
+            subscription.query.close();
+            return true;
+        });
+    }
+
+    // Unread changes of one live query, rendered when they are committed so
+    // that later writes to the same entity cannot leak into them
+    private final class Subscription implements LiveQuery.Listener<T> {
+        private final Projection projection;
+        private StringBuilder pending = new StringBuilder();
+        private int size;
+        // Set once the initial result is in; only later changes are capped
+        volatile LiveQuery<T> query;
+        volatile boolean overflowed;
+        volatile long lastPolled = System.currentTimeMillis();
+
+        Subscription(Projection projection) {
+            this.projection = projection;
+        }
+
+        @Override
+        public void onInsert(T entity) {
+            add("{\"type\":\"insert\",\"item\":" + toJson(entity) + "}");
+        }
+
+        @Override
+        public void onUpdate(T entity) {
+            add("{\"type\":\"update\",\"item\":" + toJson(entity) + "}");
+        }
+
+        @Override
+        public void onRemove(long id) {
+            add("{\"type\":\"remove\",\"id\":" + id + "}");
+        }
+
+        private String toJson(T entity) {
+            return projection == null ? JsonSerializer.toJson(entity) : projection.toJson(entity);
+        }
+
+        private synchronized void add(String change) {
+            if (overflowed) return;
+            if (query != null && size >= MAX_PENDING_CHANGES) {
+                overflowed = true;
+                pending = new StringBuilder();
+                query.close();
+                return;
+            }
+            if (size++ > 0) pending.append(',');
+            pending.append(change);
+        }
+
+        // {"changes":[...]}, emptying the buffer
+        synchronized String drain() {
+            lastPolled = System.currentTimeMillis();
+            String changes = "{\"changes\":[" + pending + "]}";
+            pending = new StringBuilder();
+            size = 0;
+            return changes;
+        }
+    }
+
+    private String toJsonArray(List<T> entities) {
+        return toJsonArray(entities, null);
+    }
+
+    // Entities in full, or only the projected fields when given
+    private String toJsonArray(List<T> entities, Projection projection) {
+        if (projection != null) projection.prepare(entities);
         StringBuilder json = new StringBuilder();
         json.append("[");
         boolean first = true;
         for (T entity : entities) {
             if (!first) json.append(",");
             first = false;
-            json.append(JsonSerializer.toJson(entity));
+            if (projection == null) {
+                json.append(JsonSerializer.toJson(entity));
+            } else {
+                projection.write(entity, json);
+            }
         }
         json.append("]");
         return json.toString();
     }
 
-    private String getById(Long id) {
+    // ?fields=id,name writes only those fields; ?omitNulls leaves out null
+    // values; ?expand=userId embeds referenced entities. Null when none is given.
+    private Projection projectionFrom(Map<String, List<String>> params) {
+        String fields = params.containsKey("fields") ? params.get("fields").get(0) : null;
+        boolean omitNulls = params.containsKey("omitNulls") && !"false".equals(params.get("omitNulls").get(0));
+        List<String> expand = listParam(params, "expand");
+        Schema schema = repository.schema();
+        if ((fields == null && !omitNulls && expand.isEmpty()) || schema == null) return null;
+        String key = omitNulls + ":" + fields;
+        Projection projection = projections.get(key);
+        if (projection == null) {
+            projection = Projection.compile(schema, fields, omitNulls);
+            projections.put(key, projection);
+        }
+        if (expand.isEmpty()) return projection;
+        return projection.expanding(Expansion.compile(schema, expand, repository, repositories));
+    }
+
+    // Values of a parameter given repeatedly or as a comma-separated list
+    private static List<String> listParam(Map<String, List<String>> params, String name) {
+        List<String> values = new ArrayList<>();
+        for (String value : params.getOrDefault(name, List.of())) {
+            for (String part : value.split(",")) {
+                if (!part.trim().isEmpty()) values.add(part.trim());
+            }
+        }
+        return values;
+    }
+
+    private String requiredParam(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        if (values == null) throw new IllegalArgumentException("Missing parameter: " + name);
+        return values.get(0);
+    }
+
+    private int intParam(Map<String, List<String>> params, String name, int defaultValue) {
+        List<String> values = params.get(name);
+        if (values == null) return defaultValue;
+        try {
+            int value = Integer.parseInt(values.get(0));
+            if (value < 0) throw new IllegalArgumentException("Parameter " + name + " must not be negative");
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for parameter " + name + ": " + values.get(0));
+        }
+    }
+
+    // Parameters named after a field become equality filters (?category=Kitchen),
+    // matching any of the values when repeated (?category=Kitchen&category=Garden);
+    // field.ne excludes a value; field.gt/gte/lt/lte become range filters
+    // (?price.gte=10&price.lt=100); filter takes an expression (see FilterExpression)
+    private Condition conditionFrom(Map<String, List<String>> params) {
+        Schema schema = repository.schema();
+        if (schema == null) return null;
+        List<Condition> conditions = new ArrayList<>();
+        Map<String, String[]> ranges = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            String name = param.getKey();
+            String value = param.getValue().get(0);
+            int dot = name.lastIndexOf('.');
+            if (schema.indexOf(name) >= 0) {
+                List<String> values = param.getValue();
+                conditions.add(values.size() == 1 ? Condition.eq(name, value) : Condition.in(name, values.toArray()));
+            } else if (dot > 0 && schema.indexOf(name.substring(0, dot)) >= 0) {
+                String field = name.substring(0, dot);
+                String operator = name.substring(dot + 1);
+                if (operator.equals("gt") || operator.equals("gte")) {
+                    // lower, lower operator, upper, upper operator
+                    String[] range = ranges.computeIfAbsent(field, f -> new String[4]);
+                    range[0] = value;
+                    range[1] = operator;
+                } else if (operator.equals("lt") || operator.equals("lte")) {
+                    String[] range = ranges.computeIfAbsent(field, f -> new String[4]);
+                    range[2] = value;
+                    range[3] = operator;
+                } else if (operator.equals("ne")) {
+                    for (String excluded : param.getValue()) {
+                        conditions.add(Condition.ne(field, excluded));
+                    }
+                } else if (operator.equals("contains")) {
+                    conditions.add(Condition.contains(field, value));
+                } else if (operator.equals("startsWith")) {
+                    conditions.add(Condition.startsWith(field, value));
+                } else if (operator.equals("endsWith")) {
+                    conditions.add(Condition.endsWith(field, value));
+                } else {
+                    throw new IllegalArgumentException("Unknown filter operator: " + operator);
+                }
+            }
+        }
+        for (Map.Entry<String, String[]> range : ranges.entrySet()) {
+            String[] bounds = range.getValue();
+            conditions.add(Condition.range(range.getKey(), bounds[0], "gte".equals(bounds[1]),
+                bounds[2], "lte".equals(bounds[3])));
+        }
+        if (params.containsKey("filter")) {
+            conditions.add(repository.compile(params.get("filter").get(0)));
+        }
+        if (conditions.isEmpty()) return null;
+        return conditions.size() == 1 ? conditions.get(0) : Condition.and(conditions.toArray(new Condition[0]));
+    }
+
+    private String getById(long id, Projection projection) {
         T entity = repository.findById(id);
         if (entity == null) {
             return errorResponse(capitalize(resourceName) + " not found", 404);
         }
-        return JsonSerializer.toJson(entity);
+        if (projection == null) return JsonSerializer.toJson(entity);
+        projection.prepare(Collections.singletonList(entity));
+        return projection.toJson(entity);
     }
 
     private String create(String body) {
@@ -70,17 +566,24 @@ public class EntityController<T extends Entity> {
         return JsonSerializer.toJson(entity);
     }
 
-    private String update(Long id, String body) {
+    private String update(long id, String body) {
         T entity = repository.findById(id);
         if (entity == null) {
             return errorResponse(capitalize(resourceName) + " not found", 404);
         }
-        populateEntityFromJson(entity, body);
-        repository.save(entity);
-        return JsonSerializer.toJson(entity);
+        // Apply the changes to a copy, so a rejected save (a unique index
+        // violation) leaves the stored entity as it was
+        T updated = entityFactory.create();
+        Schema schema = repository.schema();
+        for (int i = 0; i < schema.size(); i++) {
+            schema.set(updated, i, schema.value(entity, i));
+        }
+        populateEntityFromJson(updated, body);
+        repository.save(updated);
+        return JsonSerializer.toJson(updated);
     }
 
-    private String delete(Long id) {
+    private String delete(long id) {
         T entity = repository.findById(id);
         if (entity == null) {
             return errorResponse(capitalize(resourceName) + " not found", 404);
@@ -153,6 +656,6 @@ public class EntityController<T extends Entity> {
     }
 
     private String errorResponse(String message, int statusCode) {
-        return "{\"error\":\"" + message + "\",\"status\":" + statusCode + "}";
+        return "{\"error\":\"" + JsonSerializer.escape(message) + "\",\"status\":" + statusCode + "}";
     }
 }
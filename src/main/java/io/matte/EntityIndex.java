@@ -0,0 +1,27 @@
+package io.matte;
+
+// Secondary access path over one or more fields. Kept up to date from the
+// repository's change stream; queried by Repository.find.
+abstract class EntityIndex implements ChangeListener {
+
+    // Short description used in messages, e.g. "hash(category)"
+    abstract String describe();
+
+    // Whether lookup can answer the bound condition; cheap, reads no ids
+    abstract boolean supports(Condition condition);
+
+    // Ids matching a bound condition in ascending order, or null if this
+    // index cannot answer it
+    abstract long[] lookup(Condition condition);
+
+    // Exact number of ids lookup would return for the condition, or -1 if
+    // this index cannot tell cheaply; lets the planner see skewed values
+    long count(Condition condition) {
+        return -1;
+    }
+
+    // Called before a write is applied; throws if it would break a constraint.
+    // id is null for entities that have not been saved yet.
+    void check(Long id, Object[] after) {
+    }
+}
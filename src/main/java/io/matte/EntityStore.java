@@ -0,0 +1,51 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Storage backend behind a Repository, keyed by entity id. Implementations
+// must be safe for concurrent use. Stores that keep their own encoding (e.g.
+// ColumnarEntityStore) hand out fresh copies on every read, so changes to a
+// returned entity only take effect once it is saved again.
+public interface EntityStore<T extends Entity> {
+    T get(long id);
+
+    // Entities for the ids in order, null where an id is not stored
+    default List<T> getAll(long[] ids) {
+        List<T> entities = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            entities.add(get(id));
+        }
+        return entities;
+    }
+
+    void put(long id, T entity);
+
+    // True when get returns a fresh copy rather than the saved instance.
+    // Repositories then read a changed entity's old values from the store
+    // instead of keeping their own copy of every row.
+    default boolean copiesOnRead() {
+        return false;
+    }
+
+    // Returns true if an entity was stored under the id
+    boolean remove(long id);
+
+    int size();
+
+    void forEach(Consumer<? super T> action);
+
+    default List<T> values() {
+        List<T> values = new ArrayList<>(size());
+        forEach(values::add);
+        return values;
+    }
+
+    // Iteration behind Repository streams. This default copies the values
+    // first; stores should override it to walk their contents lazily.
+    default Spliterator<T> spliterator() {
+        return values().spliterator();
+    }
+}
@@ -0,0 +1,87 @@
+package io.matte;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Embeds referenced entities for ?expand=userId. The ids in each expanded
+// field are collected across the whole response first and resolved with one
+// batched findAllById against the target repository, so a page of n orders
+// costs one lookup per expanded field rather than n follow-up requests. The
+// id is replaced in place by the referenced entity, or by null when that
+// entity no longer exists. Built per request.
+final class Expansion {
+    private final Schema schema;
+    private final int[] positions;
+    private final Repository<?>[] targets;
+    // Per expanded field, the ids already looked up and the entities found
+    private final LongHashSet[] requested;
+    private final LongHashMap<Entity>[] resolved;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Expansion(Schema schema, int[] positions, Repository<?>[] targets) {
+        this.schema = schema;
+        this.positions = positions;
+        this.targets = targets;
+        this.requested = new LongHashSet[positions.length];
+        this.resolved = new LongHashMap[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            requested[i] = new LongHashSet();
+            resolved[i] = new LongHashMap<>();
+        }
+    }
+
+    // fields must be declared with reference(field, resource) on the entity
+    static Expansion compile(Schema schema, List<String> fields, Repository<?> source,
+                             Function<String, Repository<?>> repositories) {
+        int[] positions = new int[fields.size()];
+        Repository<?>[] targets = new Repository<?>[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            String field = fields.get(i);
+            positions[i] = schema.require(field);
+            String target = source.referenceTarget(field);
+            if (target == null) throw new IllegalArgumentException("Field " + field + " is not a reference");
+            targets[i] = repositories.apply(target);
+            if (targets[i] == null) throw new IllegalArgumentException("Unknown resource " + target);
+        }
+        return new Expansion(schema, positions, targets);
+    }
+
+    // Looks up every referenced id of the entities (nulls skipped) in one
+    // batch per field
+    void resolve(List<? extends Entity> entities) {
+        for (int i = 0; i < positions.length; i++) {
+            LongHashSet ids = new LongHashSet();
+            for (Entity entity : entities) {
+                Object value = entity == null ? null : schema.value(entity, positions[i]);
+                if (value != null && !requested[i].contains(((Number) value).longValue())) {
+                    ids.add(((Number) value).longValue());
+                }
+            }
+            if (ids.isEmpty()) continue;
+            long[] batch = ids.toSortedArray();
+            List<? extends Entity> found = targets[i].findAllById(batch);
+            for (int j = 0; j < batch.length; j++) {
+                requested[i].add(batch[j]);
+                if (found.get(j) != null) resolved[i].put(batch[j], found.get(j));
+            }
+        }
+    }
+
+    int indexOf(int position) {
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] == position) return i;
+        }
+        return -1;
+    }
+
+    // Writes the entity referenced by value for the i-th expanded field. Ids
+    // that were not part of a resolved batch are looked up one by one.
+    void write(int field, Object value, StringBuilder json) {
+        Entity target = null;
+        if (value != null) {
+            long id = ((Number) value).longValue();
+            target = requested[field].contains(id) ? resolved[field].get(id) : targets[field].findById(id);
+        }
+        json.append(target == null ? "null" : JsonSerializer.toJson(target));
+    }
+}
@@ -0,0 +1,122 @@
+package io.matte;
+
+import java.util.Objects;
+
+// Cheap, incrementally maintained statistics for one field, used by the query
+// planner to estimate how many entities a filter matches:
+//
+// - null and non-null counts;
+// - a distinct-value estimate by linear counting: values hash into a fixed
+//   array of counters, and the share of empty counters gives the estimate.
+//   Counters go down on removal, so deletes and updates are handled exactly;
+// - for Integer and Long fields, a histogram with one bucket per sign and
+//   power of two, interpolated linearly within a bucket for range estimates.
+//
+// Updated under the repository's write lock and read without locking, so
+// estimates may lag a concurrent write slightly.
+final class FieldStatistics {
+    private static final int COUNTERS = 4096;
+    private static final int BUCKETS = 128;
+
+    private final int[] counters = new int[COUNTERS];
+    private final long[] histogram;
+    private int occupied;
+    private long values;
+    private long nulls;
+
+    FieldStatistics(Class<?> type) {
+        histogram = type == Integer.class || type == Long.class ? new long[BUCKETS] : null;
+    }
+
+    void add(Object value) {
+        update(value, 1);
+    }
+
+    void remove(Object value) {
+        update(value, -1);
+    }
+
+    private void update(Object value, int delta) {
+        if (value == null) {
+            nulls += delta;
+            return;
+        }
+        values += delta;
+        int counter = (int) (LongHashMap.mix(Objects.hashCode(value)) & (COUNTERS - 1));
+        if (delta > 0 && counters[counter]++ == 0) occupied++;
+        if (delta < 0 && --counters[counter] == 0) occupied--;
+        if (histogram != null) histogram[bucket(((Number) value).longValue())] += delta;
+    }
+
+    long values() {
+        return values;
+    }
+
+    long nulls() {
+        return nulls;
+    }
+
+    double distinct() {
+        if (values == 0) return 0;
+        int empty = COUNTERS - occupied;
+        // All counters in use: the estimate saturates at its upper limit
+        double estimate = empty == 0
+            ? COUNTERS * Math.log(COUNTERS)
+            : -COUNTERS * Math.log((double) empty / COUNTERS);
+        return Math.max(1, Math.min(values, estimate));
+    }
+
+    // Share of non-null values within the range, or -1 without a histogram
+    double rangeFraction(Condition.Range range) {
+        if (histogram == null || !(range.lower == null || range.lower instanceof Number)
+                || !(range.upper == null || range.upper instanceof Number)) {
+            return -1;
+        }
+        if (values <= 0) return 0;
+        // Integral bounds, so exclusive ends become inclusive ones
+        double lower = range.lower == null ? -Math.pow(2, 63)
+            : ((Number) range.lower).longValue() + (range.lowerInclusive ? 0 : 1);
+        double upper = range.upper == null ? Math.pow(2, 63)
+            : ((Number) range.upper).longValue() - (range.upperInclusive ? 0 : 1);
+        if (upper < lower) return 0;
+        double matched = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            long count = histogram[b];
+            if (count <= 0) continue;
+            double from = bucketLower(b);
+            double to = bucketUpper(b);
+            double overlap = Math.min(to, upper) - Math.max(from, lower) + 1;
+            if (overlap > 0) matched += count * Math.min(1, overlap / (to - from + 1));
+        }
+        return Math.min(1, matched / values);
+    }
+
+    // Buckets 64..127 hold [0], [1], [2, 3], [4, 7], ...; buckets 63..0 mirror
+    // them for negative values
+    static int bucket(long value) {
+        if (value >= 0) return 64 + magnitude(value);
+        return 63 - magnitude(-(value + 1));
+    }
+
+    private static int magnitude(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static double bucketLower(int bucket) {
+        if (bucket >= 64) return magnitudeLower(bucket - 64);
+        return -magnitudeUpper(63 - bucket) - 1;
+    }
+
+    private static double bucketUpper(int bucket) {
+        if (bucket >= 64) return magnitudeUpper(bucket - 64);
+        return -magnitudeLower(63 - bucket) - 1;
+    }
+
+    private static double magnitudeLower(int magnitude) {
+        return magnitude == 0 ? 0 : Math.pow(2, magnitude - 1);
+    }
+
+    private static double magnitudeUpper(int magnitude) {
+        return magnitude == 0 ? 0 : Math.pow(2, magnitude) - 1;
+    }
+}
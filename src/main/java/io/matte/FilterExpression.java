@@ -0,0 +1,172 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Parser for the filter expression language of ?filter=, e.g.
+//
+//     price > 10 and category == 'Kitchen'
+//     (name startsWith 'Jo' or age in (30, 40)) and not active == false
+//
+// Comparisons are field op literal with ==, !=, >, >=, < and <= (= works as
+// ==), contains, startsWith, endsWith and in (...). They combine with
+// and/&&, or/|| and not/!, and group with parentheses; and binds tighter
+// than or. Keywords are case-insensitive. Literals are quoted strings, numbers, true, false and null.
+// The result is an ordinary Condition, so filters use the indexes and the
+// query planner like any other query.
+final class FilterExpression {
+    private final String text;
+    private int pos;
+
+    private FilterExpression(String text) {
+        this.text = text;
+    }
+
+    static Condition parse(String text) {
+        if (text == null || text.trim().isEmpty()) throw new IllegalArgumentException("Empty filter");
+        FilterExpression parser = new FilterExpression(text);
+        Condition condition = parser.or();
+        parser.skipSpaces();
+        if (parser.pos < text.length()) throw parser.error("Unexpected '" + text.charAt(parser.pos) + "'");
+        return condition;
+    }
+
+    private Condition or() {
+        List<Condition> parts = new ArrayList<>();
+        parts.add(and());
+        while (keyword("or") || symbol("||")) {
+            parts.add(and());
+        }
+        return parts.size() == 1 ? parts.get(0) : new Condition.Or(parts);
+    }
+
+    private Condition and() {
+        List<Condition> parts = new ArrayList<>();
+        parts.add(unary());
+        while (keyword("and") || symbol("&&")) {
+            parts.add(unary());
+        }
+        return parts.size() == 1 ? parts.get(0) : new Condition.And(parts);
+    }
+
+    private Condition unary() {
+        if (keyword("not") || (!peek("!=") && symbol("!"))) return Condition.not(unary());
+        if (symbol("(")) {
+            Condition inner = or();
+            expect(")");
+            return inner;
+        }
+        return comparison();
+    }
+
+    private Condition comparison() {
+        String field = identifier();
+        if (keyword("contains")) return Condition.contains(field, string());
+        if (keyword("startsWith")) return Condition.startsWith(field, string());
+        if (keyword("endsWith")) return Condition.endsWith(field, string());
+        if (keyword("in")) {
+            expect("(");
+            List<Object> values = new ArrayList<>();
+            do {
+                values.add(literal());
+            } while (symbol(","));
+            expect(")");
+            return Condition.in(field, values.toArray());
+        }
+        if (symbol("==") || symbol("=")) return Condition.eq(field, literal());
+        if (symbol("!=")) return Condition.ne(field, literal());
+        if (symbol(">=")) return Condition.gte(field, comparable(literal()));
+        if (symbol("<=")) return Condition.lte(field, comparable(literal()));
+        if (symbol(">")) return Condition.gt(field, comparable(literal()));
+        if (symbol("<")) return Condition.lt(field, comparable(literal()));
+        throw error("Expected an operator after " + field);
+    }
+
+    private Object comparable(Object value) {
+        if (value == null) throw error("null cannot be compared with < or >");
+        return value;
+    }
+
+    private String identifier() {
+        skipSpaces();
+        int start = pos;
+        while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+            pos++;
+        }
+        if (start == pos || Character.isDigit(text.charAt(start))) {
+            pos = start;
+            throw error("Expected a field name");
+        }
+        return text.substring(start, pos);
+    }
+
+    private String string() {
+        Object value = literal();
+        if (!(value instanceof String)) throw error("Expected a quoted string");
+        return (String) value;
+    }
+
+    private Object literal() {
+        skipSpaces();
+        if (pos == text.length()) throw error("Expected a value");
+        char c = text.charAt(pos);
+        if (c == '\'' || c == '"') {
+            StringBuilder value = new StringBuilder();
+            pos++;
+            while (pos < text.length() && text.charAt(pos) != c) {
+                if (text.charAt(pos) == '\\' && pos + 1 < text.length()) pos++;
+                value.append(text.charAt(pos++));
+            }
+            if (pos == text.length()) throw error("Unterminated string");
+            pos++;
+            return value.toString();
+        }
+        if (c == '-' || Character.isDigit(c)) {
+            int start = pos++;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+            try {
+                return Long.valueOf(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("Invalid number");
+            }
+        }
+        if (keyword("true")) return Boolean.TRUE;
+        if (keyword("false")) return Boolean.FALSE;
+        if (keyword("null")) return null;
+        throw error("Expected a value");
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private boolean peek(String symbol) {
+        skipSpaces();
+        return text.startsWith(symbol, pos);
+    }
+
+    private boolean symbol(String symbol) {
+        if (!peek(symbol)) return false;
+        pos += symbol.length();
+        return true;
+    }
+
+    // A word followed by something other than a letter or digit
+    private boolean keyword(String word) {
+        skipSpaces();
+        int end = pos + word.length();
+        if (!text.regionMatches(true, pos, word, 0, word.length())) return false;
+        if (end < text.length() && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_')) return false;
+        pos = end;
+        return true;
+    }
+
+    private void expect(String symbol) {
+        if (!symbol(symbol)) throw error("Expected '" + symbol + "'");
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid filter at position " + pos + ": " + message);
+    }
+}
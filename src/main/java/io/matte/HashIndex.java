@@ -0,0 +1,96 @@
+package io.matte;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Equality index: field value -> ids of the entities holding it. Null values
+// are not indexed. A unique index rejects a second id for the same value.
+final class HashIndex extends EntityIndex {
+    private final String field;
+    private final int position;
+    private final boolean unique;
+    private final Map<Object, LongHashSet> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    HashIndex(Schema schema, String field, boolean unique) {
+        this.field = field;
+        this.position = schema.require(field);
+        this.unique = unique;
+    }
+
+    @Override
+    String describe() {
+        return (unique ? "unique(" : "hash(") + field + ")";
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        Object oldValue = before == null ? null : before[position];
+        Object newValue = after == null ? null : after[position];
+        if (before != null && after != null && Objects.equals(oldValue, newValue)) return;
+        lock.writeLock().lock();
+        try {
+            if (oldValue != null) {
+                LongHashSet ids = postings.get(oldValue);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(oldValue);
+                }
+            }
+            if (newValue != null) {
+                postings.computeIfAbsent(newValue, v -> new LongHashSet()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    boolean supports(Condition condition) {
+        return condition instanceof Condition.Eq && ((Condition.Eq) condition).field.equals(field)
+            && ((Condition.Eq) condition).value != null;
+    }
+
+    @Override
+    long[] lookup(Condition condition) {
+        if (!supports(condition)) return null;
+        Condition.Eq eq = (Condition.Eq) condition;
+        lock.readLock().lock();
+        try {
+            LongHashSet ids = postings.get(eq.value);
+            return ids == null ? Ids.NONE : ids.toSortedArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    long count(Condition condition) {
+        if (!supports(condition)) return -1;
+        lock.readLock().lock();
+        try {
+            LongHashSet ids = postings.get(((Condition.Eq) condition).value);
+            return ids == null ? 0 : ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    void check(Long id, Object[] after) {
+        if (!unique || after[position] == null) return;
+        lock.readLock().lock();
+        try {
+            LongHashSet ids = postings.get(after[position]);
+            if (ids == null) return;
+            int others = ids.size() - (id != null && ids.contains(id) ? 1 : 0);
+            if (others > 0) {
+                throw new UniqueConstraintException("Duplicate value for unique field " + field + ": " + after[position]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.matte;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Default store: keeps the saved entity objects themselves, so findById
+// returns the same instance that was saved.
+public class HeapEntityStore<T extends Entity> implements EntityStore<T> {
+    private final ConcurrentLongMap<T> entities = new ConcurrentLongMap<>();
+
+    @Override
+    public T get(long id) {
+        return entities.get(id);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> getAll(long[] ids) {
+        Object[] entities = new Object[ids.length];
+        this.entities.getAll(ids, entities);
+        return (List<T>) (List<?>) Arrays.asList(entities);
+    }
+
+    @Override
+    public void put(long id, T entity) {
+        entities.put(id, entity);
+    }
+
+    @Override
+    public boolean remove(long id) {
+        return entities.remove(id) != null;
+    }
+
+    @Override
+    public int size() {
+        return entities.size();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        entities.forEach(action);
+    }
+
+    @Override
+    public List<T> values() {
+        return entities.values();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return entities.spliterator();
+    }
+}
@@ -0,0 +1,81 @@
+package io.matte;
+
+// Distinct-count estimate for one field in fixed memory. A HyperLogLog hashes
+// each value to one of its registers and remembers there the longest run of
+// leading zeros seen; the harmonic mean over all registers gives the
+// estimate. Here each register counts its values per run length instead, so
+// a removed value is taken out again and the register falls back to the next
+// longest run. 1024 registers give a standard error of about 3%.
+final class HyperLogLog {
+    private static final int REGISTER_BITS = 10;
+    private static final int REGISTERS = 1 << REGISTER_BITS;
+    // Longer runs are counted as this long; only 2^-32 of all hashes get here
+    private static final int MAX_RANK = 32;
+
+    private final int[] counts = new int[REGISTERS * MAX_RANK];
+    // Longest run currently held per register, 0 when empty
+    private final byte[] ranks = new byte[REGISTERS];
+
+    void add(Object value) {
+        update(value, 1);
+    }
+
+    void remove(Object value) {
+        update(value, -1);
+    }
+
+    private void update(Object value, int delta) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - REGISTER_BITS));
+        int rank = Math.min(MAX_RANK, Long.numberOfLeadingZeros(hash << REGISTER_BITS) + 1);
+        int base = register * MAX_RANK;
+        counts[base + rank - 1] += delta;
+        if (delta > 0 && rank > ranks[register]) {
+            ranks[register] = (byte) rank;
+        } else if (delta < 0 && rank == ranks[register] && counts[base + rank - 1] == 0) {
+            int longest = rank - 1;
+            while (longest > 0 && counts[base + longest - 1] == 0) longest--;
+            ranks[register] = (byte) longest;
+        }
+    }
+
+    double estimate() {
+        double sum = 0;
+        int empty = 0;
+        for (byte rank : ranks) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) empty++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        // Few values: linear counting over the empty registers is more accurate
+        if (estimate <= 2.5 * REGISTERS && empty > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / empty);
+        }
+        return estimate;
+    }
+
+    // 64-bit hash with every bit mixed (murmur3's finalizer). Strings are
+    // hashed over all their characters rather than through the 32-bit
+    // hashCode, which would collide too often across millions of values.
+    static long hash(Object value) {
+        long h;
+        if (value instanceof Long || value instanceof Integer) {
+            h = ((Number) value).longValue();
+        } else if (value instanceof String) {
+            String text = (String) value;
+            h = 1125899906842597L;
+            for (int i = 0; i < text.length(); i++) {
+                h = 31 * h + text.charAt(i);
+            }
+        } else {
+            h = value.hashCode();
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
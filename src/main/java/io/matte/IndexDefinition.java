@@ -0,0 +1,145 @@
+package io.matte;
+
+// Declares a secondary index on an entity, e.g. in the entity constructor:
+//
+//     fields(name, email);
+//     indexes(uniqueIndex(email));
+public final class IndexDefinition {
+    enum Kind { HASH, UNIQUE, SORTED, TEXT, TRIGRAM, PREFIX, BITMAP, COMPOSITE, REFERENCE }
+
+    private final Kind kind;
+    private final String[] fields;
+    private final String[] included;
+    private final Condition filter;
+    // Resource a reference field points into
+    private final String target;
+
+    private IndexDefinition(Kind kind, Field<?>... fields) {
+        this(kind, names(fields), new String[0], null);
+    }
+
+    private IndexDefinition(Kind kind, String[] fields, String[] included, Condition filter) {
+        this(kind, fields, included, filter, null);
+    }
+
+    private IndexDefinition(Kind kind, String[] fields, String[] included, Condition filter, String target) {
+        this.kind = kind;
+        this.fields = fields;
+        this.included = included;
+        this.filter = filter;
+        this.target = target;
+    }
+
+    private static String[] names(Field<?>... fields) {
+        String[] names = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].fieldName().toString();
+        }
+        return names;
+    }
+
+    public static IndexDefinition hash(Field<?> field) {
+        return new IndexDefinition(Kind.HASH, field);
+    }
+
+    public static IndexDefinition unique(Field<?> field) {
+        return new IndexDefinition(Kind.UNIQUE, field);
+    }
+
+    // Ordered index for range filters and sorted iteration on Integer, Long or String fields
+    public static IndexDefinition sorted(Field<?> field) {
+        return new IndexDefinition(Kind.SORTED, field);
+    }
+
+    // Full-text index with BM25 ranking over one or more String fields
+    public static IndexDefinition text(Field<?>... fields) {
+        if (fields.length == 0) throw new IllegalArgumentException("A text index needs at least one field");
+        return new IndexDefinition(Kind.TEXT, fields);
+    }
+
+    // Trigram index for contains, startsWith and endsWith filters on a String field
+    public static IndexDefinition trigram(Field<?> field) {
+        return new IndexDefinition(Kind.TRIGRAM, field);
+    }
+
+    // Radix trie for case-insensitive prefix suggestions on a String field
+    public static IndexDefinition prefix(Field<?> field) {
+        return new IndexDefinition(Kind.PREFIX, field);
+    }
+
+    // Compressed bitmap per value, for low-cardinality fields such as
+    // categories and Boolean flags
+    public static IndexDefinition bitmap(Field<?> field) {
+        return new IndexDefinition(Kind.BITMAP, field);
+    }
+
+    // Long field holding ids of another resource, e.g. reference(userId,
+    // "users") on an order. Enables ?expand=userId, and is hash indexed so
+    // that ?userId=5 finds the orders of a user without a scan.
+    public static IndexDefinition reference(Field<?> field, String resource) {
+        if (field.type() != Long.class && field.type() != Integer.class) {
+            throw new IllegalArgumentException("A reference must be a Long or Integer field");
+        }
+        return new IndexDefinition(Kind.REFERENCE, names(field), new String[0], null, resource);
+    }
+
+    // Ordered index over several fields, e.g. composite(category, price) for
+    // ?category=Kitchen&price.lt=20. Refine with where(...) and including(...).
+    public static IndexDefinition composite(Field<?>... fields) {
+        if (fields.length == 0) throw new IllegalArgumentException("A composite index needs at least one field");
+        return new IndexDefinition(Kind.COMPOSITE, fields);
+    }
+
+    // Partial index: only entities matching the condition are indexed, and
+    // only queries that include the condition use it
+    public IndexDefinition where(Condition condition) {
+        requireComposite();
+        return new IndexDefinition(kind, fields, included, condition);
+    }
+
+    // Covering index: also stores these fields, so queries reading only
+    // indexed and included fields never load entities
+    public IndexDefinition including(Field<?>... fields) {
+        requireComposite();
+        return new IndexDefinition(kind, this.fields, names(fields), filter);
+    }
+
+    private void requireComposite() {
+        if (kind != Kind.COMPOSITE) {
+            throw new IllegalArgumentException("Only composite indexes can be partial or covering");
+        }
+    }
+
+    String field() {
+        return fields[0];
+    }
+
+    // Target resource of a reference, null for other indexes
+    String target() {
+        return target;
+    }
+
+    EntityIndex create(Schema schema) {
+        switch (kind) {
+            case COMPOSITE:
+                return new CompositeIndex(schema, fields, included, filter);
+            case BITMAP:
+                return new BitmapIndex(schema, fields[0]);
+            case PREFIX:
+                return new PrefixIndex(schema, fields[0]);
+            case TRIGRAM:
+                return new TrigramIndex(schema, fields[0]);
+            case TEXT:
+                return new TextIndex(schema, fields);
+            case SORTED:
+                return new SortedIndex(schema, fields[0]);
+            case REFERENCE:
+                return new HashIndex(schema, fields[0], false);
+            case UNIQUE:
+                return new HashIndex(schema, fields[0], true);
+            case HASH:
+            default:
+                return new HashIndex(schema, fields[0], false);
+        }
+    }
+}
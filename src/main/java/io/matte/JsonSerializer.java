@@ -24,7 +24,31 @@ public class JsonSerializer {
         return json.toString();
     }
 
-    private static String escape(String str) {
-        return str.replace("\"", "\\\"");
+    // Escapes a string for use inside JSON quotes. Error messages echo user
+    // input such as filter text, so backslashes and control characters matter
+    // as much as quotes. Returns str itself when nothing needs escaping.
+    static String escape(String str) {
+        StringBuilder out = null;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            String replacement;
+            switch (c) {
+                case '"': replacement = "\\\""; break;
+                case '\\': replacement = "\\\\"; break;
+                case '\n': replacement = "\\n"; break;
+                case '\r': replacement = "\\r"; break;
+                case '\t': replacement = "\\t"; break;
+                case '\b': replacement = "\\b"; break;
+                case '\f': replacement = "\\f"; break;
+                default: replacement = c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            }
+            if (replacement == null) {
+                if (out != null) out.append(c);
+                continue;
+            }
+            if (out == null) out = new StringBuilder(str.length() + 16).append(str, 0, i);
+            out.append(replacement);
+        }
+        return out == null ? str : out.toString();
     }
 }
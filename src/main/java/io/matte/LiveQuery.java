@@ -0,0 +1,71 @@
+package io.matte;
+
+import java.util.Arrays;
+
+// A standing query from Repository.subscribe. After the initial result each
+// committed write is checked against the condition on its old and new values
+// only: one that brings an entity into the result is an insert, one that
+// takes it out is a remove, and a change to an entity that stays in is an
+// update. Writes outside the result cost one condition test and deliver
+// nothing. Deltas arrive on the writing thread, in commit order, while the
+// repository's write lock is held, so listeners should only hand them off.
+public final class LiveQuery<T extends Entity> implements AutoCloseable {
+    public interface Listener<T> {
+        void onInsert(T entity);
+
+        void onUpdate(T entity);
+
+        void onRemove(long id);
+    }
+
+    private final Repository<T> repository;
+    private final Schema schema;
+    private final Condition condition;
+    private final Listener<T> listener;
+    private final ChangeListener changes = this::update;
+    private volatile boolean closed;
+
+    LiveQuery(Repository<T> repository, Schema schema, Condition condition, Listener<T> listener) {
+        this.repository = repository;
+        this.schema = schema;
+        this.condition = condition;
+        this.listener = listener;
+    }
+
+    ChangeListener changes() {
+        return changes;
+    }
+
+    private void update(long id, Object[] before, Object[] after) {
+        boolean was = before != null && matches(before);
+        boolean is = after != null && matches(after);
+        try {
+            if (is && !was) {
+                listener.onInsert(repository.findById(id));
+            } else if (is && !Arrays.equals(before, after)) {
+                listener.onUpdate(repository.findById(id));
+            } else if (was && !is) {
+                listener.onRemove(id);
+            }
+        } catch (RuntimeException e) {
+            // The write is already committed; a failing listener must not
+            // fail it or starve the listeners after it
+            close();
+        }
+    }
+
+    private boolean matches(Object[] row) {
+        return condition == null || condition.test(schema, row);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        repository.removeListener(changes);
+    }
+}
@@ -0,0 +1,172 @@
+package io.matte;
+
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Open-addressing hash map from primitive long keys to objects. Keys live in a
+// long[] and values in a parallel Object[], so there is no boxing and no
+// per-entry node. Not thread-safe on its own; see ConcurrentLongMap.
+//
+// Removal leaves a tombstone instead of shifting neighbours back, so an entry
+// never moves within a table. Readers that race with a writer (guarded by an
+// optimistic lock in ConcurrentLongMap) therefore never see an entry twice.
+class LongHashMap<V> {
+    private static final Object REMOVED = new Object();
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int used; // live entries plus tombstones
+
+    LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongHashMap(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        long[] k = keys;
+        Object[] v = values;
+        if (k.length != v.length) return null; // torn read during resize
+        int mask = k.length - 1;
+        int i = (int) mix(key) & mask;
+        for (int probes = 0; probes < k.length; probes++) {
+            Object value = v[i];
+            if (value == null) return null;
+            if (value != REMOVED && k[i] == key) return (V) value;
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("LongHashMap does not store null values");
+        int mask = keys.length - 1;
+        int i = (int) mix(key) & mask;
+        int tombstone = -1;
+        while (true) {
+            Object current = values[i];
+            if (current == null) break;
+            if (current == REMOVED) {
+                if (tombstone < 0) tombstone = i;
+            } else if (keys[i] == key) {
+                values[i] = value;
+                return (V) current;
+            }
+            i = (i + 1) & mask;
+        }
+        if (tombstone >= 0) {
+            i = tombstone;
+        } else {
+            used++;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (used > (keys.length >> 1) + (keys.length >> 2)) {
+            rehash();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int mask = keys.length - 1;
+        int i = (int) mix(key) & mask;
+        while (true) {
+            Object current = values[i];
+            if (current == null) return null;
+            if (current != REMOVED && keys[i] == key) {
+                values[i] = REMOVED;
+                size--;
+                return (V) current;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super V> action) {
+        Object[] v = values;
+        for (Object value : v) {
+            if (value != null && value != REMOVED) action.accept((V) value);
+        }
+    }
+
+    // The current slot array, for iterating without copying. Values are live
+    // unless null or removed (see isLive). A rehash never changes an array a
+    // caller already holds, so each entry appears in it at most once.
+    Object[] slots() {
+        return values;
+    }
+
+    static boolean isLive(Object slot) {
+        return slot != null && slot != REMOVED;
+    }
+
+    void forEachKey(LongConsumer action) {
+        long[] k = keys;
+        Object[] v = values;
+        for (int i = 0; i < k.length; i++) {
+            if (v[i] != null && v[i] != REMOVED) action.accept(k[i]);
+        }
+    }
+
+    // Rebuilds into fresh arrays sized for the live entries, dropping tombstones.
+    // The old arrays are left untouched for any reader still holding them.
+    private void rehash() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int capacity = tableSizeFor(size * 2);
+        long[] newKeys = new long[capacity];
+        Object[] newValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object value = oldValues[j];
+            if (value == null || value == REMOVED) continue;
+            int i = (int) mix(oldKeys[j]) & mask;
+            while (newValues[i] != null) {
+                i = (i + 1) & mask;
+            }
+            newKeys[i] = oldKeys[j];
+            newValues[i] = value;
+        }
+        // Publish values before keys; a reader seeing mismatched lengths bails out
+        values = newValues;
+        keys = newKeys;
+        used = size;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // keep load below 0.75 for the expected size
+        while (capacity - (capacity >> 2) <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,112 @@
+package io.matte;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// Open-addressing set of primitive longs, used for index posting lists.
+// Same probing and tombstone scheme as LongHashMap; not thread-safe.
+class LongHashSet {
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+    private static final byte REMOVED = 2;
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private byte[] states = new byte[MIN_CAPACITY];
+    private int size;
+    private int used;
+
+    boolean add(long key) {
+        int mask = keys.length - 1;
+        int i = (int) LongHashMap.mix(key) & mask;
+        int tombstone = -1;
+        while (states[i] != FREE) {
+            if (states[i] == REMOVED) {
+                if (tombstone < 0) tombstone = i;
+            } else if (keys[i] == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        if (tombstone >= 0) {
+            i = tombstone;
+        } else {
+            used++;
+        }
+        keys[i] = key;
+        states[i] = LIVE;
+        size++;
+        if (used > (keys.length >> 1) + (keys.length >> 2)) {
+            rehash();
+        }
+        return true;
+    }
+
+    boolean remove(long key) {
+        int i = slotOf(key);
+        if (i < 0) return false;
+        states[i] = REMOVED;
+        size--;
+        return true;
+    }
+
+    boolean contains(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(LongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (states[i] == LIVE) action.accept(keys[i]);
+        }
+    }
+
+    long[] toSortedArray() {
+        long[] result = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (states[i] == LIVE) result[n++] = keys[i];
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int i = (int) LongHashMap.mix(key) & mask;
+        while (states[i] != FREE) {
+            if (states[i] == LIVE && keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        byte[] oldStates = states;
+        int capacity = MIN_CAPACITY;
+        while (capacity - (capacity >> 2) <= size * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        states = new byte[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldStates[j] != LIVE) continue;
+            int i = (int) LongHashMap.mix(oldKeys[j]) & mask;
+            while (states[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            states[i] = LIVE;
+        }
+        used = size;
+    }
+}
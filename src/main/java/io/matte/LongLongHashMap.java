@@ -0,0 +1,148 @@
+package io.matte;
+
+import java.util.function.LongConsumer;
+
+// Open-addressing map from long keys to long values, with no boxing and no
+// per-entry objects. Used for compact id -> row/offset lookups. Same probing
+// and tombstone scheme as LongHashMap; not thread-safe.
+class LongLongHashMap {
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+    private static final byte REMOVED = 2;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private byte[] states;
+    private int size;
+    private int used;
+
+    LongLongHashMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        states = new byte[capacity];
+    }
+
+    long get(long key, long missing) {
+        long[] k = keys;
+        long[] v = values;
+        byte[] s = states;
+        if (k.length != s.length || v.length != s.length) return missing;
+        int mask = k.length - 1;
+        int i = (int) LongHashMap.mix(key) & mask;
+        for (int probes = 0; probes < k.length; probes++) {
+            byte state = s[i];
+            if (state == FREE) return missing;
+            if (state == LIVE && k[i] == key) return v[i];
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    boolean containsKey(long key) {
+        int i = slotOf(key);
+        return i >= 0;
+    }
+
+    void put(long key, long value) {
+        int mask = keys.length - 1;
+        int i = (int) LongHashMap.mix(key) & mask;
+        int tombstone = -1;
+        while (states[i] != FREE) {
+            if (states[i] == REMOVED) {
+                if (tombstone < 0) tombstone = i;
+            } else if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        if (tombstone >= 0) {
+            i = tombstone;
+        } else {
+            used++;
+        }
+        keys[i] = key;
+        values[i] = value;
+        states[i] = LIVE;
+        size++;
+        if (used > (keys.length >> 1) + (keys.length >> 2)) {
+            rehash();
+        }
+    }
+
+    // Returns the removed value, or missing if the key was absent
+    long remove(long key, long missing) {
+        int i = slotOf(key);
+        if (i < 0) return missing;
+        states[i] = REMOVED;
+        size--;
+        return values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // The current key and state arrays, for iterating without copying. A rehash
+    // replaces both and never changes arrays a caller already holds.
+    long[] keySlots() {
+        return keys;
+    }
+
+    byte[] stateSlots() {
+        return states;
+    }
+
+    static boolean isLive(byte state) {
+        return state == LIVE;
+    }
+
+    void forEachKey(LongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (states[i] == LIVE) action.accept(keys[i]);
+        }
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int i = (int) LongHashMap.mix(key) & mask;
+        while (states[i] != FREE) {
+            if (states[i] == LIVE && keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        byte[] oldStates = states;
+        int capacity = MIN_CAPACITY;
+        while (capacity - (capacity >> 2) <= size * 2) {
+            capacity <<= 1;
+        }
+        long[] newKeys = new long[capacity];
+        long[] newValues = new long[capacity];
+        byte[] newStates = new byte[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldStates[j] != LIVE) continue;
+            int i = (int) LongHashMap.mix(oldKeys[j]) & mask;
+            while (newStates[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            newKeys[i] = oldKeys[j];
+            newValues[i] = oldValues[j];
+            newStates[i] = LIVE;
+        }
+        states = newStates;
+        values = newValues;
+        keys = newKeys;
+        used = size;
+    }
+}
@@ -0,0 +1,195 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+// A grouped aggregate kept current from its Repository's change stream, e.g.
+// product count and revenue per category. Each write takes the old row out of
+// its group and adds the new one, so nothing is ever rescanned and reading a
+// group is one map lookup. Group totals are replaced rather than mutated, and
+// whole-view reads are validated against the writer, so a read never sees an
+// entity half moved between groups. The rendered JSON is cached until the
+// next write.
+public final class MaterializedView {
+    // ConcurrentHashMap has no null keys; stands in for a null group value
+    private static final Object NULL_KEY = new Object();
+
+    private final String name;
+    private final Schema schema;
+    private final Aggregation aggregation;
+    private final Condition filter;
+    private final int[] fields;
+    private final boolean[] extremes;
+    private final Map<Object, long[]> groups = new ConcurrentHashMap<>();
+    // Per group and numeric field with min or max: occurrences of each value,
+    // so that removing the current minimum falls back to the next one. Only
+    // the writer touches these.
+    private final Map<Object, List<TreeMap<Long, Long>>> values = new HashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private volatile long version;
+    private volatile Rendered rendered;
+
+    private static final class Rendered {
+        final long version;
+        final String json;
+
+        Rendered(long version, String json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    MaterializedView(String name, Schema schema, ViewDefinition definition) {
+        this.name = name;
+        this.schema = schema;
+        this.aggregation = definition.compile(schema);
+        this.filter = definition.filter() == null ? null : definition.filter().bind(schema);
+        this.fields = aggregation.fields();
+        this.extremes = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            extremes[i] = aggregation.reportsExtremes(i);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // Registered as a ChangeListener, so calls arrive one at a time
+    void update(long id, Object[] before, Object[] after) {
+        long stamp = lock.writeLock();
+        try {
+            if (before != null && matches(before)) apply(before, -1);
+            if (after != null && matches(after)) apply(after, 1);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean matches(Object[] row) {
+        return filter == null || filter.test(schema, row);
+    }
+
+    private void apply(Object[] row, int sign) {
+        Object key = aggregation.key(row);
+        if (key == null) key = NULL_KEY;
+        long[] current = groups.get(key);
+        long[] totals = current == null ? aggregation.newTotals() : current.clone();
+        totals[0] += sign;
+        if (totals[0] == 0) {
+            groups.remove(key);
+            values.remove(key);
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            Object value = row[fields[i]];
+            if (value == null) continue;
+            long x = ((Number) value).longValue();
+            int base = 1 + 4 * i;
+            totals[base] += sign;
+            totals[base + 1] += sign * x;
+            if (!extremes[i]) continue;
+            TreeMap<Long, Long> counts = counts(key, i);
+            long occurrences = counts.getOrDefault(x, 0L) + sign;
+            if (occurrences == 0) {
+                counts.remove(x);
+            } else {
+                counts.put(x, occurrences);
+            }
+            totals[base + 2] = counts.isEmpty() ? Long.MAX_VALUE : counts.firstKey();
+            totals[base + 3] = counts.isEmpty() ? Long.MIN_VALUE : counts.lastKey();
+        }
+        groups.put(key, totals);
+    }
+
+    private TreeMap<Long, Long> counts(Object key, int field) {
+        List<TreeMap<Long, Long>> perField = values.computeIfAbsent(key, k -> {
+            List<TreeMap<Long, Long>> list = new ArrayList<>();
+            for (int i = 0; i < fields.length; i++) {
+                list.add(extremes[i] ? new TreeMap<>() : null);
+            }
+            return list;
+        });
+        return perField.get(field);
+    }
+
+    // {"groups":[...]} in the same shape as /_aggregate
+    public String toJson() {
+        Rendered current = rendered;
+        if (current != null && current.version == version) return current.json;
+        current = read(() -> {
+            Map<Object, long[]> snapshot = new HashMap<>();
+            groups.forEach((key, totals) -> snapshot.put(key == NULL_KEY ? null : key, totals));
+            return new Rendered(version, aggregation.toJson(snapshot));
+        });
+        rendered = current;
+        return current.json;
+    }
+
+    // Optimistic read, retried under the read lock if a write overlapped it
+    private <R> R read(Supplier<R> reader) {
+        long stamp = lock.tryOptimisticRead();
+        R result = reader.get();
+        if (lock.validate(stamp)) return result;
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // The group key is one value per groupBy field, in order, and empty for
+    // a view without groupBy. Groups with no entities count 0.
+    public long count(Object... key) {
+        long[] totals = totals(key);
+        return totals == null ? 0 : totals[0];
+    }
+
+    public long sum(String field, Object... key) {
+        long[] totals = totals(key);
+        return totals == null ? 0 : totals[base(field, false) + 1];
+    }
+
+    // Min, max and average of a group without values are null
+    public Long min(String field, Object... key) {
+        int base = base(field, true);
+        long[] totals = totals(key);
+        return totals == null || totals[base] == 0 ? null : totals[base + 2];
+    }
+
+    public Long max(String field, Object... key) {
+        int base = base(field, true);
+        long[] totals = totals(key);
+        return totals == null || totals[base] == 0 ? null : totals[base + 3];
+    }
+
+    public Double avg(String field, Object... key) {
+        int base = base(field, false);
+        long[] totals = totals(key);
+        return totals == null || totals[base] == 0 ? null : (double) totals[base + 1] / totals[base];
+    }
+
+    private long[] totals(Object[] key) {
+        Object groupKey = aggregation.groupKey(key);
+        return groups.get(groupKey == null ? NULL_KEY : groupKey);
+    }
+
+    // Min and max are only exact for fields the view was declared with
+    private int base(String field, boolean extreme) {
+        int position = schema.require(field);
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != position) continue;
+            if (extreme && !extremes[i]) break;
+            return 1 + 4 * i;
+        }
+        throw new IllegalArgumentException("View " + name + " does not aggregate " + (extreme ? "min/max of " : "") + field);
+    }
+}
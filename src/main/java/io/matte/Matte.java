@@ -5,16 +5,24 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class Matte {
     private final Map<String, EntityController<?>> controllers = new HashMap<>();
     private final Map<String, Repository<?>> repositories = new HashMap<>();
     private HttpServer server;
+    private ExecutorService executor;
+    private ExecutorService queryExecutor;
     private final int port;
 
     public Matte() {
@@ -26,9 +34,15 @@ public class Matte {
     }
 
     public <T extends Entity> Matte register(String resourceName, EntityFactory<T> factory) {
+        return register(resourceName, factory, f -> new HeapEntityStore<>());
+    }
+
+    // Registers an entity backed by a specific store, e.g. ColumnarEntityStore::new
+    public <T extends Entity> Matte register(String resourceName, EntityFactory<T> factory,
+                                             Function<EntityFactory<T>, EntityStore<T>> storeFactory) {
         // Create repository and controller for this entity
-        Repository<T> repository = new Repository<>(resourceName);
-        EntityController<T> controller = new EntityController<>(repository, resourceName, factory);
+        Repository<T> repository = new Repository<>(resourceName, factory, storeFactory.apply(factory));
+        EntityController<T> controller = new EntityController<>(repository, resourceName, factory, repositories::get);
         
         // Store them
         controllers.put(resourceName, controller);
@@ -101,6 +115,39 @@ public class Matte {
             }
         });
 
+        // Composite endpoint: several resource queries in one request, results
+        // streamed back as each completes
+        server.createContext("/api/_query", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    exchange.sendResponseHeaders(405, 0);
+                    exchange.getResponseBody().close();
+                    return;
+                }
+
+                CompositeQuery query;
+                try {
+                    query = CompositeQuery.parse(new String(exchange.getRequestBody().readAllBytes()));
+                } catch (IllegalArgumentException e) {
+                    String error = "{\"error\":\"" + JsonSerializer.escape(e.getMessage()) + "\",\"status\":400}";
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, error.getBytes().length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(error.getBytes());
+                    os.close();
+                    return;
+                }
+
+                // Length 0 selects a chunked response, so finished results go out early
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, 0);
+                try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                    query.execute(controllers::get, queryExecutor, out);
+                }
+            }
+        });
+
         // Create context for each registered entity
         for (Map.Entry<String, EntityController<?>> entry : controllers.entrySet()) {
             String resourceName = entry.getKey();
@@ -111,6 +158,10 @@ public class Matte {
                 public void handle(HttpExchange exchange) throws IOException {
                     String method = exchange.getRequestMethod();
                     String path = exchange.getRequestURI().getPath();
+                    String query = exchange.getRequestURI().getRawQuery();
+                    if (query != null) {
+                        path = path + "?" + query;
+                    }
                     
                     String body = "";
                     if (method.equals("POST") || method.equals("PUT")) {
@@ -128,7 +179,12 @@ public class Matte {
             });
         }
 
-        server.setExecutor(null);
+        // Repositories are thread-safe, so requests are served in parallel
+        executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        server.setExecutor(executor);
+        // Composite queries get their own bounded pool: their handlers block
+        // on the parts, which must not queue behind them on the server's pool
+        queryExecutor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
         server.start();
 
         System.out.println("\n🚀 Server started on http://localhost:" + port);
@@ -179,12 +235,29 @@ public class Matte {
         for (String resourceName : controllers.keySet()) {
             System.out.println("\n📋 " + capitalize(resourceName) + " endpoints:");
             System.out.println("  GET    /api/" + resourceName + "          - Get all " + resourceName);
+            System.out.println("  GET    /api/" + resourceName + "?field=v  - Filter " + resourceName + " by field value");
+            System.out.println("  GET    /api/" + resourceName + "?filter=expr - Filter by expression, e.g. price > 10");
+            System.out.println("  GET    /api/" + resourceName + "?field.contains=v - Substring filter on " + resourceName);
+            System.out.println("  GET    /api/" + resourceName + "?q=text   - Full-text search " + resourceName);
+            System.out.println("  GET    /api/" + resourceName + "/_count?field=v - Count matching " + resourceName);
+            System.out.println("  GET    /api/" + resourceName + "?field=v&explain - Show the query plan");
+            System.out.println("  GET    /api/" + resourceName + "?ids=1,2,3 - Get several " + resourceName + " by ID");
+            System.out.println("  POST   /api/" + resourceName + "/_mget     - Get " + resourceName + " by a list of IDs");
+            System.out.println("  GET    /api/" + resourceName + "/_suggest?field=f&prefix=p - Autocomplete " + resourceName);
+            System.out.println("  GET    /api/" + resourceName + "/_aggregate?groupBy=f&sum=n&count - Grouped metrics");
+            System.out.println("  GET    /api/" + resourceName + "/_views/{name} - Read a materialized view");
+            System.out.println("  GET    /api/" + resourceName + "/_stats?field=f - Approximate field statistics");
+            System.out.println("  POST   /api/" + resourceName + "/_live?field=v - Register a live query");
+            System.out.println("  GET    /api/" + resourceName + "/_live/{id} - Changes since the last poll");
             System.out.println("  GET    /api/" + resourceName + "/{id}     - Get " + resourceName.substring(0, resourceName.length() - 1) + " by ID");
             System.out.println("  POST   /api/" + resourceName + "          - Create new " + resourceName.substring(0, resourceName.length() - 1));
             System.out.println("  PUT    /api/" + resourceName + "/{id}     - Update " + resourceName.substring(0, resourceName.length() - 1));
             System.out.println("  DELETE /api/" + resourceName + "/{id}     - Delete " + resourceName.substring(0, resourceName.length() - 1) + " by ID");
         }
         
+        System.out.println("\n🧩 Composite queries:");
+        System.out.println("  POST   /api/_query             - Run several resource queries in one request");
+        
         System.out.println("\n📝 Example commands:");
         String firstResource = controllers.keySet().iterator().next();
         System.out.println("  curl http://localhost:" + port + "/api/" + firstResource);
@@ -198,6 +271,8 @@ public class Matte {
     public void stop() {
         if (server != null) {
             server.stop(0);
+            executor.shutdown();
+            queryExecutor.shutdown();
             System.out.println("🛑 Server stopped");
         }
     }
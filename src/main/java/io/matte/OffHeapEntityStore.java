@@ -0,0 +1,388 @@
+package io.matte;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+// Keeps entities encoded in direct (native) memory so the garbage collector
+// never traces them; only the primitive id -> address index lives on the heap.
+//
+// Memory comes from fixed-size slabs carved into power-of-two blocks. Freed
+// blocks go onto a per-size free list whose links are stored inside the
+// freed blocks themselves. An address packs the slab number into the high
+// 32 bits and the offset within the slab into the low 32 bits.
+//
+// Supports String, Integer, Long and Boolean fields.
+// Usage: new Matte().register("events", Event::new, OffHeapEntityStore::new)
+public class OffHeapEntityStore<T extends Entity> implements EntityStore<T> {
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private static final int MIN_BLOCK = 32;
+    private static final int CHUNK = 1024;
+    private static final long NONE = -1;
+
+    private final EntityFactory<T> factory;
+    private final Schema schema;
+    private final int slabSize;
+    private final StampedLock lock = new StampedLock();
+
+    private final LongLongHashMap addresses = new LongLongHashMap();
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final long[] freeLists;
+    private int slabPosition;
+
+    public OffHeapEntityStore(EntityFactory<T> factory) {
+        this(factory, DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapEntityStore(EntityFactory<T> factory, int slabSize) {
+        if (Integer.bitCount(slabSize) != 1 || slabSize < MIN_BLOCK) {
+            throw new IllegalArgumentException("Slab size must be a power of two of at least " + MIN_BLOCK);
+        }
+        this.factory = factory;
+        this.schema = Schema.of(factory.create());
+        this.slabSize = slabSize;
+        this.freeLists = new long[sizeClassOf(slabSize) + 1];
+        Arrays.fill(freeLists, NONE);
+        this.slabPosition = slabSize; // forces the first slab to be allocated
+        for (int i = 0; i < schema.size(); i++) {
+            Class<?> type = schema.type(i);
+            if (type != String.class && type != Integer.class && type != Long.class && type != Boolean.class) {
+                throw new IllegalArgumentException("Unsupported off-heap field type " + type.getSimpleName()
+                    + " for field " + schema.name(i));
+            }
+        }
+    }
+
+    @Override
+    public T get(long id) {
+        byte[] record = null;
+        boolean valid = false;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                record = copyRecord(id);
+                valid = lock.validate(stamp);
+            } catch (RuntimeException e) {
+                // Raced with a writer adding slabs; retry under the lock
+            }
+        }
+        if (!valid) {
+            stamp = lock.readLock();
+            try {
+                record = copyRecord(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return record == null ? null : decode(record);
+    }
+
+    // Copies the raw block to the heap. Under an optimistic stamp the bytes may
+    // be stale; callers only decode them once the stamp has been validated.
+    private byte[] copyRecord(long id) {
+        long address = addresses.get(id, NONE);
+        if (address == NONE) return null;
+        int slab = (int) (address >>> 32);
+        int offset = (int) address;
+        if (slab >= slabs.size()) return null;
+        ByteBuffer buffer = slabs.get(slab).duplicate();
+        int sizeClass = buffer.get(offset);
+        if (sizeClass < 0 || sizeClass >= freeLists.length) return null;
+        byte[] record = new byte[Math.min(blockSize(sizeClass), slabSize - offset)];
+        buffer.position(offset);
+        buffer.get(record);
+        return record;
+    }
+
+    @Override
+    public boolean copiesOnRead() {
+        return true;
+    }
+
+    @Override
+    public void put(long id, T entity) {
+        byte[] record = encode(entity);
+        if (record.length > slabSize) {
+            throw new IllegalArgumentException("Entity " + id + " needs " + record.length
+                + " bytes, more than the slab size of " + slabSize + ": record too large");
+        }
+        int sizeClass = sizeClassOf(record.length);
+        record[0] = (byte) sizeClass;
+        long stamp = lock.writeLock();
+        try {
+            long address = addresses.get(id, NONE);
+            if (address != NONE && blockClass(address) != sizeClass) {
+                free(address);
+                address = NONE;
+            }
+            if (address == NONE) {
+                address = allocate(sizeClass);
+                addresses.put(id, address);
+            }
+            write(address, record);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            long address = addresses.remove(id, NONE);
+            if (address == NONE) return false;
+            free(address);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return addresses.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Copies records a chunk at a time and decodes them without the lock held
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        spliterator().forEachRemaining(action);
+    }
+
+    // Walks the slots of the id index as they were when this was called,
+    // without copying the ids. Weakly consistent: entities removed meanwhile
+    // are skipped, and ones added meanwhile may or may not be visited.
+    // Splits by slot range.
+    @Override
+    public Spliterator<T> spliterator() {
+        long stamp = lock.readLock();
+        try {
+            long[] keys = addresses.keySlots();
+            return new RecordSpliterator(keys, addresses.stateSlots(), 0, keys.length);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private final class RecordSpliterator implements Spliterator<T> {
+        private final long[] keys;
+        private final byte[] states;
+        private final List<byte[]> chunk = new ArrayList<>();
+        private int slot;
+        private int end;
+        private int next;
+
+        RecordSpliterator(long[] keys, byte[] states, int slot, int end) {
+            this.keys = keys;
+            this.states = states;
+            this.slot = slot;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (next == chunk.size()) {
+                if (slot == end) return false;
+                chunk.clear();
+                next = 0;
+                long stamp = lock.readLock();
+                try {
+                    int last = Math.min(end, slot + CHUNK);
+                    for (; slot < last; slot++) {
+                        if (!LongLongHashMap.isLive(states[slot])) continue;
+                        byte[] record = copyRecord(keys[slot]);
+                        if (record != null) chunk.add(record);
+                    }
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            action.accept(decode(chunk.get(next++)));
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (end - slot < 2 * CHUNK) return null;
+            int middle = (slot + end) >>> 1;
+            Spliterator<T> upper = new RecordSpliterator(keys, states, middle, end);
+            end = middle;
+            return upper;
+        }
+
+        // Counts slots rather than entities, so it overestimates
+        @Override
+        public long estimateSize() {
+            return chunk.size() - next + end - slot;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | CONCURRENT;
+        }
+    }
+
+    // Native memory reserved by the slabs, including free blocks
+    public long reservedBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) slabs.size() * slabSize;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long allocate(int sizeClass) {
+        long head = freeLists[sizeClass];
+        if (head != NONE) {
+            freeLists[sizeClass] = slabs.get((int) (head >>> 32)).getLong((int) head + 1);
+            return head;
+        }
+        int size = blockSize(sizeClass);
+        if (slabPosition + size > slabSize) {
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            slabPosition = 0;
+        }
+        long address = ((long) (slabs.size() - 1) << 32) | slabPosition;
+        slabPosition += size;
+        return address;
+    }
+
+    private void free(long address) {
+        int sizeClass = blockClass(address);
+        ByteBuffer slab = slabs.get((int) (address >>> 32));
+        slab.putLong((int) address + 1, freeLists[sizeClass]);
+        freeLists[sizeClass] = address;
+    }
+
+    private int blockClass(long address) {
+        return slabs.get((int) (address >>> 32)).get((int) address);
+    }
+
+    private void write(long address, byte[] record) {
+        ByteBuffer buffer = slabs.get((int) (address >>> 32)).duplicate();
+        buffer.position((int) address);
+        buffer.put(record);
+    }
+
+    private static int blockSize(int sizeClass) {
+        return MIN_BLOCK << sizeClass;
+    }
+
+    // Bounded by the slab size, so blockSize never overflows
+    private int sizeClassOf(int bytes) {
+        if (bytes > slabSize) throw new IllegalArgumentException("record too large");
+        int sizeClass = 0;
+        while (blockSize(sizeClass) < bytes) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    // Record layout: [size class][per field: tag, value]. Tag 0 means null;
+    // Booleans use tag 1 for false and 2 for true and carry no value.
+    private byte[] encode(T entity) {
+        RecordWriter out = new RecordWriter();
+        out.writeByte(0); // size class, filled in by put
+        for (int i = 0; i < schema.size(); i++) {
+            Object value = schema.value(entity, i);
+            if (value == null) {
+                out.writeByte(0);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? 2 : 1);
+            } else if (value instanceof Integer) {
+                out.writeByte(1);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(1);
+                out.writeLong((Long) value);
+            } else {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(1);
+                out.writeInt(bytes.length);
+                out.writeBytes(bytes);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private T decode(byte[] record) {
+        T entity = factory.create();
+        int pos = 1;
+        for (int i = 0; i < schema.size(); i++) {
+            byte tag = record[pos++];
+            if (tag == 0) continue;
+            Class<?> type = schema.type(i);
+            Object value;
+            if (type == Boolean.class) {
+                value = tag == 2;
+            } else if (type == Integer.class) {
+                value = readInt(record, pos);
+                pos += 4;
+            } else if (type == Long.class) {
+                value = ((long) readInt(record, pos) << 32) | (readInt(record, pos + 4) & 0xFFFFFFFFL);
+                pos += 8;
+            } else {
+                int length = readInt(record, pos);
+                value = new String(record, pos + 4, length, StandardCharsets.UTF_8);
+                pos += 4 + length;
+            }
+            schema.set(entity, i, value);
+        }
+        return entity;
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return (bytes[pos] << 24) | ((bytes[pos + 1] & 0xFF) << 16) | ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF);
+    }
+
+    private static final class RecordWriter {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.matte;
+
+import java.util.Arrays;
+
+// Compressed list of (id, term frequency) postings for one term.
+//
+// The bulk of the list is a byte[] of varint-encoded id deltas and
+// frequencies in ascending id order. Recent additions and removals are
+// buffered next to it and folded in once they reach an eighth of the list,
+// so updates cost amortized O(1) without re-encoding on every write.
+// Not thread-safe.
+final class PostingList {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MIN_PENDING = 32;
+
+    private byte[] data = EMPTY;
+    private int encodedCount;
+
+    private LongLongHashMap added = new LongLongHashMap();
+    private LongHashSet removed = new LongHashSet();
+
+    interface Visitor {
+        void visit(long id, int frequency);
+    }
+
+    void add(long id, int frequency) {
+        added.put(id, frequency);
+        compactIfNeeded();
+    }
+
+    // Only ids currently in the list may be removed
+    void remove(long id) {
+        if (added.remove(id, -1) < 0) {
+            removed.add(id);
+            compactIfNeeded();
+        }
+    }
+
+    int size() {
+        return encodedCount - removed.size() + added.size();
+    }
+
+    // Visits the encoded postings in id order, then the pending additions
+    void forEach(Visitor visitor) {
+        forEachEncoded(visitor);
+        added.forEachKey(id -> visitor.visit(id, (int) added.get(id, 0)));
+    }
+
+    private void forEachEncoded(Visitor visitor) {
+        int pos = 0;
+        long id = 0;
+        for (int n = 0; n < encodedCount; n++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = data[pos++];
+                frequency |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (removed.isEmpty() || !removed.contains(id)) visitor.visit(id, frequency);
+        }
+    }
+
+    long[] toSortedIds() {
+        long[] ids = new long[size()];
+        int[] n = {0};
+        forEach((id, frequency) -> ids[n[0]++] = id);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // Compressed bytes, for memory accounting
+    int encodedBytes() {
+        return data.length;
+    }
+
+    private void compactIfNeeded() {
+        if (added.size() + removed.size() > Math.max(MIN_PENDING, encodedCount >> 3)) {
+            compact();
+        }
+    }
+
+    // Merges the sorted encoded postings with the sorted pending additions
+    private void compact() {
+        long[] newIds = new long[added.size()];
+        int[] n = {0};
+        added.forEachKey(id -> newIds[n[0]++] = id);
+        Arrays.sort(newIds);
+
+        int[] next = {0};
+        Encoder encoder = new Encoder(size());
+        forEachEncoded((id, frequency) -> {
+            while (next[0] < newIds.length && newIds[next[0]] < id) {
+                long newId = newIds[next[0]++];
+                encoder.write(newId, (int) added.get(newId, 0));
+            }
+            encoder.write(id, frequency);
+        });
+        while (next[0] < newIds.length) {
+            long newId = newIds[next[0]++];
+            encoder.write(newId, (int) added.get(newId, 0));
+        }
+        data = encoder.toByteArray();
+        encodedCount = encoder.count;
+        added = new LongLongHashMap();
+        removed = new LongHashSet();
+    }
+
+    private static final class Encoder {
+        private byte[] out;
+        private int pos;
+        private long previous;
+        int count;
+
+        Encoder(int expected) {
+            out = new byte[Math.max(16, expected * 3)];
+        }
+
+        void write(long id, int frequency) {
+            if (out.length - pos < 15) out = Arrays.copyOf(out, out.length * 2);
+            writeVarint(id - previous);
+            writeVarint(frequency);
+            previous = id;
+            count++;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out[pos++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(out, pos);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Radix trie over the lower-cased values of a String field, for
+// search-as-you-type. Each edge carries a whole run of characters, so memory
+// grows with the number of distinct values rather than their total length.
+// Children are kept sorted, which makes a depth-first walk list matches in
+// alphabetical order and lets a suggestion stop after the first few.
+final class PrefixIndex extends EntityIndex {
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final String field;
+    private final int position;
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static final class Node {
+        String label;
+        Node[] children = NO_CHILDREN;
+        LongHashSet ids; // entities whose value ends at this node, or null
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int childIndex(char c) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char m = children[mid].label.charAt(0);
+                if (m < c) low = mid + 1;
+                else if (m > c) high = mid - 1;
+                else return mid;
+            }
+            return -(low + 1);
+        }
+    }
+
+    PrefixIndex(Schema schema, String field) {
+        this.field = field;
+        this.position = schema.require(field);
+        if (schema.type(position) != String.class) {
+            throw new IllegalArgumentException("Prefix index needs a String field: " + field);
+        }
+    }
+
+    String field() {
+        return field;
+    }
+
+    @Override
+    String describe() {
+        return "prefix(" + field + ")";
+    }
+
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        Object oldValue = before == null ? null : before[position];
+        Object newValue = after == null ? null : after[position];
+        if (before != null && after != null && Objects.equals(oldValue, newValue)) return;
+        lock.writeLock().lock();
+        try {
+            if (oldValue != null) remove(normalize((String) oldValue), id);
+            if (newValue != null) insert(normalize((String) newValue), id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ids of the first limit entities whose value starts with the prefix,
+    // ignoring case, in alphabetical order of their values
+    long[] suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = find(normalize(prefix));
+            if (node == null || limit <= 0) return Ids.NONE;
+            Collector collector = new Collector(limit);
+            collector.collect(node);
+            return Arrays.copyOf(collector.ids, collector.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A case-insensitive superset of a startsWith filter; the repository
+    // verifies the case of each candidate
+    @Override
+    boolean supports(Condition condition) {
+        return condition instanceof Condition.Match && ((Condition.Match) condition).field.equals(field)
+            && ((Condition.Match) condition).mode == Condition.Match.Mode.STARTS_WITH;
+    }
+
+    @Override
+    long[] lookup(Condition condition) {
+        if (!supports(condition)) return null;
+        long[] ids = suggest(((Condition.Match) condition).text, Integer.MAX_VALUE);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return count(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(String key, long id) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int slot = node.childIndex(key.charAt(i));
+            if (slot < 0) {
+                Node leaf = new Node(key.substring(i));
+                node.children = inserted(node.children, -(slot + 1), leaf);
+                node = leaf;
+                break;
+            }
+            Node child = node.children[slot];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // Split the edge at the point where the key diverges
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children = new Node[] {child};
+                node.children[slot] = middle;
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.ids == null) node.ids = new LongHashSet();
+        node.ids.add(id);
+    }
+
+    private void remove(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int slot = node.childIndex(key.charAt(i));
+            if (slot < 0) return;
+            Node child = node.children[slot];
+            if (!key.startsWith(child.label, i)) return;
+            path.add(node);
+            node = child;
+            i += child.label.length();
+        }
+        if (node.ids == null || !node.ids.remove(id)) return;
+        if (!node.ids.isEmpty()) return;
+        node.ids = null;
+        if (node == root) return;
+        Node parent = path.get(path.size() - 1);
+        if (node.children.length == 0) {
+            int slot = parent.childIndex(node.label.charAt(0));
+            parent.children = removed(parent.children, slot);
+            if (parent != root && parent.ids == null && parent.children.length == 1) merge(parent);
+        } else if (node.children.length == 1) {
+            merge(node);
+        }
+    }
+
+    // Folds the only child of a value-less node into it
+    private static void merge(Node node) {
+        Node child = node.children[0];
+        node.label = node.label + child.label;
+        node.children = child.children;
+        node.ids = child.ids;
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int slot = node.childIndex(prefix.charAt(i));
+            if (slot < 0) return null;
+            Node child = node.children[slot];
+            int common = commonPrefix(child.label, prefix, i);
+            if (i + common == prefix.length()) return child;
+            if (common < child.label.length()) return null;
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    // Depth-first walk that stops once limit ids are found
+    private static final class Collector {
+        final int limit;
+        long[] ids;
+        int size;
+
+        Collector(int limit) {
+            this.limit = limit;
+            this.ids = new long[Math.min(limit, 64)];
+        }
+
+        void collect(Node node) {
+            if (node.ids != null) {
+                for (long id : node.ids.toSortedArray()) {
+                    if (size == limit) return;
+                    if (size == ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+                    ids[size++] = id;
+                }
+            }
+            for (Node child : node.children) {
+                if (size == limit) return;
+                collect(child);
+            }
+        }
+    }
+
+    private static int count(Node node) {
+        int total = 1;
+        for (Node child : node.children) {
+            total += count(child);
+        }
+        return total;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) i++;
+        return i;
+    }
+
+    private static Node[] inserted(Node[] children, int slot, Node child) {
+        Node[] result = new Node[children.length + 1];
+        System.arraycopy(children, 0, result, 0, slot);
+        result[slot] = child;
+        System.arraycopy(children, slot, result, slot + 1, children.length - slot);
+        return result;
+    }
+
+    private static Node[] removed(Node[] children, int slot) {
+        Node[] result = new Node[children.length - 1];
+        System.arraycopy(children, 0, result, 0, slot);
+        System.arraycopy(children, slot + 1, result, slot, children.length - slot - 1);
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Writes a chosen subset of an entity's fields as JSON, for ?fields=id,name.
+// Names are resolved to schema positions and their "name": prefixes encoded
+// once when compiled, so writing an entity reads only the requested fields
+// and appends straight into the caller's buffer. Optionally leaves out null
+// values altogether, and embeds referenced entities for ?expand=.
+final class Projection {
+    private final Schema schema;
+    private final int[] positions;
+    private final String[] prefixes;
+    private final boolean omitNulls;
+    private final Expansion expansion;
+    // Per position, the expanded field written there, or -1
+    private final int[] expanded;
+
+    private Projection(Schema schema, int[] positions, boolean omitNulls) {
+        this.schema = schema;
+        this.positions = positions;
+        this.omitNulls = omitNulls;
+        this.prefixes = new String[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            prefixes[i] = "\"" + schema.name(positions[i]) + "\":";
+        }
+        this.expansion = null;
+        this.expanded = null;
+    }
+
+    private Projection(Projection projection, Expansion expansion) {
+        this.schema = projection.schema;
+        this.positions = projection.positions;
+        this.prefixes = projection.prefixes;
+        this.omitNulls = projection.omitNulls;
+        this.expansion = expansion;
+        this.expanded = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            expanded[i] = expansion.indexOf(positions[i]);
+        }
+    }
+
+    // fields is a comma-separated list of names, written in that order, or
+    // null for every field in schema order
+    static Projection compile(Schema schema, String fields, boolean omitNulls) {
+        List<Integer> positions = new ArrayList<>();
+        if (fields == null) {
+            for (int i = 0; i < schema.size(); i++) {
+                positions.add(i);
+            }
+        } else {
+            for (String name : fields.split(",")) {
+                if (name.trim().isEmpty()) continue;
+                int position = schema.require(name.trim());
+                if (!positions.contains(position)) positions.add(position);
+            }
+        }
+        return new Projection(schema, positions.stream().mapToInt(Integer::intValue).toArray(), omitNulls);
+    }
+
+    // The same fields with references embedded; per request, since the
+    // expansion holds the entities it resolved
+    Projection expanding(Expansion expansion) {
+        return new Projection(this, expansion);
+    }
+
+    // Resolves the references of everything about to be written in one batch
+    void prepare(List<? extends Entity> entities) {
+        if (expansion != null) expansion.resolve(entities);
+    }
+
+    String toJson(Entity entity) {
+        StringBuilder json = new StringBuilder(16 * positions.length + 2);
+        write(entity, json);
+        return json.toString();
+    }
+
+    void write(Entity entity, StringBuilder json) {
+        json.append('{');
+        boolean first = true;
+        for (int i = 0; i < positions.length; i++) {
+            Object value = schema.value(entity, positions[i]);
+            if (value == null && omitNulls) continue;
+            if (!first) json.append(',');
+            first = false;
+            json.append(prefixes[i]);
+            if (expanded != null && expanded[i] >= 0) {
+                expansion.write(expanded[i], value, json);
+            } else if (value instanceof String) {
+                json.append('"').append(JsonSerializer.escape((String) value)).append('"');
+            } else {
+                json.append(value);
+            }
+        }
+        json.append('}');
+    }
+}
@@ -0,0 +1,228 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Fluent, typed query over a repository, built from an entity's fields:
+//
+//     Product p = new Product();
+//     List<Product> cheap = repository.query()
+//         .where(p.price).between(10, 100)
+//         .where(p.category).eq("Kitchen")
+//         .orderBy(p.price)
+//         .thenBy(p.name)
+//         .limit(50)
+//         .list();
+//
+// Conditions on different calls to where are combined with and. Nothing runs
+// until a terminal method (stream, list, first, count, exists) is called;
+// results are then fetched lazily, through the same planner and indexes as
+// Repository.find. A query can be run more than once.
+//
+// Ties on every order field are broken by id, and without orderBy results are
+// in id order wherever an order is needed. With a limit, ordering by fields
+// without a sorted index keeps only the best limit matches (top-K) rather than
+// sorting them all. For keyset pagination, pass the last entity of a page to
+// after(...) to get the next one.
+public final class Query<T extends Entity> {
+    private final Repository<T> repository;
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<String> orderFields = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>();
+    private long limit = Long.MAX_VALUE;
+    private long offset;
+    private T after;
+    private Object[] afterValues;
+    private Long afterId;
+
+    Query(Repository<T> repository) {
+        this.repository = repository;
+    }
+
+    public <V> Where<T, V> where(Field<V> field) {
+        return new Where<>(this, field.fieldName().toString());
+    }
+
+    public Query<T> where(Condition condition) {
+        if (condition != null) conditions.add(condition);
+        return this;
+    }
+
+    public Query<T> orderBy(Field<?> field) {
+        return orderBy(field.fieldName().toString(), false);
+    }
+
+    public Query<T> orderByDescending(Field<?> field) {
+        return orderBy(field.fieldName().toString(), true);
+    }
+
+    // Orders entities that tie on the previous order fields
+    public Query<T> thenBy(Field<?> field) {
+        return thenBy(field.fieldName().toString(), false);
+    }
+
+    public Query<T> thenByDescending(Field<?> field) {
+        return thenBy(field.fieldName().toString(), true);
+    }
+
+    Query<T> orderBy(String field, boolean descending) {
+        orderFields.clear();
+        this.descending.clear();
+        return thenBy(field, descending);
+    }
+
+    Query<T> thenBy(String field, boolean descending) {
+        orderFields.add(field);
+        this.descending.add(descending);
+        return this;
+    }
+
+    public Query<T> limit(long limit) {
+        if (limit < 0) throw new IllegalArgumentException("Limit must not be negative");
+        this.limit = limit;
+        return this;
+    }
+
+    // Skips matches before applying the limit; costs O(offset)
+    public Query<T> skip(long offset) {
+        if (offset < 0) throw new IllegalArgumentException("Offset must not be negative");
+        this.offset = offset;
+        return this;
+    }
+
+    // Resumes after the given entity, normally the last of the previous page
+    public Query<T> after(T entity) {
+        if (entity != null && entity.id.get() == null) throw new IllegalArgumentException("Entity has no id");
+        this.after = entity;
+        this.afterId = null;
+        return this;
+    }
+
+    // Resumes after the key of an entity rather than the entity itself, as
+    // decoded from a page cursor: one value per order field, then the id
+    Query<T> after(Object[] values, long id) {
+        this.after = null;
+        this.afterValues = values;
+        this.afterId = id;
+        return this;
+    }
+
+    public Stream<T> stream() {
+        Schema schema = repository.schema();
+        if (schema == null) return Stream.empty();
+        Condition bound = condition(schema);
+        Stream<T> matches;
+        if (orderFields.isEmpty() && after == null && afterId == null) {
+            matches = repository.stream(bound);
+        } else {
+            Sort sort = orderFields.isEmpty() ? Sort.of(schema, "id", false) : Sort.of(schema, orderFields, descending);
+            Object[] values = after != null ? sort.key(after) : afterValues;
+            Long id = after != null ? after.id.get() : afterId;
+            if (values != null && values.length != sort.size()) {
+                throw new IllegalArgumentException("Resume key does not match order " + sort);
+            }
+            long wanted = limit == Long.MAX_VALUE ? limit : Math.min(Long.MAX_VALUE - offset, limit) + offset;
+            matches = repository.stream(sort, bound, values, id, wanted);
+        }
+        if (offset > 0) matches = matches.skip(offset);
+        return limit == Long.MAX_VALUE ? matches : matches.limit(limit);
+    }
+
+    public List<T> list() {
+        return stream().collect(Collectors.toList());
+    }
+
+    public Optional<T> first() {
+        return stream().findFirst();
+    }
+
+    // Counts from bitmap cardinality when bitmap indexes cover the conditions
+    public long count() {
+        Schema schema = repository.schema();
+        if (schema == null) return 0;
+        if (after != null || afterId != null) return stream().count();
+        Condition bound = condition(schema);
+        long count = bound == null ? repository.count() : repository.count(bound);
+        return Math.min(Math.max(count - offset, 0), limit);
+    }
+
+    // Stops at the first match
+    public boolean exists() {
+        if (after != null || afterId != null || offset > 0) return stream().findAny().isPresent();
+        return limit > 0 && repository.stream(condition(repository.schema())).findAny().isPresent();
+    }
+
+    private Condition condition(Schema schema) {
+        if (schema == null || conditions.isEmpty()) return null;
+        Condition condition = conditions.size() == 1 ? conditions.get(0) : new Condition.And(new ArrayList<>(conditions));
+        return condition.bind(schema);
+    }
+
+    // Conditions on one field; each adds to the query and returns it
+    public static final class Where<T extends Entity, V> {
+        private final Query<T> query;
+        private final String field;
+
+        Where(Query<T> query, String field) {
+            this.query = query;
+            this.field = field;
+        }
+
+        public Query<T> eq(V value) {
+            return query.where(Condition.eq(field, value));
+        }
+
+        public Query<T> ne(V value) {
+            return query.where(Condition.ne(field, value));
+        }
+
+        public Query<T> gt(V value) {
+            return query.where(Condition.gt(field, value));
+        }
+
+        public Query<T> gte(V value) {
+            return query.where(Condition.gte(field, value));
+        }
+
+        public Query<T> lt(V value) {
+            return query.where(Condition.lt(field, value));
+        }
+
+        public Query<T> lte(V value) {
+            return query.where(Condition.lte(field, value));
+        }
+
+        // Inclusive on both ends
+        public Query<T> between(V lower, V upper) {
+            return query.where(Condition.between(field, lower, upper));
+        }
+
+        @SafeVarargs
+        public final Query<T> in(V... values) {
+            return query.where(Condition.in(field, values));
+        }
+
+        public Query<T> isNull() {
+            return query.where(Condition.eq(field, null));
+        }
+
+        public Query<T> isNotNull() {
+            return query.where(Condition.ne(field, null));
+        }
+
+        public Query<T> contains(String text) {
+            return query.where(Condition.contains(field, text));
+        }
+
+        public Query<T> startsWith(String text) {
+            return query.where(Condition.startsWith(field, text));
+        }
+
+        public Query<T> endsWith(String text) {
+            return query.where(Condition.endsWith(field, text));
+        }
+    }
+}
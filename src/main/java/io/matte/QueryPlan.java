@@ -0,0 +1,77 @@
+package io.matte;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+// How Repository answers one filter: the index lookups whose ids are
+// intersected into candidates, or a full scan when there are none. Each
+// candidate is still checked against the filter, except that an exact plan
+// (bitmap indexes covering the whole filter) yields precisely the matches.
+final class QueryPlan {
+    final Condition condition;
+    final List<Step> steps;
+    final boolean exact;
+    final double estimatedRows;
+    final double cost;
+    final long rows;
+
+    static final class Step {
+        final String access;
+        final Condition condition;
+        final double estimatedRows;
+        private final Supplier<long[]> lookup;
+
+        Step(String access, Condition condition, double estimatedRows, Supplier<long[]> lookup) {
+            this.access = access;
+            this.condition = condition;
+            this.estimatedRows = estimatedRows;
+            this.lookup = lookup;
+        }
+    }
+
+    QueryPlan(Condition condition, List<Step> steps, boolean exact, double estimatedRows, double cost, long rows) {
+        this.condition = condition;
+        this.steps = steps;
+        this.exact = exact;
+        this.estimatedRows = estimatedRows;
+        this.cost = cost;
+        this.rows = rows;
+    }
+
+    boolean isScan() {
+        return steps.isEmpty();
+    }
+
+    // Candidate ids in ascending order, or null for a full scan
+    long[] candidates() {
+        long[] result = null;
+        for (Step step : steps) {
+            long[] ids = step.lookup.get();
+            result = result == null ? ids : Ids.intersect(result, ids);
+            if (result.length == 0) break;
+        }
+        return result;
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"filter\":").append(condition == null ? "null" : quote(condition.toString()));
+        json.append(",\"access\":").append(quote(isScan() ? "scan" : exact ? "bitmap" : "index"));
+        json.append(",\"steps\":[");
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (i > 0) json.append(",");
+            json.append("{\"index\":").append(quote(step.access))
+                .append(",\"condition\":").append(quote(step.condition.toString()))
+                .append(",\"estimatedRows\":").append(Math.round(step.estimatedRows)).append("}");
+        }
+        json.append("],\"estimatedRows\":").append(Math.round(estimatedRows));
+        json.append(",\"cost\":").append(Math.round(cost));
+        json.append(",\"rows\":").append(rows);
+        return json.append("}").toString();
+    }
+
+    private static String quote(String text) {
+        return "\"" + JsonSerializer.escape(text) + "\"";
+    }
+}
@@ -0,0 +1,231 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+// Cost-based choice of access path for Repository filters. Selectivities
+// come from exact per-value counts where a hash or bitmap index has them,
+// and otherwise from per-field statistics (null counts, distinct estimates,
+// histograms), assuming independent conjuncts. A plan costs ID_COST per id
+// read from an index plus ROW_COST per candidate fetched and re-checked; a
+// full scan checks every entity. Index lookups for individual conjuncts are
+// added, cheapest first, for as long as intersecting them lowers the cost.
+final class QueryPlanner {
+    // Fallback selectivities where statistics cannot tell
+    private static final double EQUALITY_SELECTIVITY = 0.1;
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+    private static final double SUBSTRING_SELECTIVITY = 0.1;
+    private static final double PREFIX_SELECTIVITY = 0.05;
+
+    // Reading an id from an index is much cheaper than fetching and testing an entity
+    private static final double ID_COST = 0.1;
+    private static final double ROW_COST = 1;
+
+    private static final int WHOLE = -1;
+
+    private final List<EntityIndex> indexes;
+    private final Statistics statistics;
+
+    QueryPlanner(List<EntityIndex> indexes, Statistics statistics) {
+        this.indexes = indexes;
+        this.statistics = statistics;
+    }
+
+    private static final class Path {
+        final QueryPlan.Step step;
+        final int part; // conjunct answered, or WHOLE
+
+        Path(QueryPlan.Step step, int part) {
+            this.step = step;
+            this.part = part;
+        }
+    }
+
+    // rows is the current number of entities; condition must be bound
+    QueryPlan plan(Condition condition, long rows) {
+        if (condition == null) return new QueryPlan(null, Collections.emptyList(), false, rows, rows, rows);
+        double estimate = rows * selectivity(condition);
+        if (coveredByBitmaps(condition)) {
+            QueryPlan.Step step = new QueryPlan.Step("bitmap", condition, estimate,
+                () -> withBitmapOf(condition, RoaringBitmap::toArray));
+            return new QueryPlan(condition, Collections.singletonList(step), true, estimate, estimate * ROW_COST, rows);
+        }
+        List<Path> paths = new ArrayList<>();
+        addPaths(condition, WHOLE, rows, paths);
+        if (condition instanceof Condition.And) {
+            List<Condition> parts = ((Condition.And) condition).conditions;
+            for (int i = 0; i < parts.size(); i++) {
+                addPaths(parts.get(i), i, rows, paths);
+            }
+        }
+        paths.sort(Comparator.comparingDouble(path -> path.step.estimatedRows));
+
+        List<QueryPlan.Step> chosen = new ArrayList<>();
+        List<Integer> covered = new ArrayList<>();
+        double read = 0;
+        double fraction = 1;
+        double cost = rows * ROW_COST;
+        for (Path path : paths) {
+            if (covered.contains(WHOLE) || covered.contains(path.part)) continue;
+            if (path.part == WHOLE && !chosen.isEmpty()) continue;
+            double pathFraction = rows == 0 ? 0 : Math.min(1, path.step.estimatedRows / rows);
+            double candidateCost = (read + path.step.estimatedRows) * ID_COST + rows * fraction * pathFraction * ROW_COST;
+            if (candidateCost >= cost) continue;
+            chosen.add(path.step);
+            covered.add(path.part);
+            read += path.step.estimatedRows;
+            fraction *= pathFraction;
+            cost = candidateCost;
+        }
+        return new QueryPlan(condition, chosen, false, estimate, cost, rows);
+    }
+
+    private void addPaths(Condition condition, int part, long rows, List<Path> paths) {
+        double estimate = rows * selectivity(condition);
+        for (EntityIndex index : indexes) {
+            if (index.supports(condition)) {
+                paths.add(new Path(new QueryPlan.Step(index.describe(), condition, estimate,
+                    () -> index.lookup(condition)), part));
+            }
+        }
+        // Or/Not combinations of bitmap-indexed equalities
+        if (!(condition instanceof Condition.Eq) && coveredByBitmaps(condition)) {
+            paths.add(new Path(new QueryPlan.Step("bitmap", condition, estimate,
+                () -> withBitmapOf(condition, RoaringBitmap::toArray)), part));
+        }
+    }
+
+    // Estimated share of entities matching a bound condition
+    double selectivity(Condition condition) {
+        if (condition instanceof Condition.And) {
+            double fraction = 1;
+            for (Condition part : ((Condition.And) condition).conditions) {
+                fraction *= selectivity(part);
+            }
+            return fraction;
+        }
+        if (condition instanceof Condition.Or) {
+            double missed = 1;
+            for (Condition part : ((Condition.Or) condition).conditions) {
+                missed *= 1 - selectivity(part);
+            }
+            return 1 - missed;
+        }
+        if (condition instanceof Condition.Not) {
+            return 1 - selectivity(((Condition.Not) condition).condition);
+        }
+        long rows = statistics == null ? 0 : statistics.rows();
+        if (rows > 0) {
+            for (EntityIndex index : indexes) {
+                long count = index.count(condition);
+                if (count >= 0) return Math.min(1, (double) count / rows);
+            }
+        }
+        if (condition instanceof Condition.Eq) {
+            Condition.Eq eq = (Condition.Eq) condition;
+            FieldStatistics field = rows > 0 ? statistics.field(eq.field) : null;
+            if (field == null) return EQUALITY_SELECTIVITY;
+            if (eq.value == null) return (double) field.nulls() / rows;
+            return field.values() == 0 ? 0 : (double) field.values() / rows / field.distinct();
+        }
+        if (condition instanceof Condition.Range) {
+            Condition.Range range = (Condition.Range) condition;
+            FieldStatistics field = rows > 0 ? statistics.field(range.field) : null;
+            if (field == null) return RANGE_SELECTIVITY;
+            double fraction = field.rangeFraction(range);
+            return (double) field.values() / rows * (fraction >= 0 ? fraction : RANGE_SELECTIVITY);
+        }
+        if (condition instanceof Condition.Match) {
+            Condition.Match match = (Condition.Match) condition;
+            double fraction = match.mode == Condition.Match.Mode.STARTS_WITH ? PREFIX_SELECTIVITY : SUBSTRING_SELECTIVITY;
+            FieldStatistics field = rows > 0 ? statistics.field(match.field) : null;
+            return field == null ? fraction : (double) field.values() / rows * fraction;
+        }
+        return 1;
+    }
+
+    // Whether bitmap indexes alone can compute the exact matches
+    boolean coveredByBitmaps(Condition condition) {
+        if (condition instanceof Condition.And || condition instanceof Condition.Or) {
+            List<Condition> parts = condition instanceof Condition.And
+                ? ((Condition.And) condition).conditions : ((Condition.Or) condition).conditions;
+            for (Condition part : parts) {
+                if (!coveredByBitmaps(part)) return false;
+            }
+            return !parts.isEmpty();
+        }
+        if (condition instanceof Condition.Not) {
+            return coveredByBitmaps(((Condition.Not) condition).condition);
+        }
+        for (EntityIndex index : indexes) {
+            if (index instanceof BitmapIndex && index.supports(condition)) return true;
+        }
+        return false;
+    }
+
+    // Applies the action to the exact matches of a condition, computed with
+    // bitwise operations over bitmap indexes; only valid when coveredByBitmaps
+    // holds. Index bitmaps are lent under their read locks instead of copied,
+    // so the action must neither modify nor keep the bitmap it is given.
+    <R> R withBitmapOf(Condition condition, Function<RoaringBitmap, R> action) {
+        if (condition instanceof Condition.And || condition instanceof Condition.Or) {
+            boolean and = condition instanceof Condition.And;
+            List<Condition> parts = and ? ((Condition.And) condition).conditions : ((Condition.Or) condition).conditions;
+            return combine(parts, and, 0, null, action);
+        }
+        if (condition instanceof Condition.Not) {
+            Condition excluded = ((Condition.Not) condition).condition;
+            return universe().withAll(all -> withBitmapOf(excluded, ids -> action.apply(all.andNot(ids))));
+        }
+        return bitmapIndex(condition).withBitmap(condition, action);
+    }
+
+    // Number of exact matches from bitmap cardinalities; only valid when
+    // coveredByBitmaps holds. Equalities and negations are counted without
+    // touching ids, and the last AND/OR step only counts its result.
+    long countOf(Condition condition) {
+        if (condition instanceof Condition.And || condition instanceof Condition.Or) {
+            boolean and = condition instanceof Condition.And;
+            List<Condition> parts = and ? ((Condition.And) condition).conditions : ((Condition.Or) condition).conditions;
+            if (parts.size() == 1) return countOf(parts.get(0));
+            Condition last = parts.get(parts.size() - 1);
+            return combine(parts.subList(0, parts.size() - 1), and, 0, null, rest -> withBitmapOf(last, ids -> {
+                long common = rest.andCardinality(ids);
+                return and ? common : rest.cardinality() + ids.cardinality() - common;
+            }));
+        }
+        if (condition instanceof Condition.Not) {
+            return Math.max(0, universe().size() - countOf(((Condition.Not) condition).condition));
+        }
+        return bitmapIndex(condition).count(condition);
+    }
+
+    // Folds parts from i on into the result so far (null before the first)
+    // and applies the action to the outcome; the first part stays lent while
+    // the second is combined with it
+    private <R> R combine(List<Condition> parts, boolean and, int i, RoaringBitmap result,
+                          Function<RoaringBitmap, R> action) {
+        if (i == parts.size()) return action.apply(result);
+        if (result == null) return withBitmapOf(parts.get(i), ids -> combine(parts, and, i + 1, ids, action));
+        RoaringBitmap next = withBitmapOf(parts.get(i), ids -> and ? result.and(ids) : result.or(ids));
+        return combine(parts, and, i + 1, next, action);
+    }
+
+    private BitmapIndex bitmapIndex(Condition condition) {
+        for (EntityIndex index : indexes) {
+            if (index instanceof BitmapIndex && index.supports(condition)) return (BitmapIndex) index;
+        }
+        throw new IllegalStateException("Not covered by bitmap indexes: " + condition);
+    }
+
+    // Any bitmap index knows every live id
+    private BitmapIndex universe() {
+        for (EntityIndex index : indexes) {
+            if (index instanceof BitmapIndex) return (BitmapIndex) index;
+        }
+        throw new IllegalStateException("No bitmap index");
+    }
+}
@@ -1,40 +1,628 @@
 package io.matte;
 
-import java.util.Map;
-import java.util.HashMap;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Repository<T extends Entity> {
+    private static final int MAX_CACHED_FILTERS = 256;
+    // Stores at least this large are aggregated on every core
+    private static final int PARALLEL_THRESHOLD = 50_000;
+
     private final String name;
-    private final Map<Long, T> store = new HashMap<>();
+    private final EntityStore<T> store;
     private final AtomicLong idGenerator = new AtomicLong(1);
+    // Smallest and largest ids ever saved; pages in id order walk this range
+    private final AtomicLong lowestId = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong highestId = new AtomicLong(Long.MIN_VALUE);
+
+    // While listeners are registered, writes are serialized so that every
+    // index sees each change exactly once and in commit order. Without
+    // listeners they only share the lock, so writes to different ids run in
+    // parallel; registering a listener excludes them all. Reads never lock.
+    private final ReentrantReadWriteLock writeLocks = new ReentrantReadWriteLock();
+    private final Lock writeLock = writeLocks.writeLock();
+    private final Lock sharedWriteLock = writeLocks.readLock();
+    private volatile Schema schema;
+    private volatile QueryPlanner planner;
+    private volatile Sketches sketches;
+    private final List<EntityIndex> indexes = new CopyOnWriteArrayList<>();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Last saved field values per id, kept while anything listens for changes
+    // and only for stores that hand out the saved instances themselves: those
+    // are mutated in place, so this is the only record of a field's old value.
+    // Stores that copy on read are asked for the old values instead.
+    private final boolean keepsRows;
+    private final ConcurrentLongMap<Object[]> rows = new ConcurrentLongMap<>();
+    private final Map<String, MaterializedView> views = new ConcurrentHashMap<>();
+    // Reference field -> resource its ids point into
+    private final Map<String, String> references = new ConcurrentHashMap<>();
+    // Parsed and bound filter expressions by text, least recently used evicted
+    private final Map<String, Condition> filters = Collections.synchronizedMap(
+        new LinkedHashMap<String, Condition>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Condition> eldest) {
+                return size() > MAX_CACHED_FILTERS;
+            }
+        });
 
     public Repository(String name) {
+        this(name, new HeapEntityStore<>());
+    }
+
+    public Repository(String name, EntityStore<T> store) {
         this.name = name;
+        this.store = store;
+        this.keepsRows = !store.copiesOnRead();
+    }
+
+    // Reads the schema and declared indexes from a prototype up front instead
+    // of from the first saved entity
+    public Repository(String name, EntityFactory<T> factory, EntityStore<T> store) {
+        this(name, store);
+        initialize(factory.create());
+    }
+
+    private void initialize(T prototype) {
+        writeLock.lock();
+        try {
+            if (schema != null) return;
+            Schema created = Schema.of(prototype);
+            Statistics statistics = prototype.indexes.isEmpty() ? null : new Statistics(created);
+            planner = new QueryPlanner(indexes, statistics);
+            schema = created;
+            for (IndexDefinition definition : prototype.indexes) {
+                EntityIndex index = definition.create(schema);
+                if (definition.target() != null) references.put(definition.field(), definition.target());
+                indexes.add(index);
+                addListener(index);
+            }
+            if (statistics != null) addListener(statistics);
+            if (!prototype.sketches.isEmpty()) {
+                sketches = new Sketches(created, prototype.sketches);
+                addListener(sketches);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Registers a listener and replays the current contents to it as inserts
+    void addListener(ChangeListener listener) {
+        writeLock.lock();
+        try {
+            int idPosition = schema.indexOf("id");
+            listen(listener);
+            if (keepsRows) {
+                rows.forEach(row -> listener.onChange((Long) row[idPosition], null, row));
+            } else {
+                store.forEach(entity -> listener.onChange(entity.id.get(), null, schema.snapshot(entity)));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Called with the write lock held
+    private void listen(ChangeListener listener) {
+        if (listeners.isEmpty() && keepsRows) {
+            store.forEach(entity -> rows.put(entity.id.get(), schema.snapshot(entity)));
+        }
+        listeners.add(listener);
+    }
+
+    void removeListener(ChangeListener listener) {
+        writeLock.lock();
+        try {
+            listeners.remove(listener);
+            // Old values are only kept while someone needs them
+            if (listeners.isEmpty()) rows.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Delivers the entities matching the condition (all of them when null) to
+    // the listener as inserts, then each change to that result as it is
+    // committed, until the returned LiveQuery is closed. The initial result
+    // uses indexes like any query and no write can fall between it and the
+    // first delta.
+    public LiveQuery<T> subscribe(Condition condition, LiveQuery.Listener<T> listener) {
+        Schema current = schema;
+        if (current == null) throw new IllegalStateException("Repository " + name + " has no schema yet");
+        Condition bound = condition == null ? null : condition.bind(current);
+        LiveQuery<T> query = new LiveQuery<>(this, current, bound, listener);
+        writeLock.lock();
+        try {
+            (bound == null ? stream() : stream(bound)).forEach(listener::onInsert);
+            listen(query.changes());
+        } finally {
+            writeLock.unlock();
+        }
+        return query;
+    }
+
+    // Registers a view that is updated from every save and delete from now
+    // on; the entities already stored are folded in first
+    public MaterializedView materialize(String viewName, ViewDefinition definition) {
+        Schema current = schema;
+        if (current == null) throw new IllegalStateException("Repository " + name + " has no schema yet");
+        MaterializedView view = new MaterializedView(viewName, current, definition);
+        if (views.putIfAbsent(viewName, view) != null) {
+            throw new IllegalArgumentException("View " + viewName + " already exists");
+        }
+        addListener(view::update);
+        return view;
+    }
+
+    public MaterializedView view(String viewName) {
+        return views.get(viewName);
+    }
+
+    public List<String> viewNames() {
+        return views.keySet().stream().sorted().collect(Collectors.toList());
+    }
+
+    // Resource the field's ids point into, or null if it is not a reference
+    String referenceTarget(String field) {
+        return references.get(field);
+    }
+
+    // Null unless the entity declares sketched fields
+    Sketches sketches() {
+        return sketches;
+    }
+
+    Schema schema() {
+        return schema;
     }
 
     public T save(T entity) {
+        if (schema == null) initialize(entity);
+        if (listeners.isEmpty()) {
+            sharedWriteLock.lock();
+            try {
+                // Re-checked under the lock, which listeners are added under exclusively
+                if (listeners.isEmpty()) {
+                    store.put(assignId(entity), entity);
+                    return entity;
+                }
+            } finally {
+                sharedWriteLock.unlock();
+            }
+        }
+        writeLock.lock();
+        try {
+            Long id = entity.id.get();
+            Object[] after = null;
+            if (!listeners.isEmpty()) {
+                after = schema.snapshot(entity);
+                for (EntityIndex index : indexes) {
+                    index.check(id, after);
+                }
+            }
+            id = assignId(entity);
+            Object[] before = null;
+            if (after != null) {
+                after[schema.indexOf("id")] = id;
+                before = keepsRows ? rows.put(id, after) : storedRow(id);
+            }
+            store.put(id, entity);
+            if (after != null) {
+                for (ChangeListener listener : listeners) {
+                    listener.onChange(id, before, after);
+                }
+            }
+            return entity;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Field values of the entity stored under the id, read before a write
+    // replaces them
+    private Object[] storedRow(long id) {
+        T stored = store.get(id);
+        return stored == null ? null : schema.snapshot(stored);
+    }
+
+    // Gives a new entity the next id and widens the range of saved ids
+    private long assignId(T entity) {
         Long id = entity.id.get();
         if (id == null) {
             id = idGenerator.getAndIncrement();
             entity.id.set(id);
         }
-        store.put(id, entity);
-        return entity;
+        long value = id;
+        lowestId.accumulateAndGet(value, Math::min);
+        highestId.accumulateAndGet(value, Math::max);
+        return value;
     }
 
     public T findById(Long id) {
+        return id == null ? null : store.get(id);
+    }
+
+    public T findById(long id) {
         return store.get(id);
     }
 
+    // Entities for the ids in request order, null for ids that are not
+    // stored, resolved in one batch against the store
+    public List<T> findAllById(long... ids) {
+        return store.getAll(ids);
+    }
+
     public List<T> findAll() {
-        return new ArrayList<>(store.values());
+        return store.values();
+    }
+
+    // Entities whose field equals the value, answered from a hash index when
+    // the entity declares one on that field
+    public List<T> findBy(String fieldName, Object value) {
+        return find(Condition.eq(fieldName, value));
+    }
+
+    public List<T> find(Condition condition) {
+        List<T> result = new ArrayList<>();
+        Schema current = schema;
+        if (current == null) return result; // nothing saved yet
+        Condition bound = condition.bind(current);
+        long[] ids = planner.plan(bound, store.size()).candidates();
+        if (ids != null) {
+            for (long id : ids) {
+                T entity = store.get(id);
+                // Re-check: the entity may have changed since the index was read
+                if (entity != null && bound.test(entity)) result.add(entity);
+            }
+        } else {
+            store.forEach(entity -> {
+                if (bound.test(entity)) result.add(entity);
+            });
+        }
+        return result;
+    }
+
+    // Values of the given fields, in that order, for each entity matching the
+    // condition (all entities when null). A covering composite index answers
+    // this from its entries without loading any entity.
+    public List<Object[]> select(Condition condition, String... fieldNames) {
+        List<Object[]> rows = new ArrayList<>();
+        Schema current = schema;
+        if (current == null) return rows;
+        int[] projection = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            projection[i] = current.require(fieldNames[i]);
+        }
+        Condition bound = condition == null ? null : condition.bind(current);
+        for (EntityIndex index : indexes) {
+            if (index instanceof CompositeIndex) {
+                List<Object[]> covered = ((CompositeIndex) index).select(bound, projection);
+                if (covered != null) return covered;
+            }
+        }
+        for (T entity : bound == null ? findAll() : find(bound)) {
+            Object[] row = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                row[i] = current.value(entity, projection[i]);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // Entities matching a filter expression such as
+    // "price > 10 and category == 'Kitchen'"; see FilterExpression
+    public List<T> find(String filter) {
+        Condition condition = compile(filter);
+        return condition == null ? new ArrayList<>() : find(condition);
+    }
+
+    // Parses and binds a filter expression, reusing the result for repeated
+    // expressions. Returns null while nothing has been saved yet.
+    Condition compile(String filter) {
+        Schema current = schema;
+        if (current == null) return null;
+        Condition condition = filters.get(filter);
+        if (condition == null) {
+            condition = FilterExpression.parse(filter).bind(current);
+            filters.put(filter, condition);
+        }
+        return condition;
+    }
+
+    // Full-text search over the entity's text index: up to limit entities
+    // matching the optional condition, best BM25 match first
+    public List<T> search(String query, Condition condition, int limit) {
+        List<T> result = new ArrayList<>();
+        Schema current = schema;
+        if (current == null) return result;
+        TextIndex index = null;
+        for (EntityIndex candidate : indexes) {
+            if (candidate instanceof TextIndex) {
+                index = (TextIndex) candidate;
+                break;
+            }
+        }
+        if (index == null) throw new IllegalArgumentException("No text index on " + name);
+        Condition bound = condition == null ? null : condition.bind(current);
+        LongPredicate filter = bound == null ? null : id -> {
+            T entity = store.get(id);
+            return entity != null && bound.test(entity);
+        };
+        for (TextIndex.ScoredId match : index.search(query, limit, filter)) {
+            T entity = store.get(match.id);
+            if (entity != null) result.add(entity);
+        }
+        return result;
+    }
+
+    // Up to limit entities whose String field starts with the prefix, ignoring
+    // case, in alphabetical order. A prefix index on the field answers this
+    // without touching non-matching entities; otherwise it is a scan.
+    public List<T> suggest(String fieldName, String prefix, int limit) {
+        List<T> result = new ArrayList<>();
+        Schema current = schema;
+        if (current == null) return result;
+        int position = current.require(fieldName);
+        if (current.type(position) != String.class) {
+            throw new IllegalArgumentException("Field " + fieldName + " does not support suggestions");
+        }
+        PrefixIndex index = null;
+        for (EntityIndex candidate : indexes) {
+            if (candidate instanceof PrefixIndex && ((PrefixIndex) candidate).field().equals(fieldName)) {
+                index = (PrefixIndex) candidate;
+                break;
+            }
+        }
+        String normalized = PrefixIndex.normalize(prefix);
+        if (index == null) {
+            for (T entity : store.values()) {
+                Object value = current.value(entity, position);
+                if (value != null && PrefixIndex.normalize((String) value).startsWith(normalized)) {
+                    result.add(entity);
+                }
+            }
+            result.sort(Comparator.comparing((T entity) -> PrefixIndex.normalize((String) current.value(entity, position)))
+                .thenComparing(entity -> entity.id.get()));
+            return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+        }
+        for (long id : index.suggest(normalized, limit)) {
+            T entity = store.get(id);
+            if (entity != null) result.add(entity);
+        }
+        return result;
+    }
+
+    // Entities ordered by a field (nulls last, first when descending) that match
+    // the condition, up to limit. With a sorted index on the field this walks
+    // the index and costs O(log n + k) when the condition is a range on it.
+    public List<T> findOrderedBy(String fieldName, boolean descending, Condition condition, int limit) {
+        Schema current = schema;
+        if (current == null) return new ArrayList<>();
+        Condition bound = condition == null ? null : condition.bind(current);
+        return stream(Sort.of(current, fieldName, descending), bound, null, null, limit).limit(limit)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Every entity, read from the store as the stream is consumed rather than
+    // copied first. Weakly consistent: writes made while the stream runs may
+    // or may not be seen, but no entity is seen twice unless it was deleted
+    // and saved again meanwhile.
+    public Stream<T> stream() {
+        return StreamSupport.stream(store.spliterator(), false);
+    }
+
+    // As stream(), split across the common ForkJoin pool
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(store.spliterator(), true);
+    }
+
+    // Typed, lazily evaluated query, e.g.
+    // repository.query().where(product.price).between(10, 100).orderBy(product.name).limit(50)
+    public Query<T> query() {
+        return new Query<>(this);
+    }
+
+    // Matches of a bound condition (every entity when null), fetched as the
+    // stream is consumed. Index candidates are computed up front; a scan
+    // walks the store without copying it where the store supports that.
+    Stream<T> stream(Condition bound) {
+        Stream<T> all = stream();
+        if (bound == null || schema == null) return all;
+        long[] ids = planner.plan(bound, store.size()).candidates();
+        if (ids == null) return all.filter(bound::test);
+        return fetch(LongStream.of(ids), bound);
+    }
+
+    // Matches of a bound condition in sort order, resuming strictly after the
+    // key (afterValues, afterId) when afterId is not null. This is keyset
+    // pagination: with a sorted index on the first sort field, or in id order,
+    // a page costs about its own size however deep it is. Otherwise at most
+    // limit matches are wanted, so only the best limit are kept in a bounded
+    // heap, O(n log limit), instead of sorting every match.
+    Stream<T> stream(Sort sort, Condition bound, Object[] afterValues, Long afterId, long limit) {
+        Schema current = schema;
+        if (current == null) return Stream.empty();
+        Object[] after = null;
+        if (afterId != null) {
+            after = new Object[sort.size()];
+            for (int i = 0; i < after.length; i++) {
+                after[i] = current.coerce(sort.position(i), afterValues[i]);
+            }
+        }
+        Stream<T> ordered;
+        if (sort.size() == 1) {
+            ordered = ordered(current, sort, bound, after == null ? null : after[0], afterId);
+        } else {
+            // Seek to the first field's value; ties are resolved after regrouping
+            Long seek = afterId == null ? null : sort.descending(0) ? Long.MAX_VALUE : Long.MIN_VALUE;
+            ordered = ordered(current, sort, bound, after == null ? null : after[0], seek);
+            if (ordered != null) ordered = sort.regroup(ordered);
+            if (ordered != null && afterId != null) ordered = after(ordered, sort, after, afterId);
+        }
+        if (ordered != null) return ordered;
+        Stream<T> matches = stream(bound);
+        if (afterId != null) matches = after(matches, sort, after, afterId);
+        if (limit < Integer.MAX_VALUE) return sort.top(matches, (int) limit).stream();
+        return matches.sorted(sort::compare);
+    }
+
+    private static <T extends Entity> Stream<T> after(Stream<T> matches, Sort sort, Object[] values, long id) {
+        return matches.filter(entity -> sort.compareTo(entity, values, id) > 0);
+    }
+
+    // Matches in the order of the sort's first field, read from a sorted index
+    // on it or, for id, from the ids themselves. Null when there is no such path.
+    private Stream<T> ordered(Schema current, Sort sort, Condition bound, Object after, Long afterId) {
+        String fieldName = sort.field(0);
+        boolean descending = sort.descending(0);
+        SortedIndex index = sortedIndexOn(fieldName);
+        if (index != null) {
+            PrimitiveIterator.OfLong ids = index.ids(rangeOn(fieldName, bound), descending, after, afterId);
+            return fetch(StreamSupport.longStream(Spliterators.spliteratorUnknownSize(ids, Spliterator.ORDERED), false), bound);
+        }
+        if (sort.position(0) == current.indexOf("id")) return streamById(descending, bound, afterId);
+        return null;
+    }
+
+    // Matches in id order without a sorted index on id: the planner's
+    // candidates when an index narrows the condition, otherwise a walk over
+    // the ids saved so far while that range is dense. Null when neither applies.
+    private Stream<T> streamById(boolean descending, Condition bound, Long afterId) {
+        long[] ids = bound == null ? null : planner.plan(bound, store.size()).candidates();
+        if (ids != null) {
+            int from = 0;
+            int to = ids.length;
+            if (afterId != null) {
+                int at = Arrays.binarySearch(ids, afterId);
+                if (descending) {
+                    to = at >= 0 ? at : -at - 1;
+                } else {
+                    from = at >= 0 ? at + 1 : -at - 1;
+                }
+            }
+            int first = from;
+            int last = to - 1;
+            LongStream range = descending
+                ? IntStream.rangeClosed(first, last).mapToLong(i -> ids[last - (i - first)])
+                : Arrays.stream(ids, from, to);
+            return fetch(range, bound);
+        }
+        long low = lowestId.get();
+        long high = highestId.get();
+        if (low > high) return Stream.empty();
+        if (high - low > 4L * store.size() + 1024) return null;
+        if (afterId != null && descending) high = Math.min(high, afterId - 1);
+        if (afterId != null && !descending) low = Math.max(low, afterId + 1);
+        if (low > high) return Stream.empty();
+        long first = low;
+        long last = high;
+        LongStream range = descending
+            ? LongStream.rangeClosed(0, last - first).map(i -> last - i)
+            : LongStream.rangeClosed(first, last);
+        return fetch(range, bound);
+    }
+
+    private Stream<T> fetch(LongStream ids, Condition bound) {
+        return ids.mapToObj(store::get).filter(entity -> entity != null && (bound == null || bound.test(entity)));
+    }
+
+    private SortedIndex sortedIndexOn(String fieldName) {
+        for (EntityIndex index : indexes) {
+            if (index instanceof SortedIndex && ((SortedIndex) index).field().equals(fieldName)) {
+                return (SortedIndex) index;
+            }
+        }
+        return null;
+    }
+
+    private static Condition.Range rangeOn(String fieldName, Condition condition) {
+        if (condition instanceof Condition.Range && ((Condition.Range) condition).field.equals(fieldName)) {
+            return (Condition.Range) condition;
+        }
+        if (condition instanceof Condition.And) {
+            for (Condition part : ((Condition.And) condition).conditions) {
+                Condition.Range range = rangeOn(fieldName, part);
+                if (range != null) return range;
+            }
+        }
+        return null;
+    }
+
+    // Runs an aggregation over the entities matching the condition (all of
+    // them when null) in a single pass, split across cores for large stores
+    Aggregation.Partial aggregate(Aggregation aggregation, Condition condition) {
+        Schema current = schema;
+        Stream<T> matches = condition == null || current == null ? stream() : stream(condition.bind(current));
+        if (store.size() >= PARALLEL_THRESHOLD) matches = matches.parallel();
+        return matches.collect(aggregation::newPartial, Aggregation.Partial::add, Aggregation.Partial::merge);
+    }
+
+    // Number of entities matching the condition. When bitmap indexes answer
+    // the whole condition it comes from bitmap cardinalities, and neither an
+    // entity nor an index bitmap is copied.
+    public long count(Condition condition) {
+        Schema current = schema;
+        if (current == null) return 0;
+        Condition bound = condition.bind(current);
+        return planner.coveredByBitmaps(bound) ? planner.countOf(bound) : find(bound).size();
+    }
+
+    // The plan find would use for the condition (all entities when null), as
+    // JSON: the chosen index lookups, estimated matches and cost
+    public String explain(Condition condition) {
+        Schema current = schema;
+        if (current == null) return new QueryPlan(condition, Collections.emptyList(), false, 0, 0, 0).toJson();
+        return planner.plan(condition == null ? null : condition.bind(current), store.size()).toJson();
     }
 
     public void deleteById(Long id) {
-        store.remove(id);
+        if (id != null) deleteById(id.longValue());
+    }
+
+    public void deleteById(long id) {
+        if (listeners.isEmpty()) {
+            sharedWriteLock.lock();
+            try {
+                if (listeners.isEmpty()) {
+                    store.remove(id);
+                    return;
+                }
+            } finally {
+                sharedWriteLock.unlock();
+            }
+        }
+        writeLock.lock();
+        try {
+            Object[] before = keepsRows ? rows.remove(id) : listeners.isEmpty() ? null : storedRow(id);
+            store.remove(id);
+            if (before != null) {
+                for (ChangeListener listener : listeners) {
+                    listener.onChange(id, before, null);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public int count() {
@@ -0,0 +1,462 @@
+package io.matte;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// Compressed set of entity ids in the style of Roaring bitmaps. Ids are split
+// into a high key (id >> 16) and a 16-bit low part; each key owns a container
+// that is a sorted char[] while it holds at most 4096 values and a fixed
+// 1024-word bitset beyond that. AND, OR and AND-NOT work container by
+// container, so combining filters costs in proportion to the compressed size
+// rather than the number of ids. Not thread-safe; indexes lend theirs only
+// under their read lock.
+final class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private long[] keys;
+    private Container[] containers;
+    private int size;
+
+    RoaringBitmap() {
+        this(4);
+    }
+
+    private RoaringBitmap(int capacity) {
+        keys = new long[capacity];
+        containers = new Container[capacity];
+    }
+
+    static RoaringBitmap of(long... ids) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (long id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    boolean add(long id) {
+        long key = id >> 16;
+        int i = indexOf(key);
+        if (i < 0) {
+            i = -(i + 1);
+            insertAt(i, key, new ArrayContainer(new char[4], 0));
+        }
+        Container container = containers[i];
+        int before = container.cardinality;
+        containers[i] = container = container.add((char) id);
+        return container.cardinality != before;
+    }
+
+    boolean remove(long id) {
+        int i = indexOf(id >> 16);
+        if (i < 0) return false;
+        Container container = containers[i];
+        int before = container.cardinality;
+        container = container.remove((char) id);
+        if (container.cardinality == 0) {
+            removeAt(i);
+        } else {
+            containers[i] = container;
+        }
+        return container.cardinality != before;
+    }
+
+    boolean contains(long id) {
+        int i = indexOf(id >> 16);
+        return i >= 0 && containers[i].contains((char) id);
+    }
+
+    long cardinality() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality;
+        }
+        return total;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, Math.min(size, other.size)));
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], and(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, size + other.size));
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || other.keys[j] < keys[i]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Size of and(other) without building it
+    long andCardinality(RoaringBitmap other) {
+        long total = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += andCardinality(containers[i], other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    // Ids in this bitmap but not in the other
+    RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, size));
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], andNot(containers[i], other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    RoaringBitmap copy() {
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            result.append(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    // Visits ids in ascending order
+    void forEach(LongConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    long[] toArray() {
+        long[] ids = new long[(int) cardinality()];
+        int[] n = new int[1];
+        forEach(id -> ids[n[0]++] = id);
+        return ids;
+    }
+
+    // Heap footprint of the containers, for comparing against plain id lists
+    long sizeInBytes() {
+        long bytes = keys.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i] instanceof BitmapContainer ? WORDS * 8L : containers[i].cardinality * 2L;
+        }
+        return bytes;
+    }
+
+    private int indexOf(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) low = mid + 1;
+            else if (keys[mid] > key) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    // Adds a container for a key larger than all present; drops empty results
+    private void append(long key, Container container) {
+        if (container == null || container.cardinality == 0) return;
+        insertAt(size, key, container);
+    }
+
+    private void insertAt(int i, long key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    private static Container and(Container a, Container b) {
+        if (a instanceof ArrayContainer) return ((ArrayContainer) a).filter(b, true);
+        if (b instanceof ArrayContainer) return ((ArrayContainer) b).filter(a, true);
+        long[] x = ((BitmapContainer) a).words;
+        long[] y = ((BitmapContainer) b).words;
+        long[] words = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            words[i] = x[i] & y[i];
+        }
+        return BitmapContainer.of(words);
+    }
+
+    private static int andCardinality(Container a, Container b) {
+        if (b instanceof ArrayContainer) {
+            Container swap = a;
+            a = b;
+            b = swap;
+        }
+        int count = 0;
+        if (a instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) a;
+            for (int i = 0; i < array.cardinality; i++) {
+                if (b.contains(array.values[i])) count++;
+            }
+            return count;
+        }
+        long[] x = ((BitmapContainer) a).words;
+        long[] y = ((BitmapContainer) b).words;
+        for (int i = 0; i < WORDS; i++) {
+            count += Long.bitCount(x[i] & y[i]);
+        }
+        return count;
+    }
+
+    private static Container or(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            return ((ArrayContainer) a).union((ArrayContainer) b);
+        }
+        if (a instanceof ArrayContainer) {
+            Container swap = a;
+            a = b;
+            b = swap;
+        }
+        long[] words = ((BitmapContainer) a).words.clone();
+        if (b instanceof ArrayContainer) {
+            ((ArrayContainer) b).setBits(words);
+        } else {
+            long[] y = ((BitmapContainer) b).words;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= y[i];
+            }
+        }
+        return BitmapContainer.of(words);
+    }
+
+    private static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer) return ((ArrayContainer) a).filter(b, false);
+        long[] words = ((BitmapContainer) a).words.clone();
+        if (b instanceof ArrayContainer) {
+            ((ArrayContainer) b).clearBits(words);
+        } else {
+            long[] y = ((BitmapContainer) b).words;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= ~y[i];
+            }
+        }
+        return BitmapContainer.of(words);
+    }
+
+    private abstract static class Container {
+        int cardinality;
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract Container copy();
+
+        abstract void forEach(long high, LongConsumer action);
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) return this;
+            if (cardinality == ARRAY_MAX) {
+                long[] words = new long[WORDS];
+                setBits(words);
+                return new BitmapContainer(words, cardinality).add(value);
+            }
+            i = -(i + 1);
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality + (cardinality >> 1) + 1));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i < 0) return this;
+            System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        void forEach(long high, LongConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        // Values for which other.contains(value) == keep
+        Container filter(Container other, boolean keep) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i]) == keep) result[n++] = values[i];
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        Container union(ArrayContainer other) {
+            char[] result = new char[cardinality + other.cardinality];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j == other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                    result[n++] = values[i++];
+                } else if (i == cardinality || other.values[j] < values[i]) {
+                    result[n++] = other.values[j++];
+                } else {
+                    result[n++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            if (n <= ARRAY_MAX) return new ArrayContainer(result, n);
+            long[] words = new long[WORDS];
+            for (int k = 0; k < n; k++) {
+                words[result[k] >>> 6] |= 1L << result[k];
+            }
+            return new BitmapContainer(words, n);
+        }
+
+        void setBits(long[] words) {
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+
+        void clearBits(long[] words) {
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] &= ~(1L << values[i]);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        // Picks the smaller representation for the given bits
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX) return new BitmapContainer(words, cardinality);
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    values[n++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) return this;
+            words[value >>> 6] &= ~bit;
+            cardinality--;
+            return cardinality <= ARRAY_MAX ? of(words) : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void forEach(long high, LongConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    action.accept(high | (i * 64 + Long.numberOfTrailingZeros(word)));
+                }
+            }
+        }
+    }
+}
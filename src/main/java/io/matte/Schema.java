@@ -0,0 +1,111 @@
+package io.matte;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+// Positional description of an entity type's fields, taken from a prototype
+// instance. Lets stores and indexes address fields by slot instead of by name,
+// and copy an entity's values in or out as a plain Object[] row.
+final class Schema {
+    private final Object[] keys;
+    private final String[] names;
+    private final Class<?>[] types;
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    private Schema(Entity prototype) {
+        int size = prototype.data.size();
+        keys = new Object[size];
+        names = new String[size];
+        types = new Class<?>[size];
+        int i = 0;
+        for (Map.Entry<Object, Field<?>> entry : prototype.data.entrySet()) {
+            keys[i] = entry.getKey();
+            names[i] = entry.getValue().fieldName().toString();
+            types[i] = entry.getValue().type();
+            positions.put(names[i], i);
+            i++;
+        }
+    }
+
+    static Schema of(Entity prototype) {
+        return new Schema(prototype);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String name(int position) {
+        return names[position];
+    }
+
+    Class<?> type(int position) {
+        return types[position];
+    }
+
+    // Returns -1 for unknown field names
+    int indexOf(String name) {
+        Integer position = positions.get(name);
+        return position == null ? -1 : position;
+    }
+
+    int require(String name) {
+        int position = indexOf(name);
+        if (position < 0) throw new IllegalArgumentException("Unknown field: " + name);
+        return position;
+    }
+
+    // Converts a query value, often text from a URL, to the field's type
+    Object coerce(int position, Object value) {
+        Class<?> type = types[position];
+        if (value == null || type.isInstance(value)) return value;
+        String text = value.toString().trim();
+        try {
+            if (type == Integer.class) {
+                return value instanceof Number ? Math.toIntExact(integral((Number) value)) : Integer.valueOf(text);
+            } else if (type == Long.class) {
+                return value instanceof Number ? integral((Number) value) : Long.valueOf(text);
+            } else if (type == Boolean.class) {
+                if (text.equalsIgnoreCase("true")) return Boolean.TRUE;
+                if (text.equalsIgnoreCase("false")) return Boolean.FALSE;
+            } else if (type == String.class) {
+                return value.toString();
+            }
+        } catch (NumberFormatException | ArithmeticException e) {
+            // reported below, instead of matching a wrapped or truncated number
+        }
+        throw new IllegalArgumentException("Invalid value '" + text + "' for field " + names[position]);
+    }
+
+    private static long integral(Number number) {
+        if (number instanceof BigDecimal) return ((BigDecimal) number).longValueExact();
+        if (number instanceof BigInteger) return ((BigInteger) number).longValueExact();
+        if (number instanceof Double || number instanceof Float) {
+            double value = number.doubleValue();
+            if (value != Math.rint(value) || Math.abs(value) >= 0x1p63) throw new ArithmeticException();
+            return (long) value;
+        }
+        return number.longValue();
+    }
+
+    Object value(Entity entity, int position) {
+        Field<?> field = entity.data.get(keys[position]);
+        return field == null ? null : field.get();
+    }
+
+    Object[] snapshot(Entity entity) {
+        Object[] row = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            row[i] = value(entity, i);
+        }
+        return row;
+    }
+
+    @SuppressWarnings("unchecked")
+    void set(Entity entity, int position, Object value) {
+        Field<Object> field = (Field<Object>) entity.data.get(keys[position]);
+        if (field != null) field.set(value);
+    }
+}
@@ -0,0 +1,114 @@
+package io.matte;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Streaming sketches for the fields an entity declares with sketches(...),
+// kept up to date from the repository's change stream: a distinct-count
+// estimate and the most frequent values for every sketched field, and
+// quantiles for Integer and Long ones. Memory is fixed per field however many
+// entities there are, updates and deletes are taken back out exactly, and
+// reads take no lock, so an answer may lag a concurrent write.
+final class Sketches implements ChangeListener {
+    static final double[] DEFAULT_QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Schema schema;
+    private final int[] positions;
+    private final long[] nulls;
+    private final HyperLogLog[] distinct;
+    private final CountMinSketch[] frequencies;
+    private final QuantileSketch[] quantiles;
+    private volatile long rows;
+
+    Sketches(Schema schema, List<String> fields) {
+        this.schema = schema;
+        this.positions = new int[fields.size()];
+        this.nulls = new long[positions.length];
+        this.distinct = new HyperLogLog[positions.length];
+        this.frequencies = new CountMinSketch[positions.length];
+        this.quantiles = new QuantileSketch[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = schema.require(fields.get(i));
+            distinct[i] = new HyperLogLog();
+            frequencies[i] = new CountMinSketch();
+            Class<?> type = schema.type(positions[i]);
+            if (type == Integer.class || type == Long.class) quantiles[i] = new QuantileSketch();
+        }
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        for (int i = 0; i < positions.length; i++) {
+            int position = positions[i];
+            if (before != null && after != null && Objects.equals(before[position], after[position])) continue;
+            if (before != null) update(i, before[position], false);
+            if (after != null) update(i, after[position], true);
+        }
+        if (before == null) rows++;
+        if (after == null) rows--;
+    }
+
+    private void update(int field, Object value, boolean add) {
+        if (value == null) {
+            nulls[field] += add ? 1 : -1;
+        } else if (add) {
+            distinct[field].add(value);
+            frequencies[field].add(value);
+            if (quantiles[field] != null) quantiles[field].add(((Number) value).longValue());
+        } else {
+            distinct[field].remove(value);
+            frequencies[field].remove(value);
+            if (quantiles[field] != null) quantiles[field].remove(((Number) value).longValue());
+        }
+    }
+
+    // {"count":5,"fields":{"price":{"nulls":0,"distinct":4,"quantiles":{"p50":25,...},
+    // "top":[{"value":40,"count":2},...]}}} for the named fields, or all
+    // sketched ones when names is empty
+    String toJson(List<String> names, double[] qs, int top) {
+        StringBuilder json = new StringBuilder("{\"count\":").append(rows).append(",\"fields\":{");
+        boolean first = true;
+        for (int i = 0; i < positions.length; i++) {
+            String name = schema.name(positions[i]);
+            if (!names.isEmpty() && !names.contains(name)) continue;
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(name).append("\":{\"nulls\":").append(nulls[i])
+                .append(",\"distinct\":").append(Math.round(distinct[i].estimate()));
+            if (quantiles[i] != null) {
+                json.append(",\"quantiles\":{");
+                for (int q = 0; q < qs.length; q++) {
+                    if (q > 0) json.append(',');
+                    json.append("\"p").append(BigDecimal.valueOf(qs[q]).movePointRight(2).stripTrailingZeros().toPlainString())
+                        .append("\":").append(quantiles[i].quantile(qs[q]));
+                }
+                json.append('}');
+            }
+            json.append(",\"top\":[");
+            List<Map.Entry<Object, Long>> frequent = frequencies[i].top(top);
+            for (int v = 0; v < frequent.size(); v++) {
+                if (v > 0) json.append(',');
+                json.append("{\"value\":");
+                Object value = frequent.get(v).getKey();
+                if (value instanceof String) {
+                    json.append('"').append(JsonSerializer.escape((String) value)).append('"');
+                } else {
+                    json.append(value);
+                }
+                json.append(",\"count\":").append(frequent.get(v).getValue()).append('}');
+            }
+            json.append("]}");
+        }
+        return json.append("}}").toString();
+    }
+
+    boolean contains(String name) {
+        int position = schema.indexOf(name);
+        for (int sketched : positions) {
+            if (sketched == position) return true;
+        }
+        return false;
+    }
+}
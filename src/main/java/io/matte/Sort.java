@@ -0,0 +1,305 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Order over one or more fields, as in ?sort=price,-name: each field ascending,
+// or descending with a leading '-', with id as the final tie-breaker. Matches
+// the order of a sorted index on the first field: nulls last, and everything
+// (nulls and ids included) reversed when that field is descending. Integer and
+// Long values are compared as primitives rather than through Comparable.
+final class Sort {
+    private final Schema schema;
+    private final String[] fields;
+    private final int[] positions;
+    private final boolean[] descending;
+    private final boolean[] integral;
+
+    private Sort(Schema schema, List<String> fields, List<Boolean> descending) {
+        this.schema = schema;
+        this.fields = fields.toArray(new String[0]);
+        this.positions = new int[this.fields.length];
+        this.descending = new boolean[this.fields.length];
+        this.integral = new boolean[this.fields.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = schema.require(this.fields[i]);
+            this.descending[i] = descending.get(i);
+            Class<?> type = schema.type(positions[i]);
+            integral[i] = type == Integer.class || type == Long.class;
+            if (!integral[i] && !Comparable.class.isAssignableFrom(type)) {
+                throw new IllegalArgumentException("Cannot sort by " + this.fields[i]);
+            }
+        }
+    }
+
+    // Fields after id never decide anything and are dropped
+    static Sort of(Schema schema, List<String> fields, List<Boolean> descending) {
+        if (fields.isEmpty()) throw new IllegalArgumentException("Missing sort field");
+        int id = fields.indexOf("id");
+        if (id >= 0 && id < fields.size() - 1) {
+            return new Sort(schema, fields.subList(0, id + 1), descending.subList(0, id + 1));
+        }
+        return new Sort(schema, fields, descending);
+    }
+
+    static Sort of(Schema schema, String field, boolean descending) {
+        return of(schema, List.of(field), List.of(descending));
+    }
+
+    // "price,-name"
+    static Sort parse(Schema schema, String spec) {
+        List<String> fields = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String field = part.trim();
+            if (field.isEmpty()) continue;
+            boolean reversed = field.startsWith("-");
+            fields.add(reversed ? field.substring(1) : field);
+            descending.add(reversed);
+        }
+        return of(schema, fields, descending);
+    }
+
+    int size() {
+        return fields.length;
+    }
+
+    String field(int i) {
+        return fields[i];
+    }
+
+    int position(int i) {
+        return positions[i];
+    }
+
+    boolean descending(int i) {
+        return descending[i];
+    }
+
+    int compare(Entity a, Entity b) {
+        return compareFrom(0, a, b);
+    }
+
+    // Compares an entity against the key (values, id) of another, where values
+    // holds one value per sort field; used to resume after a page cursor
+    int compareTo(Entity entity, Object[] values, long id) {
+        for (int i = 0; i < positions.length; i++) {
+            int c = compareValues(i, schema.value(entity, positions[i]), values[i]);
+            if (c != 0) return c;
+        }
+        return compareIds(entity.id.get(), id);
+    }
+
+    Object[] key(Entity entity) {
+        Object[] values = new Object[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            values[i] = schema.value(entity, positions[i]);
+        }
+        return values;
+    }
+
+    private int compareFrom(int start, Entity a, Entity b) {
+        for (int i = start; i < positions.length; i++) {
+            int c = compareValues(i, schema.value(a, positions[i]), schema.value(b, positions[i]));
+            if (c != 0) return c;
+        }
+        return compareIds(a.id.get(), b.id.get());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int compareValues(int i, Object a, Object b) {
+        int c;
+        if (a == b) {
+            c = 0;
+        } else if (a == null) {
+            c = 1;
+        } else if (b == null) {
+            c = -1;
+        } else if (integral[i]) {
+            c = Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        } else {
+            c = ((Comparable) a).compareTo(b);
+        }
+        return descending[i] ? -c : c;
+    }
+
+    private int compareIds(long a, long b) {
+        int c = Long.compare(a, b);
+        return descending[0] ? -c : c;
+    }
+
+    // The first k entities in this order, best first, keeping a bounded
+    // max-heap of the best seen so far: O(n log k) time and O(k) space. When
+    // the first field is integral its values sit in a long[] beside the heap,
+    // so most comparisons never touch the entities.
+    <T extends Entity> List<T> top(Stream<T> entities, int k) {
+        if (k <= 0) return new ArrayList<>();
+        Heap<T> heap = new Heap<>(k);
+        entities.sequential().forEach(heap::offer);
+        return heap.drain();
+    }
+
+    // Re-sorts runs of entities that tie on the first field, for a stream
+    // already in first-field order (read from a sorted index). Lazy: holds
+    // one run at a time.
+    <T extends Entity> Stream<T> regroup(Stream<T> ordered) {
+        if (positions.length == 1) return ordered;
+        Iterator<T> source = ordered.iterator();
+        Iterator<T> runs = new Iterator<T>() {
+            private final List<T> run = new ArrayList<>();
+            private int next;
+            private T pending;
+
+            @Override
+            public boolean hasNext() {
+                if (next < run.size()) return true;
+                run.clear();
+                next = 0;
+                if (pending == null && !source.hasNext()) return false;
+                T first = pending != null ? pending : source.next();
+                pending = null;
+                run.add(first);
+                Object value = schema.value(first, positions[0]);
+                while (source.hasNext()) {
+                    T entity = source.next();
+                    if (!Objects.equals(value, schema.value(entity, positions[0]))) {
+                        pending = entity;
+                        break;
+                    }
+                    run.add(entity);
+                }
+                if (run.size() > 1) run.sort(Sort.this::compare);
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return run.get(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(runs, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) spec.append(',');
+            spec.append(descending[i] ? "-" : "").append(fields[i]);
+        }
+        return spec.toString();
+    }
+
+    // Worst of the kept entities at the root
+    private final class Heap<T extends Entity> {
+        private final Object[] entities;
+        private final long[] primary;
+        private final boolean[] present;
+        private int size;
+
+        Heap(int capacity) {
+            entities = new Object[capacity];
+            primary = integral[0] ? new long[capacity] : null;
+            present = integral[0] ? new boolean[capacity] : null;
+        }
+
+        void offer(T entity) {
+            if (size < entities.length) {
+                set(size, entity);
+                up(size++);
+            } else if (compareTo(entity, 0) < 0) {
+                set(0, entity);
+                down(0);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> drain() {
+            Object[] best = Arrays.copyOf(entities, size);
+            List<T> result = new ArrayList<>(size);
+            for (Object entity : best) {
+                result.add((T) entity);
+            }
+            result.sort(Sort.this::compare);
+            return result;
+        }
+
+        private void set(int slot, Entity entity) {
+            entities[slot] = entity;
+            if (primary != null) {
+                Object value = schema.value(entity, positions[0]);
+                present[slot] = value != null;
+                primary[slot] = value == null ? 0 : ((Number) value).longValue();
+            }
+        }
+
+        // An entity not yet in the heap against a slot
+        private int compareTo(Entity entity, int slot) {
+            if (primary == null) return compare(entity, (Entity) entities[slot]);
+            Object value = schema.value(entity, positions[0]);
+            int c = comparePrimary(value != null, value == null ? 0 : ((Number) value).longValue(), slot);
+            return c != 0 ? c : compareFrom(1, entity, (Entity) entities[slot]);
+        }
+
+        private int compareSlots(int a, int b) {
+            if (primary == null) return compare((Entity) entities[a], (Entity) entities[b]);
+            int c = comparePrimary(present[a], primary[a], b);
+            return c != 0 ? c : compareFrom(1, (Entity) entities[a], (Entity) entities[b]);
+        }
+
+        private int comparePrimary(boolean hasValue, long value, int slot) {
+            int c;
+            if (hasValue != present[slot]) {
+                c = hasValue ? -1 : 1;
+            } else {
+                c = hasValue ? Long.compare(value, primary[slot]) : 0;
+            }
+            return descending[0] ? -c : c;
+        }
+
+        private void up(int slot) {
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (compareSlots(slot, parent) <= 0) return;
+                swap(slot, parent);
+                slot = parent;
+            }
+        }
+
+        private void down(int slot) {
+            while (true) {
+                int worst = slot;
+                int left = 2 * slot + 1;
+                int right = left + 1;
+                if (left < size && compareSlots(left, worst) > 0) worst = left;
+                if (right < size && compareSlots(right, worst) > 0) worst = right;
+                if (worst == slot) return;
+                swap(slot, worst);
+                slot = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            Object entity = entities[a];
+            entities[a] = entities[b];
+            entities[b] = entity;
+            if (primary != null) {
+                long value = primary[a];
+                primary[a] = primary[b];
+                primary[b] = value;
+                boolean has = present[a];
+                present[a] = present[b];
+                present[b] = has;
+            }
+        }
+    }
+}
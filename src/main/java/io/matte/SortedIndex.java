@@ -0,0 +1,154 @@
+package io.matte;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Ordered index over a Comparable field, kept as a concurrent skip list of
+// (value, id) entries. Range lookups and ordered iteration cost O(log n + k).
+// Entities with a null value sort after all others.
+final class SortedIndex extends EntityIndex {
+    private final String field;
+    private final int position;
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    SortedIndex(Schema schema, String field) {
+        this.field = field;
+        this.position = schema.require(field);
+        if (!Comparable.class.isAssignableFrom(schema.type(position))) {
+            throw new IllegalArgumentException("Cannot create a sorted index on " + field
+                + " of type " + schema.type(position).getSimpleName());
+        }
+    }
+
+    String field() {
+        return field;
+    }
+
+    @Override
+    String describe() {
+        return "sorted(" + field + ")";
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        if (before != null) entries.remove(new Entry(before[position], id));
+        if (after != null) entries.add(new Entry(after[position], id));
+    }
+
+    @Override
+    boolean supports(Condition condition) {
+        if (condition instanceof Condition.Range) return ((Condition.Range) condition).field.equals(field);
+        return condition instanceof Condition.Eq && ((Condition.Eq) condition).field.equals(field)
+            && ((Condition.Eq) condition).value != null;
+    }
+
+    @Override
+    long[] lookup(Condition condition) {
+        NavigableSet<Entry> matches;
+        if (condition instanceof Condition.Range && ((Condition.Range) condition).field.equals(field)) {
+            matches = range((Condition.Range) condition);
+        } else if (condition instanceof Condition.Eq && ((Condition.Eq) condition).field.equals(field)
+                && ((Condition.Eq) condition).value != null) {
+            Object value = ((Condition.Eq) condition).value;
+            matches = entries.subSet(new Entry(value, Long.MIN_VALUE), true, new Entry(value, Long.MAX_VALUE), true);
+        } else {
+            return null;
+        }
+        long[] ids = new long[16];
+        int n = 0;
+        for (Entry entry : matches) {
+            if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+            ids[n++] = entry.id;
+        }
+        ids = Arrays.copyOf(ids, n);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // Ids in value order, restricted to a range on this field when given.
+    // Without a range, ids of entities with a null value come last (first when
+    // descending).
+    PrimitiveIterator.OfLong ids(Condition.Range range, boolean descending) {
+        return ids(range, descending, null, null);
+    }
+
+    // As above, resuming strictly after the entry (afterValue, afterId) in the
+    // direction of iteration when afterId is not null: the keyset of a page.
+    // Ties on the value are ordered by id.
+    PrimitiveIterator.OfLong ids(Condition.Range range, boolean descending, Object afterValue, Long afterId) {
+        NavigableSet<Entry> matches = view(range, afterId == null ? null : new Entry(afterValue, afterId), descending);
+        Iterator<Entry> iterator = descending ? matches.descendingIterator() : matches.iterator();
+        return new PrimitiveIterator.OfLong() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                return iterator.next().id;
+            }
+        };
+    }
+
+    private NavigableSet<Entry> range(Condition.Range range) {
+        return view(range, null, false);
+    }
+
+    // Entries within a range on this field (all of them when null) that come
+    // strictly after the cursor in the direction of iteration, if any
+    private NavigableSet<Entry> view(Condition.Range range, Entry cursor, boolean descending) {
+        Entry from = null;
+        Entry to = null;
+        boolean fromInclusive = false;
+        boolean toInclusive = false;
+        if (range != null) {
+            from = range.lower == null
+                ? null
+                : new Entry(range.lower, range.lowerInclusive ? Long.MIN_VALUE : Long.MAX_VALUE);
+            fromInclusive = range.lowerInclusive;
+            // An open upper end must still stop before the null entries
+            to = range.upper == null
+                ? new Entry(null, Long.MIN_VALUE)
+                : new Entry(range.upper, range.upperInclusive ? Long.MAX_VALUE : Long.MIN_VALUE);
+            toInclusive = range.upper != null && range.upperInclusive;
+        }
+        if (cursor != null && !descending && (from == null || cursor.compareTo(from) >= 0)) {
+            from = cursor;
+            fromInclusive = false;
+        }
+        if (cursor != null && descending && (to == null || cursor.compareTo(to) <= 0)) {
+            to = cursor;
+            toInclusive = false;
+        }
+        if (from == null) return to == null ? entries : entries.headSet(to, toInclusive);
+        if (to == null) return entries.tailSet(from, fromInclusive);
+        if (from.compareTo(to) > 0) return new ConcurrentSkipListSet<>();
+        return entries.subSet(from, fromInclusive, to, toInclusive);
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final Object value;
+        final long id;
+
+        Entry(Object value, long id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public int compareTo(Entry other) {
+            if (value != other.value) {
+                if (value == null) return 1;
+                if (other.value == null) return -1;
+                int c = ((Comparable) value).compareTo(other.value);
+                if (c != 0) return c;
+            }
+            return Long.compare(id, other.id);
+        }
+    }
+}
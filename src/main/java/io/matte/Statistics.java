@@ -0,0 +1,40 @@
+package io.matte;
+
+import java.util.Objects;
+
+// Per-field statistics for a repository, kept up to date from its change
+// stream. Only repositories whose entities declare indexes keep them, since
+// without a second access path there is no plan to choose.
+final class Statistics implements ChangeListener {
+    private final Schema schema;
+    private final FieldStatistics[] fields;
+    private volatile long rows;
+
+    Statistics(Schema schema) {
+        this.schema = schema;
+        this.fields = new FieldStatistics[schema.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new FieldStatistics(schema.type(i));
+        }
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        for (int i = 0; i < fields.length; i++) {
+            if (before != null && after != null && Objects.equals(before[i], after[i])) continue;
+            if (before != null) fields[i].remove(before[i]);
+            if (after != null) fields[i].add(after[i]);
+        }
+        if (before == null) rows++;
+        if (after == null) rows--;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    FieldStatistics field(String name) {
+        int position = schema.indexOf(name);
+        return position < 0 ? null : fields[position];
+    }
+}
@@ -0,0 +1,175 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.LongPredicate;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over one or more String fields with BM25 ranking.
+// Text is lower-cased and split on anything that is not a letter or digit.
+// Each term maps to a compressed PostingList of (id, term frequency); the
+// index also tracks each document's length for length normalization.
+final class TextIndex extends EntityIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Higher score first, ties broken by id for stable results
+    private static final Comparator<ScoredId> BEST_FIRST =
+        Comparator.comparingDouble((ScoredId s) -> -s.score).thenComparingLong(s -> s.id);
+
+    private final String[] fields;
+    private final int[] positions;
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final LongLongHashMap lengths = new LongLongHashMap();
+    private long totalLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    TextIndex(Schema schema, String[] fields) {
+        this.fields = fields;
+        this.positions = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            positions[i] = schema.require(fields[i]);
+            if (schema.type(positions[i]) != String.class) {
+                throw new IllegalArgumentException("Cannot create a text index on non-String field " + fields[i]);
+            }
+        }
+    }
+
+    @Override
+    String describe() {
+        return "text(" + String.join(", ", fields) + ")";
+    }
+
+    @Override
+    boolean supports(Condition condition) {
+        return false;
+    }
+
+    @Override
+    long[] lookup(Condition condition) {
+        return null; // only answers ranked searches
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private Map<String, Integer> termFrequencies(Object[] row) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (int position : positions) {
+            for (String token : tokenize((String) row[position])) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+        }
+        return frequencies;
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        if (before != null && after != null && sameText(before, after)) return;
+        Map<String, Integer> oldTerms = before == null ? null : termFrequencies(before);
+        Map<String, Integer> newTerms = after == null ? null : termFrequencies(after);
+        lock.writeLock().lock();
+        try {
+            if (oldTerms != null) {
+                for (String term : oldTerms.keySet()) {
+                    PostingList list = postings.get(term);
+                    if (list == null) continue;
+                    list.remove(id);
+                    if (list.size() == 0) postings.remove(term);
+                }
+                totalLength -= lengths.remove(id, 0);
+            }
+            if (newTerms != null) {
+                long length = 0;
+                for (Map.Entry<String, Integer> term : newTerms.entrySet()) {
+                    postings.computeIfAbsent(term.getKey(), t -> new PostingList()).add(id, term.getValue());
+                    length += term.getValue();
+                }
+                lengths.put(id, length);
+                totalLength += length;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean sameText(Object[] before, Object[] after) {
+        for (int position : positions) {
+            if (!Objects.equals(before[position], after[position])) return false;
+        }
+        return true;
+    }
+
+    // Up to limit ids ranked by BM25 score, best first, selected with a bounded
+    // heap in O(c log k) for c candidates. The filter, if any, is only asked
+    // about candidates that would make the current top k.
+    List<ScoredId> search(String query, int limit, LongPredicate filter) {
+        LongHashMap<double[]> scores = new LongHashMap<>();
+        lock.readLock().lock();
+        try {
+            int documents = lengths.size();
+            if (documents == 0) return new ArrayList<>();
+            double averageLength = (double) totalLength / documents;
+            for (String term : new LinkedHashSet<>(tokenize(query))) {
+                PostingList list = postings.get(term);
+                if (list == null) continue;
+                int df = list.size();
+                double idf = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+                list.forEach((id, tf) -> {
+                    double norm = K1 * (1 - B + B * lengths.get(id, 0) / averageLength);
+                    double score = idf * tf * (K1 + 1) / (tf + norm);
+                    double[] total = scores.get(id);
+                    if (total == null) {
+                        scores.put(id, new double[] {score});
+                    } else {
+                        total[0] += score;
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (limit <= 0) return new ArrayList<>();
+        PriorityQueue<ScoredId> top = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        scores.forEachKey(id -> {
+            ScoredId candidate = new ScoredId(id, scores.get(id)[0]);
+            if (top.size() == limit && BEST_FIRST.compare(candidate, top.peek()) >= 0) return;
+            if (filter != null && !filter.test(id)) return;
+            top.add(candidate);
+            if (top.size() > limit) top.poll();
+        });
+        List<ScoredId> ranked = new ArrayList<>(top);
+        ranked.sort(BEST_FIRST);
+        return ranked;
+    }
+
+    static final class ScoredId {
+        final long id;
+        final double score;
+
+        ScoredId(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
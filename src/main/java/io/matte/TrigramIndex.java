@@ -0,0 +1,131 @@
+package io.matte;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Substring index on a String field: every three-character window of a value
+// (packed into a long) -> ids of the entities containing it. Values are
+// indexed with start and end markers, so prefix and suffix patterns get
+// anchored trigrams of their own. A lookup intersects the posting sets of the
+// pattern's trigrams; the repository then verifies the surviving candidates.
+final class TrigramIndex extends EntityIndex {
+    private static final char START = '\u0002';
+    private static final char END = '\u0003';
+
+    private final String field;
+    private final int position;
+    private final LongHashMap<LongHashSet> postings = new LongHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    TrigramIndex(Schema schema, String field) {
+        this.field = field;
+        this.position = schema.require(field);
+        if (schema.type(position) != String.class) {
+            throw new IllegalArgumentException("Trigram index needs a String field: " + field);
+        }
+    }
+
+    @Override
+    String describe() {
+        return "trigram(" + field + ")";
+    }
+
+    @Override
+    public void onChange(long id, Object[] before, Object[] after) {
+        Object oldValue = before == null ? null : before[position];
+        Object newValue = after == null ? null : after[position];
+        if (before != null && after != null && Objects.equals(oldValue, newValue)) return;
+        LongHashSet removed = oldValue == null ? null : trigrams(START + (String) oldValue + END);
+        LongHashSet added = newValue == null ? null : trigrams(START + (String) newValue + END);
+        lock.writeLock().lock();
+        try {
+            if (removed != null) {
+                removed.forEach(gram -> {
+                    LongHashSet ids = postings.get(gram);
+                    if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                });
+            }
+            if (added != null) {
+                added.forEach(gram -> {
+                    LongHashSet ids = postings.get(gram);
+                    if (ids == null) {
+                        ids = new LongHashSet();
+                        postings.put(gram, ids);
+                    }
+                    ids.add(id);
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Patterns too short for a single trigram are left to a scan
+    @Override
+    boolean supports(Condition condition) {
+        if (!(condition instanceof Condition.Match)) return false;
+        Condition.Match match = (Condition.Match) condition;
+        return match.field.equals(field) && pattern(match).length() >= 3;
+    }
+
+    @Override
+    long[] lookup(Condition condition) {
+        if (!supports(condition)) return null;
+        LongHashSet grams = trigrams(pattern((Condition.Match) condition));
+        lock.readLock().lock();
+        try {
+            LongHashSet[] sets = new LongHashSet[grams.size()];
+            int[] count = new int[1];
+            boolean[] missing = new boolean[1];
+            grams.forEach(gram -> {
+                LongHashSet ids = postings.get(gram);
+                if (ids == null) missing[0] = true;
+                else sets[count[0]++] = ids;
+            });
+            if (missing[0]) return Ids.NONE;
+            // Walk the rarest trigram and probe the others
+            Arrays.sort(sets, Comparator.comparingInt(LongHashSet::size));
+            long[] result = new long[sets[0].size()];
+            int[] size = new int[1];
+            sets[0].forEach(id -> {
+                for (int i = 1; i < sets.length; i++) {
+                    if (!sets[i].contains(id)) return;
+                }
+                result[size[0]++] = id;
+            });
+            long[] ids = Arrays.copyOf(result, size[0]);
+            Arrays.sort(ids);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String pattern(Condition.Match match) {
+        if (match.mode == Condition.Match.Mode.STARTS_WITH) return START + match.text;
+        if (match.mode == Condition.Match.Mode.ENDS_WITH) return match.text + END;
+        return match.text;
+    }
+
+    int trigramCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static LongHashSet trigrams(String text) {
+        LongHashSet grams = new LongHashSet();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            grams.add((long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,9 @@
+package io.matte;
+
+public class UniqueConstraintException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UniqueConstraintException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,80 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Declares a materialized view for Repository.materialize, e.g.
+//
+//     products.materialize("byCategory",
+//         ViewDefinition.groupBy(product.category).count().sum(product.price));
+//
+// Without group fields the view has a single group over all entities.
+public final class ViewDefinition {
+    private final List<String> groupBy;
+    private final boolean count;
+    private final Map<String, List<String>> metrics;
+    private final Condition filter;
+
+    private ViewDefinition(List<String> groupBy, boolean count, Map<String, List<String>> metrics, Condition filter) {
+        this.groupBy = groupBy;
+        this.count = count;
+        this.metrics = metrics;
+        this.filter = filter;
+    }
+
+    public static ViewDefinition groupBy(Field<?>... fields) {
+        return new ViewDefinition(names(fields), false, Map.of(), null);
+    }
+
+    public ViewDefinition count() {
+        return new ViewDefinition(groupBy, true, metrics, filter);
+    }
+
+    // Integer or Long fields only, as for /_aggregate
+    public ViewDefinition sum(Field<?>... fields) {
+        return with("sum", fields);
+    }
+
+    public ViewDefinition min(Field<?>... fields) {
+        return with("min", fields);
+    }
+
+    public ViewDefinition max(Field<?>... fields) {
+        return with("max", fields);
+    }
+
+    public ViewDefinition avg(Field<?>... fields) {
+        return with("avg", fields);
+    }
+
+    // Only entities matching the condition are counted
+    public ViewDefinition where(Condition condition) {
+        return new ViewDefinition(groupBy, count, metrics, condition);
+    }
+
+    private ViewDefinition with(String metric, Field<?>... fields) {
+        Map<String, List<String>> more = new HashMap<>(metrics);
+        List<String> names = new ArrayList<>(more.getOrDefault(metric, List.of()));
+        names.addAll(names(fields));
+        more.put(metric, names);
+        return new ViewDefinition(groupBy, count, more, filter);
+    }
+
+    private static List<String> names(Field<?>... fields) {
+        List<String> names = new ArrayList<>();
+        for (Field<?> field : fields) {
+            names.add(field.fieldName().toString());
+        }
+        return names;
+    }
+
+    Aggregation compile(Schema schema) {
+        return Aggregation.compile(schema, groupBy, count, metrics);
+    }
+
+    Condition filter() {
+        return filter;
+    }
+}
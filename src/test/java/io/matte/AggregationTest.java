@@ -0,0 +1,106 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Aggregation Unit Tests")
+class AggregationTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<Long> stock = field("stock", Long.class);
+
+        public Product() {
+            fields(name, category, price, stock);
+        }
+    }
+
+    private Repository<Product> repository;
+    private Schema schema;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+        schema = repository.schema();
+    }
+
+    private void product(String name, String category, Integer price, Long stock) {
+        Product product = new Product();
+        product.name.set(name);
+        product.category.set(category);
+        product.price.set(price);
+        product.stock.set(stock);
+        repository.save(product);
+    }
+
+    private Aggregation aggregation(List<String> groupBy, boolean count, Map<String, List<String>> metrics) {
+        return Aggregation.compile(schema, groupBy, count, metrics);
+    }
+
+    @Test
+    @DisplayName("Should compute grouped metrics with null values and null groups")
+    void shouldComputeGroupedMetrics() {
+        product("Mug", "Kitchen", 12, 5L);
+        product("Pan", "Kitchen", 40, null);
+        product("Pot", "Kitchen", null, 2L);
+        product("Rake", "Garden", 25, 1L);
+        product("Misc", null, 7, 0L);
+
+        Aggregation aggregation = aggregation(List.of("category"), true,
+            Map.of("sum", List.of("price", "stock"), "avg", List.of("price"), "min", List.of("price"), "max", List.of("stock")));
+
+        assertThat(repository.aggregate(aggregation, null).toJson()).isEqualTo("{\"groups\":["
+            + "{\"category\":\"Garden\",\"count\":1,\"sum\":{\"price\":25,\"stock\":1},\"min\":{\"price\":25},"
+            + "\"max\":{\"stock\":1},\"avg\":{\"price\":25.0}},"
+            + "{\"category\":\"Kitchen\",\"count\":3,\"sum\":{\"price\":52,\"stock\":7},\"min\":{\"price\":12},"
+            + "\"max\":{\"stock\":5},\"avg\":{\"price\":26.0}},"
+            + "{\"category\":null,\"count\":1,\"sum\":{\"price\":7,\"stock\":0},\"min\":{\"price\":7},"
+            + "\"max\":{\"stock\":0},\"avg\":{\"price\":7.0}}]}");
+        assertThat(repository.aggregate(aggregation(List.of(), false, Map.of("avg", List.of("price"))),
+            Condition.eq("name", "Pot")).toJson()).isEqualTo("{\"groups\":[{\"avg\":{\"price\":null}}]}");
+    }
+
+    @Test
+    @DisplayName("Should group by several fields and default to a count")
+    void shouldGroupBySeveralFields() {
+        product("Mug", "Kitchen", 12, 1L);
+        product("Cup", "Kitchen", 12, 1L);
+        product("Pan", "Kitchen", 40, 1L);
+
+        assertThat(repository.aggregate(aggregation(List.of("category", "price"), false, Map.of()), null).toJson())
+            .isEqualTo("{\"groups\":[{\"category\":\"Kitchen\",\"price\":12,\"count\":2},"
+                + "{\"category\":\"Kitchen\",\"price\":40,\"count\":1}]}");
+        assertThat(repository.aggregate(aggregation(List.of(), true, Map.of()), Condition.gt("price", 100)).toJson())
+            .isEqualTo("{\"groups\":[{\"count\":0}]}");
+        assertThatThrownBy(() -> aggregation(List.of(), false, Map.of("sum", List.of("name"))))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("non-numeric field name");
+        assertThatThrownBy(() -> aggregation(List.of("colour"), true, Map.of()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should merge parallel partial results into the sequential answer")
+    void shouldMergeParallelPartials() {
+        for (int i = 0; i < 60_000; i++) {
+            product("p" + i, "c" + (i % 7), i % 1_000, (long) i);
+        }
+        Aggregation aggregation = aggregation(List.of("category"), true,
+            Map.of("sum", List.of("stock"), "min", List.of("price"), "max", List.of("price")));
+
+        Aggregation.Partial sequential = aggregation.newPartial();
+        repository.stream().forEach(sequential::add);
+        Aggregation.Partial parallel = repository.aggregate(aggregation, null);
+
+        assertThat(parallel.size()).isEqualTo(7);
+        assertThat(parallel.toJson()).isEqualTo(sequential.toJson())
+            .contains("{\"category\":\"c0\",\"count\":8572,\"sum\":{\"stock\":257147142}");
+    }
+}
@@ -0,0 +1,112 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("BitmapIndex Unit Tests")
+class BitmapIndexTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Boolean> inStock = field("inStock", Boolean.class);
+        final Field<Integer> price = field("price", Integer.class);
+
+        public Product() {
+            fields(name, category, inStock, price);
+            indexes(bitmapIndex(category), bitmapIndex(inStock));
+        }
+    }
+
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+    }
+
+    private Product product(String name, String category, Boolean inStock, Integer price) {
+        Product product = new Product();
+        product.name.set(name);
+        product.category.set(category);
+        product.inStock.set(inStock);
+        product.price.set(price);
+        return repository.save(product);
+    }
+
+    private void catalog() {
+        product("Mug", "Kitchen", true, 12);
+        product("Pan", "Kitchen", false, 40);
+        product("Rake", "Garden", true, 25);
+        product("Hose", "Garden", false, 30);
+        product("Lamp", "Office", true, 55);
+        product("Misc", null, null, 5);
+    }
+
+    @Test
+    @DisplayName("Should answer equality and combined filters from bitmaps")
+    void shouldAnswerCombinedFilters() {
+        catalog();
+
+        assertThat(repository.find(Condition.and(Condition.eq("category", "Kitchen"), Condition.eq("inStock", "true"))))
+            .extracting(p -> p.name.get()).containsExactly("Mug");
+        assertThat(repository.find(Condition.in("category", "Kitchen", "Office")))
+            .extracting(p -> p.name.get()).containsExactly("Mug", "Pan", "Lamp");
+        assertThat(repository.find(Condition.ne("category", "Kitchen")))
+            .extracting(p -> p.name.get()).containsExactly("Rake", "Hose", "Lamp", "Misc");
+        assertThat(repository.find(Condition.and(
+            Condition.or(Condition.eq("category", "Garden"), Condition.eq("category", "Office")),
+            Condition.not(Condition.eq("inStock", false)))))
+            .extracting(p -> p.name.get()).containsExactly("Rake", "Lamp");
+    }
+
+    @Test
+    @DisplayName("Should count matches from bitmap cardinality")
+    void shouldCountMatchesFromCardinality() {
+        catalog();
+
+        assertThat(repository.count(Condition.eq("category", "Garden"))).isEqualTo(2);
+        assertThat(repository.count(Condition.not(Condition.eq("inStock", true)))).isEqualTo(3);
+        assertThat(repository.count(Condition.eq("category", "Toys"))).isZero();
+        assertThat(repository.count(Condition.and(Condition.eq("category", "Kitchen"), Condition.eq("inStock", true))))
+            .isEqualTo(1);
+        assertThat(repository.count(Condition.in("category", "Kitchen", "Office", "Toys"))).isEqualTo(3);
+        assertThat(repository.count(Condition.and(
+            Condition.or(Condition.eq("category", "Garden"), Condition.eq("category", "Office")),
+            Condition.not(Condition.eq("inStock", false))))).isEqualTo(2);
+        // Mixed with an unindexed field: falls back to checking entities
+        assertThat(repository.count(Condition.and(Condition.eq("category", "Kitchen"), Condition.gt("price", 20))))
+            .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should update bitmaps when values change or entities are deleted")
+    void shouldMaintainBitmapsOnChangeAndDelete() {
+        Product mug = product("Mug", "Kitchen", true, 12);
+        Product pan = product("Pan", "Kitchen", true, 40);
+
+        mug.category.set("Office");
+        repository.save(mug);
+        repository.deleteById(pan.id.get());
+
+        assertThat(repository.count(Condition.eq("category", "Kitchen"))).isZero();
+        assertThat(repository.count(Condition.eq("category", "Office"))).isEqualTo(1);
+        assertThat(repository.count(Condition.not(Condition.eq("category", "Office")))).isZero();
+    }
+
+    @Test
+    @DisplayName("Should scale to many entities per value")
+    void shouldScaleToManyEntitiesPerValue() {
+        for (int i = 0; i < 20_000; i++) {
+            product("p" + i, i % 4 == 0 ? "Kitchen" : "Garden", i % 2 == 0, i);
+        }
+
+        assertThat(repository.count(Condition.eq("category", "Kitchen"))).isEqualTo(5_000);
+        assertThat(repository.count(Condition.and(Condition.eq("category", "Garden"), Condition.eq("inStock", true))))
+            .isEqualTo(5_000);
+        assertThat(repository.count(Condition.not(Condition.eq("inStock", true)))).isEqualTo(10_000);
+    }
+}
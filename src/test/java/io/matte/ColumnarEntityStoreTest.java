@@ -0,0 +1,182 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("ColumnarEntityStore Unit Tests")
+class ColumnarEntityStoreTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<Long> stock = field("stock", Long.class);
+        final Field<Boolean> active = field("active", Boolean.class);
+
+        public Product() {
+            fields(name, price, stock, active);
+        }
+    }
+
+    private ColumnarEntityStore<Product> store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ColumnarEntityStore<>(Product::new);
+    }
+
+    private Product product(long id, String name, Integer price, Long stock, Boolean active) {
+        Product product = new Product();
+        product.id.set(id);
+        product.name.set(name);
+        product.price.set(price);
+        product.stock.set(stock);
+        product.active.set(active);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should round-trip every field type")
+    void shouldRoundTripEveryFieldType() {
+        store.put(1L, product(1L, "Laptop", 999, 12L, true));
+
+        Product found = store.get(1L);
+
+        assertThat(found.id.get()).isEqualTo(1L);
+        assertThat(found.name.get()).isEqualTo("Laptop");
+        assertThat(found.price.get()).isEqualTo(999);
+        assertThat(found.stock.get()).isEqualTo(12L);
+        assertThat(found.active.get()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should preserve null values")
+    void shouldPreserveNullValues() {
+        store.put(1L, product(1L, null, null, null, null));
+
+        Product found = store.get(1L);
+
+        assertThat(found.name.get()).isNull();
+        assertThat(found.price.get()).isNull();
+        assertThat(found.stock.get()).isNull();
+        assertThat(found.active.get()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should return a copy that only changes the store when saved")
+    void shouldReturnCopyThatOnlyChangesStoreWhenSaved() {
+        store.put(1L, product(1L, "Mug", 15, 1L, false));
+
+        Product copy = store.get(1L);
+        copy.price.set(20);
+
+        assertThat(copy).isNotSameAs(store.get(1L));
+        assertThat(store.get(1L).price.get()).isEqualTo(15);
+
+        store.put(1L, copy);
+        assertThat(store.get(1L).price.get()).isEqualTo(20);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should remove rows and reuse them for new entities")
+    void shouldRemoveRowsAndReuseThem() {
+        for (long id = 1; id <= 100; id++) {
+            store.put(id, product(id, "p" + id, (int) id, id, id % 2 == 0));
+        }
+
+        assertThat(store.remove(50L)).isTrue();
+        assertThat(store.remove(50L)).isFalse();
+        store.put(101L, product(101L, "new", 1, 1L, true));
+
+        assertThat(store.get(50L)).isNull();
+        assertThat(store.get(101L).name.get()).isEqualTo("new");
+        assertThat(store.get(51L).name.get()).isEqualTo("p51");
+        assertThat(store.size()).isEqualTo(100);
+        assertThat(store.values()).hasSize(100);
+    }
+
+    @Test
+    @DisplayName("Should scan a numeric column without materializing entities")
+    void shouldScanNumericColumn() {
+        store.put(1L, product(1L, "a", 10, null, true));
+        store.put(2L, product(2L, "b", null, null, true));
+        store.put(3L, product(3L, "c", 32, null, true));
+        store.remove(1L);
+
+        List<Long> prices = new ArrayList<>();
+        store.scanLong("price", prices::add);
+
+        assertThat(prices).containsExactly(32L);
+        assertThatThrownBy(() -> store.scanLong("name", v -> { }))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should back a repository")
+    void shouldBackRepository() {
+        Repository<Product> repository = new Repository<>("products", store);
+        Product product = product(0, "Desk", 200, 3L, true);
+        product.id.set(null);
+
+        repository.save(product);
+        repository.save(product(0, "Chair", 80, 9L, false)); // explicit id 0
+
+        assertThat(repository.count()).isEqualTo(2);
+        assertThat(repository.findById(product.id.get()).name.get()).isEqualTo("Desk");
+        assertThat(repository.findAll()).extracting(p -> p.name.get()).containsExactlyInAnyOrder("Desk", "Chair");
+    }
+
+    @Test
+    @DisplayName("Should keep indexes current using the store's copies as old values")
+    void shouldKeepIndexesCurrentFromStoreCopies() {
+        class Tagged extends Entity {
+            final Field<String> tag = field("tag", String.class);
+
+            Tagged() {
+                fields(tag);
+                indexes(hashIndex(tag));
+            }
+        }
+        Repository<Tagged> repository = new Repository<>("tagged", Tagged::new, new ColumnarEntityStore<>(Tagged::new));
+        Tagged saved = new Tagged();
+        saved.tag.set("old");
+        repository.save(saved);
+
+        Tagged copy = repository.findById(saved.id.get());
+        copy.tag.set("new");
+        repository.save(copy);
+
+        assertThat(repository.findBy("tag", "old")).isEmpty();
+        assertThat(repository.findBy("tag", "new")).hasSize(1);
+        repository.deleteById(saved.id.get());
+        assertThat(repository.findBy("tag", "new")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should split iteration into disjoint row ranges")
+    void shouldSplitIterationIntoRowRanges() {
+        for (long id = 1; id <= 10_000; id++) {
+            store.put(id, product(id, "p" + id, (int) id, id, true));
+        }
+        store.remove(5_000L);
+
+        Spliterator<Product> lower = store.spliterator();
+        Spliterator<Product> upper = lower.trySplit();
+        assertThat(upper).isNotNull();
+        List<Long> ids = new ArrayList<>();
+        lower.forEachRemaining(p -> ids.add(p.id.get()));
+        upper.forEachRemaining(p -> ids.add(p.id.get()));
+
+        assertThat(ids).hasSize(9_999).doesNotHaveDuplicates().doesNotContain(5_000L);
+        assertThat(StreamSupport.stream(store.spliterator(), true).mapToLong(p -> p.price.get()).sum())
+            .isEqualTo(10_000L * 10_001 / 2 - 5_000);
+    }
+}
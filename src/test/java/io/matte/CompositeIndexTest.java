@@ -0,0 +1,180 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("CompositeIndex Unit Tests")
+class CompositeIndexTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<Boolean> active = field("active", Boolean.class);
+
+        public Product() {
+            fields(name, category, price, active);
+            indexes(
+                compositeIndex(category, price).including(name),
+                compositeIndex(name, price).where(Condition.eq("active", true)));
+        }
+    }
+
+    // Counts entity reads so tests can tell index-only answers apart
+    static class CountingStore extends HeapEntityStore<Product> {
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public Product get(long id) {
+            reads.incrementAndGet();
+            return super.get(id);
+        }
+
+        @Override
+        public void forEach(Consumer<? super Product> action) {
+            reads.incrementAndGet();
+            super.forEach(action);
+        }
+    }
+
+    private CountingStore store;
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        store = new CountingStore();
+        repository = new Repository<>("products", Product::new, store);
+    }
+
+    private Product product(String name, String category, Integer price, Boolean active) {
+        Product product = new Product();
+        product.name.set(name);
+        product.category.set(category);
+        product.price.set(price);
+        product.active.set(active);
+        return repository.save(product);
+    }
+
+    private void catalog() {
+        product("Mug", "Kitchen", 12, true);
+        product("Pan", "Kitchen", 40, true);
+        product("Knife", "Kitchen", 25, false);
+        product("Rake", "Garden", 25, true);
+        product("Bowl", "Kitchen", null, true);
+    }
+
+    @Test
+    @DisplayName("Should answer equality prefix plus range on the next field")
+    void shouldAnswerEqualityPrefixPlusRange() {
+        catalog();
+
+        List<Product> result = repository.find(Condition.and(
+            Condition.eq("category", "Kitchen"), Condition.gte("price", 20)));
+        List<Product> open = repository.find(Condition.and(
+            Condition.eq("category", "Kitchen"), Condition.lt("price", 30)));
+
+        assertThat(result).extracting(p -> p.name.get()).containsExactly("Pan", "Knife");
+        assertThat(open).extracting(p -> p.name.get()).containsExactly("Mug", "Knife");
+        assertThat(repository.find(Condition.eq("category", "Kitchen"))).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("Should answer covered queries without loading entities")
+    void shouldAnswerCoveredQueriesFromIndexAlone() {
+        catalog();
+        store.reads.set(0);
+
+        List<Object[]> rows = repository.select(Condition.and(
+            Condition.eq("category", "Kitchen"), Condition.between("price", 10, 30)), "name", "price", "id");
+
+        assertThat(rows).extracting(row -> row[0]).containsExactly("Mug", "Knife");
+        assertThat(rows).extracting(row -> row[1]).containsExactly(12, 25);
+        assertThat(rows.get(0)[2]).isEqualTo(1L);
+        assertThat(store.reads.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should fall back to entities when a query reads uncovered fields")
+    void shouldFallBackForUncoveredFields() {
+        catalog();
+        store.reads.set(0);
+
+        List<Object[]> rows = repository.select(Condition.eq("category", "Kitchen"), "name", "active");
+
+        assertThat(rows).extracting(row -> row[1]).containsExactly(true, true, false, true);
+        assertThat(store.reads.get()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Should only index and use partial indexes for matching queries")
+    void shouldUsePartialIndexesForMatchingQueries() {
+        catalog();
+        CompositeIndex partial = (CompositeIndex) IndexDefinition
+            .composite(new Product().name, new Product().price)
+            .where(Condition.eq("active", true))
+            .create(repository.schema());
+        repository.addListener(partial);
+
+        assertThat(partial.size()).isEqualTo(4);
+        assertThat(partial.lookup(Condition.eq("name", "Knife").bind(repository.schema()))).isNull();
+        assertThat(partial.lookup(Condition.and(Condition.eq("name", "Knife"), Condition.eq("active", true))
+            .bind(repository.schema()))).isEmpty();
+        assertThat(repository.find(Condition.eq("name", "Knife"))).hasSize(1);
+        assertThat(repository.find(Condition.and(Condition.eq("name", "Rake"), Condition.eq("active", "true"))))
+            .extracting(p -> p.category.get()).containsExactly("Garden");
+    }
+
+    @Test
+    @DisplayName("Should match partial index filters by structure, whatever their order or spelling")
+    void shouldMatchPartialFiltersStructurally() {
+        catalog();
+        CompositeIndex partial = (CompositeIndex) IndexDefinition
+            .composite(new Product().category)
+            .where(Condition.and(Condition.eq("active", true), Condition.gte("price", 20)))
+            .create(repository.schema());
+        repository.addListener(partial);
+
+        assertThat(partial.size()).isEqualTo(2);
+        assertThat(partial.lookup(Condition.and(Condition.gte("price", "20"), Condition.eq("category", "Kitchen"),
+            Condition.eq("active", "true")).bind(repository.schema()))).hasSize(1);
+        assertThat(partial.lookup(Condition.and(Condition.eq("category", "Kitchen"), Condition.eq("active", true),
+            Condition.gt("price", 20)).bind(repository.schema()))).isNull();
+        assertThat(Condition.and(Condition.eq("active", true), Condition.not(Condition.lt("price", 5))))
+            .isEqualTo(Condition.and(Condition.not(Condition.lt("price", 5)), Condition.eq("active", true)))
+            .hasSameHashCodeAs(Condition.and(Condition.not(Condition.lt("price", 5)), Condition.eq("active", true)));
+    }
+
+    @Test
+    @DisplayName("Should maintain entries on update and delete")
+    void shouldMaintainEntriesOnUpdateAndDelete() {
+        Product mug = product("Mug", "Kitchen", 12, true);
+        Product pan = product("Pan", "Kitchen", 40, true);
+
+        mug.price.set(45);
+        mug.name.set("Big Mug");
+        repository.save(mug);
+        repository.deleteById(pan.id.get());
+
+        List<Object[]> rows = repository.select(Condition.and(
+            Condition.eq("category", "Kitchen"), Condition.gt("price", 10)), "name", "price");
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)).containsExactly("Big Mug", 45);
+    }
+
+    @Test
+    @DisplayName("Should reject partial or covering variants of other index kinds")
+    void shouldRejectRefinementsOfOtherKinds() {
+        assertThatThrownBy(() -> IndexDefinition.hash(new Product().name).including(new Product().price))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> IndexDefinition.composite())
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,103 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("CompositeQuery Unit Tests")
+class CompositeQueryTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+
+        public Product() {
+            fields(name, category, price);
+            indexes(hashIndex(category), sortedIndex(price));
+        }
+    }
+
+    private final Map<String, EntityController<?>> controllers = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        Repository<Product> products = new Repository<>("products", Product::new, new HeapEntityStore<>());
+        save(products, "Pan", "Kitchen", 30);
+        save(products, "Knife", "Kitchen", 12);
+        save(products, "Lamp", "Living", 45);
+        controllers.put("products", new EntityController<>(products, "products", Product::new));
+    }
+
+    private void save(Repository<Product> products, String name, String category, int price) {
+        Product product = new Product();
+        product.name.set(name);
+        product.category.set(category);
+        product.price.set(price);
+        products.save(product);
+    }
+
+    @Test
+    @DisplayName("Should run each query like its own GET and combine results in document order")
+    void shouldCombineResultsInDocumentOrder() {
+        CompositeQuery query = CompositeQuery.parse("{"
+            + "\"cheapest\": {\"resource\": \"products\", \"sort\": \"price\", \"limit\": 1, \"fields\": \"name\"},"
+            + "\"kitchen\": \"/api/products/_count?category=Kitchen\","
+            + "\"lookup\": \"/api/products/99\","
+            + "\"unknown\": \"/api/orders\"}");
+
+        assertThat(query.paths()).containsKeys("cheapest", "kitchen", "lookup", "unknown");
+        assertThat(query.paths().get("cheapest")).isEqualTo("/api/products?sort=price&limit=1&fields=name");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        String json;
+        try {
+            json = query.execute(controllers::get, executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(json).startsWith("{\"cheapest\":{\"items\":[{\"name\":\"Knife\"}],\"next\":");
+        assertThat(json).endsWith("\"kitchen\":{\"count\":2},"
+            + "\"lookup\":{\"error\":\"Products not found\",\"status\":404},"
+            + "\"unknown\":{\"error\":\"Not Found\",\"status\":404}}");
+    }
+
+    @Test
+    @DisplayName("Should encode object members as query parameters and treat booleans as flags")
+    void shouldEncodeObjectMembers() {
+        CompositeQuery query = CompositeQuery.parse(
+            "{\"q\": {\"resource\": \"products\", \"path\": \"_aggregate\", \"groupBy\": \"category\","
+                + " \"count\": true, \"explain\": false, \"filter\": \"price > 10 and name == 'A&B'\"}}");
+
+        assertThat(query.paths().get("q"))
+            .isEqualTo("/api/products/_aggregate?groupBy=category&count&filter=price+%3E+10+and+name+%3D%3D+%27A%26B%27");
+    }
+
+    @Test
+    @DisplayName("Should reject malformed, empty, duplicate and oversized documents")
+    void shouldRejectInvalidDocuments() {
+        assertThatThrownBy(() -> CompositeQuery.parse("[\"/api/products\"]"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompositeQuery.parse("{\"a\": \"/api/products\""))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompositeQuery.parse("{}"))
+            .hasMessageContaining("No queries");
+        assertThatThrownBy(() -> CompositeQuery.parse("{\"a\": \"/x\", \"a\": \"/y\"}"))
+            .hasMessageContaining("Duplicate");
+        assertThatThrownBy(() -> CompositeQuery.parse("{\"a\": {\"limit\": 1}}"))
+            .hasMessageContaining("without resource");
+
+        StringBuilder many = new StringBuilder("{");
+        for (int i = 0; i <= CompositeQuery.MAX_QUERIES; i++) {
+            many.append(i > 0 ? "," : "").append("\"q").append(i).append("\":\"/api/products\"");
+        }
+        assertThatThrownBy(() -> CompositeQuery.parse(many.append('}').toString()))
+            .hasMessageContaining("Too many");
+    }
+}
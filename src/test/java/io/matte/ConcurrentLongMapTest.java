@@ -0,0 +1,111 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("ConcurrentLongMap Unit Tests")
+class ConcurrentLongMapTest {
+
+    @Test
+    @DisplayName("Should put, get and remove across segments")
+    void shouldPutGetAndRemoveAcrossSegments() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        for (long i = 0; i < 10_000; i++) {
+            map.put(i, "v" + i);
+        }
+
+        assertThat(map.size()).isEqualTo(10_000);
+        assertThat(map.get(1234L)).isEqualTo("v1234");
+        assertThat(map.remove(1234L)).isEqualTo("v1234");
+        assertThat(map.get(1234L)).isNull();
+        assertThat(map.values()).hasSize(9_999);
+
+        map.clear();
+        assertThat(map.size()).isZero();
+        assertThat(map.get(1L)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should look up a batch of keys in request order")
+    void shouldGetAllInRequestOrder() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        for (long i = 0; i < 1_000; i++) {
+            map.put(i, "v" + i);
+        }
+        long[] keys = {999, 5, -1, 5, 500, 2_000};
+        Object[] values = new Object[keys.length];
+
+        map.getAll(keys, values);
+
+        assertThat(values).containsExactly("v999", "v5", null, "v5", "v500", null);
+    }
+
+    @Test
+    @DisplayName("Should never return a wrong value while writers resize segments")
+    void shouldNeverReturnWrongValueWhileWritersResize() throws InterruptedException {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        int writers = 4;
+        int readers = 4;
+        int perWriter = 50_000;
+        AtomicInteger wrongValues = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+
+        for (int w = 0; w < writers; w++) {
+            long base = (long) w * perWriter;
+            executor.submit(() -> {
+                start.await();
+                for (long i = base; i < base + perWriter; i++) {
+                    map.put(i, i);
+                    if (i % 3 == 0) map.remove(i);
+                }
+                return null;
+            });
+        }
+        for (int r = 0; r < readers; r++) {
+            executor.submit(() -> {
+                start.await();
+                for (int round = 0; round < 5; round++) {
+                    for (long i = 0; i < (long) writers * perWriter; i++) {
+                        Long value = map.get(i);
+                        if (value != null && value != i) wrongValues.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(wrongValues.get()).isZero();
+        long expected = (long) writers * perWriter - ((long) writers * perWriter + 2) / 3;
+        assertThat(map.size()).isEqualTo((int) expected);
+    }
+
+    @Test
+    @DisplayName("Should iterate weakly consistently without copying")
+    void shouldIterateWeaklyConsistently() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        for (long id = 1; id <= 1_000; id++) map.put(id, "v" + id);
+        Spliterator<String> values = map.spliterator();
+
+        assertThat(values.estimateSize()).isEqualTo(1_000);
+        int[] seen = new int[1];
+        assertThat(values.tryAdvance(value -> seen[0]++)).isTrue();
+        for (long id = 1; id <= 1_000; id += 2) map.remove(id);
+        values.forEachRemaining(value -> seen[0]++);
+
+        // Entries present throughout are seen once, removed ones at most once
+        assertThat(seen[0]).isBetween(500, 1_000);
+    }
+}
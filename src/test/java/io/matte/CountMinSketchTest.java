@@ -0,0 +1,46 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("CountMinSketch Unit Tests")
+class CountMinSketchTest {
+
+    @Test
+    @DisplayName("Should find heavy hitters among many rare values")
+    void shouldFindHeavyHitters() {
+        CountMinSketch sketch = new CountMinSketch();
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add("rare" + i);
+            if (i % 10 == 0) sketch.add("Kitchen");
+            if (i % 20 == 0) sketch.add("Garden");
+            if (i % 50 == 0) sketch.add("Toys");
+        }
+
+        assertThat(sketch.top(3)).extracting(Map.Entry::getKey).containsExactly("Kitchen", "Garden", "Toys");
+        // Never undercounts, and overcounts by at most a small share of all values
+        assertThat(sketch.estimate("Kitchen")).isBetween(10_000L, 10_000L + 250);
+        assertThat(sketch.estimate("rare7")).isBetween(1L, 250L);
+    }
+
+    @Test
+    @DisplayName("Should count removed values down and drop emptied candidates")
+    void shouldCountRemovalsDown() {
+        CountMinSketch sketch = new CountMinSketch();
+        for (int i = 0; i < 5; i++) {
+            sketch.add(42L);
+        }
+        sketch.add(7L);
+        for (int i = 0; i < 4; i++) {
+            sketch.remove(42L);
+        }
+        sketch.remove(7L);
+
+        assertThat(sketch.estimate(42L)).isEqualTo(1);
+        assertThat(sketch.top(5)).containsExactly(Map.entry(42L, 1L));
+    }
+}
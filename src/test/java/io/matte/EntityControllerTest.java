@@ -4,6 +4,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.BeforeEach;
 
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.*;
 
 @DisplayName("EntityController Unit Tests")
@@ -18,6 +20,25 @@ class EntityControllerTest {
         }
     }
 
+    static class SketchedEntity extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<Integer> score = field("score", Integer.class);
+
+        public SketchedEntity() {
+            fields(name, score);
+            sketches(score);
+        }
+    }
+
+    static class OrderEntity extends Entity {
+        final Field<Long> userId = field("userId", Long.class);
+
+        public OrderEntity() {
+            fields(userId);
+            indexes(reference(userId, "users"));
+        }
+    }
+
     private Repository<TestEntity> repository;
     private EntityController<TestEntity> controller;
     private EntityFactory<TestEntity> factory;
@@ -275,4 +296,454 @@ class EntityControllerTest {
 
         assertThat(response).contains("Users not found");
     }
+
+    @Test
+    @DisplayName("Should filter collection by field value")
+    void shouldFilterCollectionByFieldValue() {
+        TestEntity alice = new TestEntity();
+        alice.name.set("Alice");
+        alice.age.set(30);
+        repository.save(alice);
+        TestEntity bob = new TestEntity();
+        bob.name.set("Bob");
+        bob.age.set(30);
+        repository.save(bob);
+
+        String response = controller.handleRequest("GET", "/api/users?age=30&name=Bob", "");
+
+        assertThat(response).contains("\"name\":\"Bob\"");
+        assertThat(response).doesNotContain("Alice");
+    }
+
+    @Test
+    @DisplayName("Should reject filter values of the wrong type")
+    void shouldRejectFilterValuesOfWrongType() {
+        repository.save(new TestEntity());
+
+        String response = controller.handleRequest("GET", "/api/users?age=old", "");
+
+        assertThat(response).contains("\"status\":400");
+        assertThat(response).contains("age");
+    }
+
+    @Test
+    @DisplayName("Should report unique constraint violations as conflicts")
+    void shouldReportUniqueConstraintViolationsAsConflicts() {
+        class Account extends Entity {
+            final Field<String> email = field("email", String.class);
+
+            public Account() {
+                fields(email);
+                indexes(uniqueIndex(email));
+            }
+        }
+        Repository<Account> accounts = new Repository<>("accounts");
+        EntityController<Account> accountController =
+            new EntityController<>(accounts, "accounts", Account::new);
+
+        accountController.handleRequest("POST", "/api/accounts", "{\"email\":\"a@example.com\"}");
+        String response = accountController.handleRequest("POST", "/api/accounts", "{\"email\":\"a@example.com\"}");
+
+        assertThat(response).contains("\"status\":409");
+        assertThat(accounts.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should leave the stored entity and its index unchanged when an update is rejected")
+    void shouldLeaveEntityUnchangedWhenUpdateIsRejected() {
+        class Account extends Entity {
+            final Field<String> email = field("email", String.class);
+
+            public Account() {
+                fields(email);
+                indexes(uniqueIndex(email));
+            }
+        }
+        Repository<Account> accounts = new Repository<>("accounts");
+        EntityController<Account> accountController =
+            new EntityController<>(accounts, "accounts", Account::new);
+        accountController.handleRequest("POST", "/api/accounts", "{\"email\":\"a@example.com\"}");
+        accountController.handleRequest("POST", "/api/accounts", "{\"email\":\"b@example.com\"}");
+
+        String response = accountController.handleRequest("PUT", "/api/accounts/2", "{\"email\":\"a@example.com\"}");
+
+        assertThat(response).contains("\"status\":409");
+        assertThat(accountController.handleRequest("GET", "/api/accounts/2", ""))
+            .contains("\"email\":\"b@example.com\"");
+        assertThat(accountController.handleRequest("GET", "/api/accounts?email=b%40example.com", ""))
+            .contains("\"id\":2");
+        assertThat(accountController.handleRequest("GET", "/api/accounts?email=a%40example.com", ""))
+            .contains("\"id\":1").doesNotContain("\"id\":2");
+    }
+
+    @Test
+    @DisplayName("Should filter collection by range operators")
+    void shouldFilterCollectionByRangeOperators() {
+        for (int age : new int[] {10, 20, 30, 40}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set("age" + age);
+            entity.age.set(age);
+            repository.save(entity);
+        }
+
+        String response = controller.handleRequest("GET", "/api/users?age.gte=20&age.lt=40", "");
+
+        assertThat(response).contains("age20", "age30");
+        assertThat(response).doesNotContain("age10", "age40");
+        assertThat(controller.handleRequest("GET", "/api/users?age.near=20", ""))
+            .contains("\"status\":400");
+    }
+
+    @Test
+    @DisplayName("Should run ranked full-text search with q parameter")
+    void shouldRunRankedFullTextSearch() {
+        class Article extends Entity {
+            final Field<String> title = field("title", String.class);
+
+            public Article() {
+                fields(title);
+                indexes(textIndex(title));
+            }
+        }
+        Repository<Article> articles = new Repository<>("articles");
+        EntityController<Article> articleController =
+            new EntityController<>(articles, "articles", Article::new);
+        articleController.handleRequest("POST", "/api/articles", "{\"title\":\"Java streams\"}");
+        articleController.handleRequest("POST", "/api/articles", "{\"title\":\"Java java java\"}");
+        articleController.handleRequest("POST", "/api/articles", "{\"title\":\"Gardening\"}");
+
+        String response = articleController.handleRequest("GET", "/api/articles?q=java&limit=1", "");
+
+        assertThat(response).contains("Java java java");
+        assertThat(response).doesNotContain("streams", "Gardening");
+        controller.handleRequest("POST", "/api/users", "{\"name\":\"Charlie\",\"age\":\"25\"}");
+        assertThat(controller.handleRequest("GET", "/api/users?q=x", "")).contains("\"status\":400");
+    }
+
+    @Test
+    @DisplayName("Should filter collection by substring operators")
+    void shouldFilterCollectionBySubstringOperators() {
+        for (String name : new String[] {"alice@example.com", "bob@example.org", "carol@example.com"}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set(name);
+            repository.save(entity);
+        }
+
+        String suffix = controller.handleRequest("GET", "/api/users?name.endsWith=%40example.com", "");
+        String substring = controller.handleRequest("GET", "/api/users?name.contains=ob&name.startsWith=b", "");
+
+        assertThat(suffix).contains("alice", "carol").doesNotContain("bob");
+        assertThat(substring).contains("bob").doesNotContain("alice", "carol");
+        assertThat(controller.handleRequest("GET", "/api/users?age.contains=1", ""))
+            .contains("\"status\":400");
+    }
+
+    @Test
+    @DisplayName("Should suggest entities by name prefix")
+    void shouldSuggestEntitiesByNamePrefix() {
+        for (String name : new String[] {"Joe", "Anna", "John", "Jo"}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set(name);
+            repository.save(entity);
+        }
+
+        String response = controller.handleRequest("GET", "/api/users/_suggest?field=name&prefix=jo&limit=2", "");
+
+        assertThat(response).contains("\"Jo\"", "\"Joe\"").doesNotContain("John", "Anna");
+        assertThat(controller.handleRequest("GET", "/api/users/_suggest?field=name", ""))
+            .contains("\"status\":400", "Missing parameter: prefix");
+    }
+
+    @Test
+    @DisplayName("Should combine repeated and negated filters and count matches")
+    void shouldCombineRepeatedAndNegatedFiltersAndCount() {
+        for (int age : new int[] {10, 20, 30, 40}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set("age" + age);
+            entity.age.set(age);
+            repository.save(entity);
+        }
+
+        String anyOf = controller.handleRequest("GET", "/api/users?age=10&age=30", "");
+        String excluded = controller.handleRequest("GET", "/api/users?age.ne=10&age.ne=20", "");
+
+        assertThat(anyOf).contains("age10", "age30").doesNotContain("age20", "age40");
+        assertThat(excluded).contains("age30", "age40").doesNotContain("age10", "age20");
+        assertThat(controller.handleRequest("GET", "/api/users/_count?age.gte=20", "")).isEqualTo("{\"count\":3}");
+        assertThat(controller.handleRequest("GET", "/api/users/_count", "")).isEqualTo("{\"count\":4}");
+    }
+
+    @Test
+    @DisplayName("Should explain the query plan with explain parameter")
+    void shouldExplainQueryPlan() {
+        TestEntity entity = new TestEntity();
+        entity.name.set("Alice");
+        repository.save(entity);
+
+        String response = controller.handleRequest("GET", "/api/users?name=Alice&explain", "");
+
+        assertThat(response).startsWith("{").contains("\"filter\":\"name = Alice\"", "\"access\":\"scan\"");
+        assertThat(response).doesNotContain("\"id\":");
+    }
+
+    @Test
+    @DisplayName("Should filter collection by expression")
+    void shouldFilterCollectionByExpression() {
+        for (int age : new int[] {10, 20, 30, 40}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set("age" + age);
+            entity.age.set(age);
+            repository.save(entity);
+        }
+
+        String response = controller.handleRequest("GET",
+            "/api/users?filter=" + java.net.URLEncoder.encode("age > 15 and (age < 25 or name == 'age40')",
+                java.nio.charset.StandardCharsets.UTF_8), "");
+
+        assertThat(response).contains("age20", "age40").doesNotContain("age10", "age30");
+        assertThat(controller.handleRequest("GET", "/api/users?filter=age%20%3E", ""))
+            .contains("\"status\":400", "Invalid filter");
+    }
+
+    @Test
+    @DisplayName("Should escape user input echoed in filter errors")
+    void shouldEscapeUserInputInFilterErrors() {
+        TestEntity entity = new TestEntity();
+        entity.name.set("Alice");
+        entity.age.set(30);
+        repository.save(entity);
+
+        String backslash = controller.handleRequest("GET", "/api/users?filter=age%20%3D%3D%2030%20%5C", "");
+        String newline = controller.handleRequest("GET", "/api/users?filter=age%20%3D%3D%20%27x%0Ay%27", "");
+
+        assertThat(backslash).contains("\"status\":400", "'\\\\'").doesNotContain("'\\'");
+        assertThat(newline).contains("\"status\":400", "x\\ny").doesNotContain("\n");
+    }
+
+    @Test
+    @DisplayName("Should page through the collection with cursors")
+    void shouldPageThroughCollectionWithCursors() {
+        for (int i = 1; i <= 25; i++) {
+            TestEntity entity = new TestEntity();
+            entity.name.set("user" + i);
+            entity.age.set(i % 5);
+            repository.save(entity);
+        }
+
+        String first = controller.handleRequest("GET", "/api/users?limit=10", "");
+        String second = controller.handleRequest("GET", "/api/users?limit=10&cursor=" + next(first), "");
+        String third = controller.handleRequest("GET", "/api/users?limit=10&cursor=" + next(second), "");
+
+        assertThat(first).startsWith("{\"items\":[").contains("\"id\":1,", "\"id\":10,").doesNotContain("\"id\":11,");
+        assertThat(second).contains("\"id\":11,", "\"id\":20,").doesNotContain("\"id\":10,", "\"id\":21,");
+        assertThat(third).contains("\"id\":21,", "\"id\":25,").endsWith(",\"next\":null}");
+        assertThat(controller.handleRequest("GET", "/api/users?limit=2&offset=3&age=1", ""))
+            .contains("\"name\":\"user16\"", "\"name\":\"user21\"").doesNotContain("user11");
+
+        String offsetFirst = controller.handleRequest("GET", "/api/users?limit=10&offset=5", "");
+        String offsetSecond = controller.handleRequest("GET", "/api/users?limit=10&offset=5&cursor=" + next(offsetFirst), "");
+        assertThat(offsetFirst).contains("\"id\":6,", "\"id\":15,").doesNotContain("\"id\":5,");
+        assertThat(offsetSecond).contains("\"id\":16,", "\"id\":25,").doesNotContain("\"id\":15,");
+    }
+
+    @Test
+    @DisplayName("Should page in field order and reject invalid cursors")
+    void shouldPageInFieldOrderAndRejectInvalidCursors() {
+        for (int age : new int[] {30, 10, 20, 10}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set("age" + age + "-" + repository.count());
+            entity.age.set(age);
+            repository.save(entity);
+        }
+
+        String first = controller.handleRequest("GET", "/api/users?sort=-age&limit=2", "");
+        String second = controller.handleRequest("GET", "/api/users?cursor=" + next(first) + "&limit=2", "");
+
+        assertThat(first).contains("age30-0", "age20-2").doesNotContain("age10");
+        assertThat(second).contains("age10-3", "age10-1").endsWith(",\"next\":null}");
+        assertThat(second.indexOf("age10-3")).isLessThan(second.indexOf("age10-1"));
+        assertThat(controller.handleRequest("GET", "/api/users?sort=age&cursor=" + next(first), ""))
+            .contains("\"status\":400", "Cursor does not match sort");
+        assertThat(controller.handleRequest("GET", "/api/users?cursor=not-a-cursor", ""))
+            .contains("\"status\":400", "Invalid cursor");
+        assertThat(controller.handleRequest("GET", "/api/users?sort=weight&limit=1", ""))
+            .contains("\"status\":400");
+        assertThat(controller.handleRequest("GET", "/api/users?limit=0", ""))
+            .contains("\"status\":400", "limit must be at least 1");
+    }
+
+    @Test
+    @DisplayName("Should project requested fields on collection and single reads")
+    void shouldProjectRequestedFields() {
+        TestEntity alice = new TestEntity();
+        alice.name.set("Alice");
+        alice.age.set(30);
+        repository.save(alice);
+        TestEntity bob = new TestEntity();
+        bob.name.set("Bob");
+        repository.save(bob);
+
+        assertThat(controller.handleRequest("GET", "/api/users?fields=id,name&sort=id", ""))
+            .isEqualTo("[{\"id\":1,\"name\":\"Alice\"},{\"id\":2,\"name\":\"Bob\"}]");
+        assertThat(controller.handleRequest("GET", "/api/users/2?fields=name,age", ""))
+            .isEqualTo("{\"name\":\"Bob\",\"age\":null}");
+        assertThat(controller.handleRequest("GET", "/api/users/2?fields=name,age&omitNulls", ""))
+            .isEqualTo("{\"name\":\"Bob\"}");
+        assertThat(controller.handleRequest("GET", "/api/users?limit=1&fields=age&omitNulls&sort=-id", ""))
+            .startsWith("{\"items\":[{}],\"next\":\"");
+        assertThat(controller.handleRequest("GET", "/api/users?fields=name,secret", ""))
+            .contains("\"status\":400", "Unknown field: secret");
+    }
+
+    @Test
+    @DisplayName("Should sort by several fields and page through a top-K selection")
+    void shouldSortBySeveralFields() {
+        String[] names = {"b", "a", "c", "a", "b", "c"};
+        int[] ages = {20, 20, 10, 30, 10, 20};
+        for (int i = 0; i < names.length; i++) {
+            TestEntity entity = new TestEntity();
+            entity.name.set(names[i] + ages[i]);
+            entity.age.set(ages[i]);
+            repository.save(entity);
+        }
+
+        String all = controller.handleRequest("GET", "/api/users?sort=age,-name&fields=name", "");
+        String first = controller.handleRequest("GET", "/api/users?sort=-age,name&limit=4&fields=name", "");
+        String second = controller.handleRequest("GET", "/api/users?cursor=" + next(first) + "&limit=4&fields=name", "");
+
+        assertThat(all).isEqualTo("[{\"name\":\"c10\"},{\"name\":\"b10\"},{\"name\":\"c20\"},"
+            + "{\"name\":\"b20\"},{\"name\":\"a20\"},{\"name\":\"a30\"}]");
+        assertThat(first).startsWith("{\"items\":[{\"name\":\"a30\"},{\"name\":\"a20\"},{\"name\":\"b20\"},"
+            + "{\"name\":\"c20\"}],\"next\":\"");
+        assertThat(second).isEqualTo("{\"items\":[{\"name\":\"b10\"},{\"name\":\"c10\"}],\"next\":null}");
+    }
+
+    @Test
+    @DisplayName("Should aggregate filtered entities by group")
+    void shouldAggregateByGroup() {
+        for (int age : new int[] {10, 20, 30, 40}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set(age < 25 ? "young" : "old");
+            entity.age.set(age);
+            repository.save(entity);
+        }
+
+        assertThat(controller.handleRequest("GET", "/api/users/_aggregate?groupBy=name&sum=age&avg=age&count", ""))
+            .isEqualTo("{\"groups\":[{\"name\":\"old\",\"count\":2,\"sum\":{\"age\":70},\"avg\":{\"age\":35.0}},"
+                + "{\"name\":\"young\",\"count\":2,\"sum\":{\"age\":30},\"avg\":{\"age\":15.0}}]}");
+        assertThat(controller.handleRequest("GET", "/api/users/_aggregate?age.gte=20&min=age&max=age", ""))
+            .isEqualTo("{\"groups\":[{\"min\":{\"age\":20},\"max\":{\"age\":40}}]}");
+        assertThat(controller.handleRequest("GET", "/api/users/_aggregate?sum=name", ""))
+            .contains("\"status\":400");
+    }
+
+    @Test
+    @DisplayName("Should serve materialized views by name")
+    void shouldServeMaterializedViews() {
+        TestEntity entity = new TestEntity();
+        entity.name.set("a");
+        entity.age.set(10);
+        repository.save(entity);
+        TestEntity prototype = new TestEntity();
+        repository.materialize("ages", ViewDefinition.groupBy().count().sum(prototype.age));
+
+        entity.age.set(15);
+        repository.save(entity);
+
+        assertThat(controller.handleRequest("GET", "/api/users/_views", "")).isEqualTo("{\"views\":[\"ages\"]}");
+        assertThat(controller.handleRequest("GET", "/api/users/_views/ages", ""))
+            .isEqualTo("{\"groups\":[{\"count\":1,\"sum\":{\"age\":15}}]}");
+        assertThat(controller.handleRequest("GET", "/api/users/_views/missing", "")).contains("\"status\":404");
+    }
+
+    @Test
+    @DisplayName("Should register live queries and return only changes on poll")
+    void shouldServeLiveQueries() {
+        TestEntity young = new TestEntity();
+        young.name.set("a");
+        young.age.set(10);
+        repository.save(young);
+
+        String registered = controller.handleRequest("POST", "/api/users/_live?age.lt=18&fields=name", "");
+        assertThat(registered).isEqualTo("{\"id\":\"1\",\"changes\":[{\"type\":\"insert\",\"item\":{\"name\":\"a\"}}]}");
+        assertThat(controller.handleRequest("GET", "/api/users/_live/1", "")).isEqualTo("{\"changes\":[]}");
+
+        controller.handleRequest("POST", "/api/users", "{\"name\":\"b\",\"age\":\"12\"}");
+        controller.handleRequest("POST", "/api/users", "{\"name\":\"c\",\"age\":\"40\"}");
+        controller.handleRequest("PUT", "/api/users/1", "{\"name\":\"a\",\"age\":\"30\"}");
+
+        assertThat(controller.handleRequest("GET", "/api/users/_live/1", ""))
+            .isEqualTo("{\"changes\":[{\"type\":\"insert\",\"item\":{\"name\":\"b\"}},{\"type\":\"remove\",\"id\":1}]}");
+        assertThat(controller.handleRequest("DELETE", "/api/users/_live/1", "")).contains("closed");
+        assertThat(controller.handleRequest("GET", "/api/users/_live/1", "")).contains("\"status\":404");
+    }
+
+    @Test
+    @DisplayName("Should serve sketch statistics for declared fields")
+    void shouldServeSketchStatistics() {
+        assertThat(controller.handleRequest("GET", "/api/users/_stats", "")).isEqualTo("{\"count\":0,\"fields\":{}}");
+
+        Repository<SketchedEntity> sketched = new Repository<>("scores", SketchedEntity::new, new HeapEntityStore<>());
+        EntityController<SketchedEntity> scores = new EntityController<>(sketched, "scores", SketchedEntity::new);
+        for (int i = 1; i <= 100; i++) {
+            SketchedEntity entity = new SketchedEntity();
+            entity.score.set(i);
+            sketched.save(entity);
+        }
+
+        assertThat(scores.handleRequest("GET", "/api/scores/_stats?field=score&quantiles=0.5,0.99&top=0", ""))
+            .isEqualTo("{\"count\":100,\"fields\":{\"score\":{\"nulls\":0,\"distinct\":100,"
+                + "\"quantiles\":{\"p50\":50,\"p99\":99},\"top\":[]}}}");
+        assertThat(scores.handleRequest("GET", "/api/scores/_stats?field=name", "")).contains("\"status\":400");
+        assertThat(scores.handleRequest("GET", "/api/scores/_stats?quantiles=2", "")).contains("\"status\":400");
+    }
+
+    @Test
+    @DisplayName("Should get several entities by id with missing ones inline")
+    void shouldGetSeveralEntitiesById() {
+        for (String name : new String[] {"a", "b", "c"}) {
+            TestEntity entity = new TestEntity();
+            entity.name.set(name);
+            repository.save(entity);
+        }
+
+        assertThat(controller.handleRequest("GET", "/api/users?ids=3,9,1&fields=id,name", ""))
+            .isEqualTo("[{\"id\":3,\"name\":\"c\"},{\"id\":9,\"error\":\"Not found\"},{\"id\":1,\"name\":\"a\"}]");
+        assertThat(controller.handleRequest("POST", "/api/users/_mget?fields=name", "{\"ids\": [2, \"3\"]}"))
+            .isEqualTo("[{\"name\":\"b\"},{\"name\":\"c\"}]");
+        assertThat(controller.handleRequest("POST", "/api/users/_mget", "{\"ids\":[1,x]}")).contains("\"status\":400");
+        assertThat(controller.handleRequest("POST", "/api/users/_mget", "[1,2]")).contains("\"status\":400");
+    }
+
+    @Test
+    @DisplayName("Should expand references on lists, pages and single reads")
+    void shouldExpandReferences() {
+        TestEntity user = new TestEntity();
+        user.name.set("ann");
+        repository.save(user);
+        Repository<OrderEntity> orders = new Repository<>("orders", OrderEntity::new, new HeapEntityStore<>());
+        Map<String, Repository<?>> repositories = Map.of("users", repository, "orders", orders);
+        EntityController<OrderEntity> orderController =
+            new EntityController<>(orders, "orders", OrderEntity::new, repositories::get);
+        for (long userId : new long[] {1, 2}) {
+            OrderEntity order = new OrderEntity();
+            order.userId.set(userId);
+            orders.save(order);
+        }
+        String ann = JsonSerializer.toJson(user);
+
+        assertThat(orderController.handleRequest("GET", "/api/orders?expand=userId&fields=id,userId&sort=id", ""))
+            .isEqualTo("[{\"id\":1,\"userId\":" + ann + "},{\"id\":2,\"userId\":null}]");
+        assertThat(orderController.handleRequest("GET", "/api/orders?userId=1&expand=userId&limit=1&fields=userId", ""))
+            .isEqualTo("{\"items\":[{\"userId\":" + ann + "}],\"next\":null}");
+        assertThat(orderController.handleRequest("GET", "/api/orders/1?expand=userId&fields=userId", ""))
+            .isEqualTo("{\"userId\":" + ann + "}");
+        assertThat(controller.handleRequest("GET", "/api/users?expand=name", "")).contains("\"status\":400");
+    }
+
+    private static String next(String page) {
+        int start = page.indexOf("\"next\":\"") + 8;
+        assertThat(start).isGreaterThan(7);
+        return page.substring(start, page.indexOf('"', start));
+    }
 }
@@ -0,0 +1,66 @@
+package io.matte;
+
+/**
+ * Retained heap per entity for each EntityStore implementation. Off-heap data
+ * is not counted, only what the garbage collector has to trace. Run manually:
+ *
+ * <pre>
+ * java -Xmx4g -cp target/classes:target/test-classes io.matte.EntityStoreMemoryBenchmark [entities]
+ * </pre>
+ */
+public class EntityStoreMemoryBenchmark {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Boolean> active = field("active", Boolean.class);
+
+        Product() {
+            fields(name, price, category, active);
+        }
+    }
+
+    private static final String[] CATEGORIES = {"Electronics", "Kitchen", "Garden", "Toys"};
+
+    public static void main(String[] args) {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("Store memory benchmark: %,d entities%n%n", entities);
+        System.out.printf("%-22s %14s%n", "", "bytes/entity");
+
+        measure("HeapEntityStore", new HeapEntityStore<>(), entities);
+        measure("ColumnarEntityStore", new ColumnarEntityStore<>(Product::new), entities);
+        measure("OffHeapEntityStore", new OffHeapEntityStore<>(Product::new), entities);
+    }
+
+    private static void measure(String label, EntityStore<Product> store, int entities) {
+        long before = usedHeap();
+        Product template = new Product();
+        for (int i = 1; i <= entities; i++) {
+            // Columnar stores copy values out, heap stores keep the instance
+            Product product = store instanceof HeapEntityStore ? new Product() : template;
+            product.id.set((long) i);
+            product.name.set(CATEGORIES[i & 3]);
+            product.price.set(i % 1000);
+            product.category.set(CATEGORIES[i & 3]);
+            product.active.set((i & 1) == 0);
+            store.put(i, product);
+        }
+        long bytes = usedHeap() - before;
+        System.out.printf("%-22s %14.1f%n", label, (double) bytes / entities);
+        if (store.size() != entities) throw new IllegalStateException("lost entities");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,133 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Expansion Unit Tests")
+class ExpansionTest {
+
+    static class User extends Entity {
+        final Field<String> name = field("name", String.class);
+
+        public User() {
+            fields(name);
+        }
+    }
+
+    static class Order extends Entity {
+        final Field<Long> userId = field("userId", Long.class);
+        final Field<Integer> total = field("total", Integer.class);
+
+        public Order() {
+            fields(userId, total);
+            indexes(reference(userId, "users"));
+        }
+    }
+
+    // Counts lookups so that tests can tell batches from one-by-one reads
+    static class CountingStore<T extends Entity> extends HeapEntityStore<T> {
+        int gets;
+        int batches;
+
+        @Override
+        public T get(long id) {
+            gets++;
+            return super.get(id);
+        }
+
+        @Override
+        public List<T> getAll(long[] ids) {
+            batches++;
+            return super.getAll(ids);
+        }
+    }
+
+    private CountingStore<User> userStore;
+    private Repository<User> users;
+    private Repository<Order> orders;
+    private Schema schema;
+
+    @BeforeEach
+    void setUp() {
+        userStore = new CountingStore<>();
+        users = new Repository<>("users", User::new, userStore);
+        orders = new Repository<>("orders", Order::new, new HeapEntityStore<>());
+        schema = orders.schema();
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.name.set(name);
+        return users.save(user);
+    }
+
+    private Order order(Long userId, int total) {
+        Order order = new Order();
+        order.userId.set(userId);
+        order.total.set(total);
+        return orders.save(order);
+    }
+
+    private Projection expanding(String fields, List<String> expand) {
+        Map<String, Repository<?>> repositories = Map.of("users", users, "orders", orders);
+        return Projection.compile(schema, fields, false)
+            .expanding(Expansion.compile(schema, expand, orders, repositories::get));
+    }
+
+    @Test
+    @DisplayName("Should embed referenced entities resolved in one batch")
+    void shouldEmbedInOneBatch() {
+        User ann = user("Ann");
+        User bob = user("Bob");
+        List<Order> page = List.of(order(ann.id.get(), 10), order(bob.id.get(), 20), order(ann.id.get(), 30),
+            order(99L, 40), order(null, 50));
+        Projection projection = expanding("total,userId", List.of("userId"));
+
+        projection.prepare(page);
+        StringBuilder json = new StringBuilder();
+        for (Order order : page) {
+            projection.write(order, json);
+        }
+
+        assertThat(json.toString()).isEqualTo("{\"total\":10,\"userId\":" + JsonSerializer.toJson(ann) + "}"
+            + "{\"total\":20,\"userId\":" + JsonSerializer.toJson(bob) + "}"
+            + "{\"total\":30,\"userId\":" + JsonSerializer.toJson(ann) + "}"
+            + "{\"total\":40,\"userId\":null}{\"total\":50,\"userId\":null}");
+        assertThat(userStore.batches).isEqualTo(1);
+        assertThat(userStore.gets).isZero();
+    }
+
+    @Test
+    @DisplayName("Should look up ids outside a prepared batch one by one")
+    void shouldLookUpUnpreparedIds() {
+        User ann = user("Ann");
+        Order order = order(ann.id.get(), 10);
+
+        assertThat(expanding("userId", List.of("userId")).toJson(order))
+            .isEqualTo("{\"userId\":" + JsonSerializer.toJson(ann) + "}");
+        assertThat(userStore.gets).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should find referencing entities through the reverse index and reject non-references")
+    void shouldIndexReferences() {
+        User ann = user("Ann");
+        order(ann.id.get(), 10);
+        order(ann.id.get(), 20);
+        order(7L, 30);
+
+        assertThat(orders.findBy("userId", ann.id.get())).extracting(o -> o.total.get()).containsExactlyInAnyOrder(10, 20);
+        assertThat(orders.explain(Condition.eq("userId", ann.id.get()))).contains("hash(userId)");
+        assertThatThrownBy(() -> expanding(null, List.of("total"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Expansion.compile(schema, List.of("userId"), orders, name -> null))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> IndexDefinition.reference(new User().name, "users"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
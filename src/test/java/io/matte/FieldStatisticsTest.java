@@ -0,0 +1,80 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("FieldStatistics Unit Tests")
+class FieldStatisticsTest {
+
+    @Test
+    @DisplayName("Should count nulls and values across adds and removes")
+    void shouldCountNullsAndValues() {
+        FieldStatistics statistics = new FieldStatistics(String.class);
+
+        statistics.add("a");
+        statistics.add(null);
+        statistics.add("b");
+        statistics.remove(null);
+        statistics.add(null);
+        statistics.remove("a");
+
+        assertThat(statistics.values()).isEqualTo(1);
+        assertThat(statistics.nulls()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should estimate distinct values and follow deletes")
+    void shouldEstimateDistinctValues() {
+        FieldStatistics statistics = new FieldStatistics(String.class);
+        for (int i = 0; i < 10_000; i++) {
+            statistics.add("category-" + (i % 1_000));
+        }
+
+        assertThat(statistics.distinct()).isBetween(900.0, 1_100.0);
+
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 1_000 >= 10) statistics.remove("category-" + (i % 1_000));
+        }
+
+        assertThat(statistics.distinct()).isBetween(9.0, 11.0);
+        assertThat(new FieldStatistics(String.class).distinct()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should estimate range fractions from the histogram")
+    void shouldEstimateRangeFractions() {
+        FieldStatistics statistics = new FieldStatistics(Integer.class);
+        for (int price = 1; price <= 1_000; price++) {
+            statistics.add(price);
+        }
+
+        assertThat(statistics.rangeFraction(range(null, 512))).isCloseTo(0.5, within(0.02));
+        assertThat(statistics.rangeFraction(range(100, 200))).isBetween(0.05, 0.15);
+        assertThat(statistics.rangeFraction(range(5_000, null))).isZero();
+        assertThat(statistics.rangeFraction(range(null, null))).isCloseTo(1.0, within(0.001));
+        assertThat(new FieldStatistics(String.class).rangeFraction(range(1, 2))).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("Should bucket negative and extreme values")
+    void shouldBucketNegativeAndExtremeValues() {
+        FieldStatistics statistics = new FieldStatistics(Long.class);
+        statistics.add(-5L);
+        statistics.add(Long.MIN_VALUE);
+        statistics.add(0L);
+        statistics.add(Long.MAX_VALUE);
+
+        assertThat(FieldStatistics.bucket(-1)).isEqualTo(63);
+        assertThat(FieldStatistics.bucket(0)).isEqualTo(64);
+        assertThat(FieldStatistics.bucket(Long.MIN_VALUE)).isZero();
+        assertThat(FieldStatistics.bucket(Long.MAX_VALUE)).isEqualTo(127);
+        assertThat(statistics.rangeFraction(range(null, -1))).isCloseTo(0.5, within(0.01));
+        assertThat(statistics.rangeFraction(range(0, 0))).isCloseTo(0.25, within(0.01));
+    }
+
+    private static Condition.Range range(Integer lower, Integer upper) {
+        return new Condition.Range("price", lower, true, upper, true);
+    }
+}
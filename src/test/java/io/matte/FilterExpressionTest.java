@@ -0,0 +1,128 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("FilterExpression Unit Tests")
+class FilterExpressionTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<Boolean> active = field("active", Boolean.class);
+
+        public Product() {
+            fields(name, category, price, active);
+            indexes(hashIndex(category), sortedIndex(price));
+        }
+    }
+
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+        product("Mug", "Kitchen", 12, true);
+        product("Pan", "Kitchen", 40, false);
+        product("Rake", "Garden", 25, true);
+        product("Lamp", "Office", null, true);
+    }
+
+    private void product(String name, String category, Integer price, Boolean active) {
+        Product product = new Product();
+        product.name.set(name);
+        product.category.set(category);
+        product.price.set(price);
+        product.active.set(active);
+        repository.save(product);
+    }
+
+    // Matching names in id order; scans return entities in store order
+    private String names(String filter) {
+        return repository.find(filter).stream()
+            .sorted(Comparator.comparing(p -> p.id.get()))
+            .map(p -> p.name.get())
+            .collect(Collectors.joining(","));
+    }
+
+    @Test
+    @DisplayName("Should parse comparisons with and binding tighter than or")
+    void shouldParseWithPrecedence() {
+        assertThat(FilterExpression.parse("price > 10 and category == 'Kitchen' or active = true").toString())
+            .isEqualTo("((price > 10 and category = Kitchen) or active = true)");
+        assertThat(FilterExpression.parse("price > 10 AND (category == \"Kitchen\" || NOT active == true)").toString())
+            .isEqualTo("(price > 10 and (category = Kitchen or not active = true))");
+        assertThat(FilterExpression.parse("!(price <= -5)").toString()).isEqualTo("not price <= -5");
+    }
+
+    @Test
+    @DisplayName("Should evaluate all operators against entities")
+    void shouldEvaluateOperators() {
+        assertThat(names("price > 10 and category == 'Kitchen'")).isEqualTo("Mug,Pan");
+        assertThat(names("price >= 25 && price < 40")).isEqualTo("Rake");
+        assertThat(names("category != 'Kitchen'")).isEqualTo("Rake,Lamp");
+        assertThat(names("category in ('Garden', 'Office')")).isEqualTo("Rake,Lamp");
+        assertThat(names("name startsWith 'M' or name endsWith 'mp'")).isEqualTo("Mug,Lamp");
+        assertThat(names("name contains 'a' and not active == true")).isEqualTo("Pan");
+        assertThat(names("price == null")).isEqualTo("Lamp");
+        assertThat(names("price <= 12 or price != null and active = false")).isEqualTo("Mug,Pan");
+    }
+
+    @Test
+    @DisplayName("Should report syntax and type errors with their position")
+    void shouldReportErrors() {
+        assertThatThrownBy(() -> FilterExpression.parse("price >"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("position 7");
+        assertThatThrownBy(() -> FilterExpression.parse("price > 10 and"))
+            .hasMessageContaining("Expected a field name");
+        assertThatThrownBy(() -> FilterExpression.parse("(price > 10"))
+            .hasMessageContaining("Expected ')'");
+        assertThatThrownBy(() -> FilterExpression.parse("name == 'open"))
+            .hasMessageContaining("Unterminated string");
+        assertThatThrownBy(() -> FilterExpression.parse("price < null"))
+            .hasMessageContaining("null cannot be compared");
+        assertThatThrownBy(() -> repository.find("weight > 3"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unknown field: weight");
+        assertThatThrownBy(() -> repository.find("price > 'cheap'"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Invalid value");
+        assertThatThrownBy(() -> repository.find("price == 4294967308"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("field price");
+        assertThatThrownBy(() -> repository.find(Condition.eq("price", 12.5)))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("field price");
+        assertThat(repository.find(Condition.eq("price", 12.0))).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should cache compiled filters by expression text")
+    void shouldCacheCompiledFilters() {
+        Condition first = repository.compile("price > 10 and category == 'Kitchen'");
+        Condition second = repository.compile("price > 10 and category == 'Kitchen'");
+
+        assertThat(second).isSameAs(first);
+        assertThat(repository.compile("price > 11")).isNotSameAs(first);
+        assertThat(repository.explain(first)).contains("hash(category)");
+    }
+
+    @Test
+    @DisplayName("Should compare integral values without Comparable")
+    void shouldCompareIntegralValues() {
+        Condition.Range range = new Condition.Range("price", 10, false, 20L, true);
+        Condition.Range top = new Condition.Range("price", Long.MAX_VALUE, false, null, false);
+        Condition.Range text = new Condition.Range("name", "b", true, "d", false);
+
+        assertThat(range.matches(10)).isFalse();
+        assertThat(range.matches(11L)).isTrue();
+        assertThat(range.matches(20)).isTrue();
+        assertThat(range.matches(21)).isFalse();
+        assertThat(top.matches(Long.MAX_VALUE)).isFalse();
+        assertThat(text.matches("c")).isTrue();
+        assertThat(text.matches("d")).isFalse();
+    }
+}
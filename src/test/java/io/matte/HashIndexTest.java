@@ -0,0 +1,134 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("HashIndex Unit Tests")
+class HashIndexTest {
+
+    static class User extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> email = field("email", String.class);
+        final Field<String> team = field("team", String.class);
+        final Field<Integer> age = field("age", Integer.class);
+
+        public User() {
+            fields(name, email, team, age);
+            indexes(uniqueIndex(email), hashIndex(team), hashIndex(age));
+        }
+    }
+
+    private Repository<User> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("users", User::new, new HeapEntityStore<>());
+    }
+
+    private User user(String name, String email, String team, Integer age) {
+        User user = new User();
+        user.name.set(name);
+        user.email.set(email);
+        user.team.set(team);
+        user.age.set(age);
+        return repository.save(user);
+    }
+
+    @Test
+    @DisplayName("Should find entities by indexed field value")
+    void shouldFindEntitiesByIndexedFieldValue() {
+        user("Alice", "alice@example.com", "red", 30);
+        user("Bob", "bob@example.com", "blue", 25);
+        user("Carol", "carol@example.com", "red", 41);
+
+        List<User> red = repository.findBy("team", "red");
+
+        assertThat(red).extracting(u -> u.name.get()).containsExactly("Alice", "Carol");
+        assertThat(repository.findBy("team", "green")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should convert query values to the field type")
+    void shouldConvertQueryValuesToFieldType() {
+        user("Alice", "alice@example.com", "red", 30);
+
+        assertThat(repository.findBy("age", "30")).hasSize(1);
+        assertThat(repository.findBy("age", 30L)).hasSize(1);
+        assertThatThrownBy(() -> repository.findBy("age", "thirty"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("age");
+        assertThatThrownBy(() -> repository.findBy("missing", "x"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown field");
+    }
+
+    @Test
+    @DisplayName("Should remove the old value when an indexed field changes")
+    void shouldRemoveOldValueWhenIndexedFieldChanges() {
+        User alice = user("Alice", "alice@example.com", "red", 30);
+
+        alice.team.set("blue");
+        repository.save(alice);
+
+        assertThat(repository.findBy("team", "red")).isEmpty();
+        assertThat(repository.findBy("team", "blue")).containsExactly(alice);
+    }
+
+    @Test
+    @DisplayName("Should drop entries on delete")
+    void shouldDropEntriesOnDelete() {
+        User alice = user("Alice", "alice@example.com", "red", 30);
+
+        repository.deleteById(alice.id.get());
+
+        assertThat(repository.findBy("team", "red")).isEmpty();
+        assertThat(repository.findBy("email", "alice@example.com")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject duplicate values on a unique index")
+    void shouldRejectDuplicateValuesOnUniqueIndex() {
+        User alice = user("Alice", "alice@example.com", "red", 30);
+
+        assertThatThrownBy(() -> user("Impostor", "alice@example.com", "blue", 20))
+            .isInstanceOf(UniqueConstraintException.class)
+            .hasMessageContaining("email");
+        assertThat(repository.count()).isEqualTo(1);
+
+        // Saving the owner again, or freeing the value, is fine
+        repository.save(alice);
+        alice.email.set("alice@work.example.com");
+        repository.save(alice);
+        assertThat(user("Alicia", "alice@example.com", "red", 22).id.get()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should combine equality conditions and fall back to scans for unindexed fields")
+    void shouldCombineConditionsAndFallBackToScans() {
+        user("Alice", "alice@example.com", "red", 30);
+        user("Bob", "bob@example.com", "red", 25);
+        user("Bob", "bob2@example.com", "blue", 25);
+
+        List<User> found = repository.find(Condition.and(Condition.eq("team", "red"), Condition.eq("name", "Bob")));
+
+        assertThat(found).extracting(u -> u.email.get()).containsExactly("bob@example.com");
+        assertThat(repository.findBy("name", "Bob")).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should index entities saved before the schema was known")
+    void shouldIndexEntitiesSavedWithoutPrototype() {
+        Repository<User> lazy = new Repository<>("users");
+        User alice = new User();
+        alice.email.set("alice@example.com");
+        lazy.save(alice);
+
+        assertThat(lazy.findBy("email", "alice@example.com")).containsExactly(alice);
+        assertThat(new Repository<User>("empty").findBy("email", "x")).isEmpty();
+    }
+}
@@ -0,0 +1,44 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("HyperLogLog Unit Tests")
+class HyperLogLogTest {
+
+    @Test
+    @DisplayName("Should estimate distinct counts from tens to millions within a few percent")
+    void shouldEstimateDistinctCounts() {
+        HyperLogLog sketch = new HyperLogLog();
+        int added = 0;
+        for (int target : new int[] {10, 1_000, 100_000, 1_000_000}) {
+            for (; added < target; added++) {
+                sketch.add("user" + added + "@example.com");
+                // Duplicates do not count
+                sketch.add("user" + (added / 2) + "@example.com");
+            }
+            assertThat(sketch.estimate()).isCloseTo(target, withinPercentage(target < 100 ? 10 : 6));
+        }
+    }
+
+    @Test
+    @DisplayName("Should forget removed values, including the longest run in a register")
+    void shouldForgetRemovedValues() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long i = 0; i < 50_000; i++) {
+            sketch.add(i);
+        }
+        for (long i = 10_000; i < 50_000; i++) {
+            sketch.remove(i);
+        }
+
+        assertThat(sketch.estimate()).isCloseTo(10_000, withinPercentage(6));
+
+        for (long i = 0; i < 10_000; i++) {
+            sketch.remove(i);
+        }
+        assertThat(sketch.estimate()).isZero();
+    }
+}
@@ -105,6 +105,15 @@ class JsonSerializerTest {
         assertThat(json).contains("\"name\":\"John \\\"The Boss\\\" Doe\"");
     }
 
+    @Test
+    @DisplayName("Should escape backslashes and control characters")
+    void shouldEscapeBackslashesAndControlCharacters() {
+        assertThat(JsonSerializer.escape("C:\\temp\n\tend\r\b\f\u0001"))
+            .isEqualTo("C:\\\\temp\\n\\tend\\r\\b\\f\\u0001");
+        String plain = "nothing to escape";
+        assertThat(JsonSerializer.escape(plain)).isSameAs(plain);
+    }
+
     @Test
     @DisplayName("Should produce valid JSON format")
     void shouldProduceValidJsonFormat() {
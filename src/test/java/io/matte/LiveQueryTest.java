@@ -0,0 +1,112 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("LiveQuery Unit Tests")
+class LiveQueryTest {
+
+    static class Order extends Entity {
+        final Field<String> status = field("status", String.class);
+        final Field<Integer> total = field("total", Integer.class);
+
+        public Order() {
+            fields(status, total);
+            indexes(hashIndex(status));
+        }
+    }
+
+    // Records deltas as "insert 1 open 150", "update ...", "remove 1"
+    static class Recorder implements LiveQuery.Listener<Order> {
+        final List<String> changes = new ArrayList<>();
+
+        @Override
+        public void onInsert(Order order) {
+            changes.add("insert " + describe(order));
+        }
+
+        @Override
+        public void onUpdate(Order order) {
+            changes.add("update " + describe(order));
+        }
+
+        @Override
+        public void onRemove(long id) {
+            changes.add("remove " + id);
+        }
+
+        private static String describe(Order order) {
+            return order.id.get() + " " + order.status.get() + " " + order.total.get();
+        }
+    }
+
+    private Repository<Order> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("orders", Order::new, new HeapEntityStore<>());
+    }
+
+    private Order order(String status, int total) {
+        Order order = new Order();
+        order.status.set(status);
+        order.total.set(total);
+        return repository.save(order);
+    }
+
+    @Test
+    @DisplayName("Should deliver the initial result then only changes to it")
+    void shouldDeliverDeltas() {
+        Order big = order("open", 150);
+        order("open", 50);
+        order("closed", 300);
+        Recorder recorder = new Recorder();
+        repository.subscribe(Condition.and(Condition.eq("status", "open"), Condition.gt("total", 100)), recorder);
+
+        assertThat(recorder.changes).containsExactly("insert 1 open 150");
+
+        Order small = order("open", 20);
+        small.total.set(120);
+        repository.save(small);
+        big.total.set(175);
+        repository.save(big);
+        repository.save(big);
+        big.status.set("closed");
+        repository.save(big);
+        repository.deleteById(small.id.get());
+        repository.deleteById(3L);
+
+        // The no-op save and the writes outside the result deliver nothing
+        assertThat(recorder.changes).containsExactly(
+            "insert 1 open 150", "insert 4 open 120", "update 1 open 175", "remove 1", "remove 4");
+    }
+
+    @Test
+    @DisplayName("Should stop delivering once closed or when the listener fails")
+    void shouldStopWhenClosedOrFailing() {
+        Recorder recorder = new Recorder();
+        LiveQuery<Order> query = repository.subscribe(null, recorder);
+        order("open", 10);
+        query.close();
+        order("open", 20);
+
+        LiveQuery<Order> failing = repository.subscribe(Condition.eq("status", "new"), new Recorder() {
+            @Override
+            public void onInsert(Order order) {
+                throw new IllegalStateException("dashboard gone");
+            }
+        });
+        Order order = order("new", 30);
+
+        assertThat(recorder.changes).containsExactly("insert 1 open 10");
+        assertThat(query.isClosed()).isTrue();
+        assertThat(failing.isClosed()).isTrue();
+        assertThat(repository.findById(order.id.get())).isSameAs(order);
+    }
+}
@@ -0,0 +1,91 @@
+package io.matte;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the primitive repository index with the HashMap&lt;Long, T&gt; it replaced:
+ * retained heap per entry and findById-style lookup latency. Run manually:
+ *
+ * <pre>
+ * java -Xmx4g -cp target/classes:target/test-classes io.matte.LongHashMapBenchmark [entries]
+ * </pre>
+ */
+public class LongHashMapBenchmark {
+
+    private static final Object VALUE = new Object();
+    private static final int LOOKUPS = 5_000_000;
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        System.out.printf("Index benchmark: %,d entries%n%n", entries);
+
+        long before = usedHeap();
+        Map<Long, Object> hashMap = new HashMap<>();
+        for (long i = 1; i <= entries; i++) {
+            hashMap.put(i, VALUE);
+        }
+        long hashMapBytes = usedHeap() - before;
+
+        before = usedHeap();
+        LongHashMap<Object> longMap = new LongHashMap<>();
+        for (long i = 1; i <= entries; i++) {
+            longMap.put(i, VALUE);
+        }
+        long longMapBytes = usedHeap() - before;
+
+        System.out.printf("%-22s %14s %14s%n", "", "bytes/entry", "ns/lookup");
+        // Measure each structure a few times so the JIT settles
+        double hashMapNanos = 0;
+        double longMapNanos = 0;
+        for (int round = 0; round < 5; round++) {
+            hashMapNanos = lookupHashMap(hashMap, entries);
+            longMapNanos = lookupLongMap(longMap, entries);
+        }
+        System.out.printf("%-22s %14.1f %14.1f%n", "HashMap<Long, T>", (double) hashMapBytes / entries, hashMapNanos);
+        System.out.printf("%-22s %14.1f %14.1f%n", "LongHashMap<T>", (double) longMapBytes / entries, longMapNanos);
+
+        // Keep both maps reachable until the end of the measurement
+        if (hashMap.size() + longMap.size() == 0) System.out.println();
+    }
+
+    private static double lookupHashMap(Map<Long, Object> map, int entries) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            long id = random.nextInt(entries) + 1;
+            if (map.get(id) != null) hits++;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (hits != LOOKUPS) throw new IllegalStateException("missed lookups");
+        return (double) elapsed / LOOKUPS;
+    }
+
+    private static double lookupLongMap(LongHashMap<Object> map, int entries) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            long id = random.nextInt(entries) + 1;
+            if (map.get(id) != null) hits++;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (hits != LOOKUPS) throw new IllegalStateException("missed lookups");
+        return (double) elapsed / LOOKUPS;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
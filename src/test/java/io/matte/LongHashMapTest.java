@@ -0,0 +1,124 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("LongHashMap Unit Tests")
+class LongHashMapTest {
+
+    @Test
+    @DisplayName("Should put and get values by primitive key")
+    void shouldPutAndGetValuesByPrimitiveKey() {
+        LongHashMap<String> map = new LongHashMap<>();
+
+        map.put(1L, "one");
+        map.put(2L, "two");
+
+        assertThat(map.get(1L)).isEqualTo("one");
+        assertThat(map.get(2L)).isEqualTo("two");
+        assertThat(map.get(3L)).isNull();
+        assertThat(map.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should replace value and return previous one")
+    void shouldReplaceValueAndReturnPreviousOne() {
+        LongHashMap<String> map = new LongHashMap<>();
+        map.put(7L, "old");
+
+        String previous = map.put(7L, "new");
+
+        assertThat(previous).isEqualTo("old");
+        assertThat(map.get(7L)).isEqualTo("new");
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should support zero, negative and extreme keys")
+    void shouldSupportZeroNegativeAndExtremeKeys() {
+        LongHashMap<String> map = new LongHashMap<>();
+
+        map.put(0L, "zero");
+        map.put(-1L, "minus one");
+        map.put(Long.MAX_VALUE, "max");
+        map.put(Long.MIN_VALUE, "min");
+
+        assertThat(map.get(0L)).isEqualTo("zero");
+        assertThat(map.get(-1L)).isEqualTo("minus one");
+        assertThat(map.get(Long.MAX_VALUE)).isEqualTo("max");
+        assertThat(map.get(Long.MIN_VALUE)).isEqualTo("min");
+    }
+
+    @Test
+    @DisplayName("Should remove entries and keep colliding keys reachable")
+    void shouldRemoveEntriesAndKeepCollidingKeysReachable() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        for (long i = 0; i < 1_000; i++) {
+            map.put(i, i);
+        }
+
+        for (long i = 0; i < 1_000; i += 2) {
+            assertThat(map.remove(i)).isEqualTo(i);
+        }
+
+        assertThat(map.size()).isEqualTo(500);
+        for (long i = 0; i < 1_000; i++) {
+            assertThat(map.get(i)).isEqualTo(i % 2 == 0 ? null : i);
+        }
+        assertThat(map.remove(0L)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should not grow without bound under insert and delete churn")
+    void shouldNotGrowWithoutBoundUnderChurn() {
+        LongHashMap<String> map = new LongHashMap<>();
+
+        for (long i = 0; i < 100_000; i++) {
+            map.put(i, "v");
+            map.remove(i);
+        }
+
+        assertThat(map.size()).isZero();
+        assertThat(map.capacity()).isLessThanOrEqualTo(64);
+    }
+
+    @Test
+    @DisplayName("Should behave like HashMap for random operations")
+    void shouldBehaveLikeHashMapForRandomOperations() {
+        LongHashMap<Integer> map = new LongHashMap<>();
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(reference.remove(key));
+            } else {
+                assertThat(map.put(key, i)).isEqualTo(reference.put(key, i));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(reference.size());
+        reference.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+        List<Integer> values = new ArrayList<>();
+        map.forEach(values::add);
+        assertThat(values).containsExactlyInAnyOrderElementsOf(reference.values());
+    }
+
+    @Test
+    @DisplayName("Should reject null values")
+    void shouldRejectNullValues() {
+        LongHashMap<String> map = new LongHashMap<>();
+
+        assertThatThrownBy(() -> map.put(1L, null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
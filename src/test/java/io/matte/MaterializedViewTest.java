@@ -0,0 +1,105 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("MaterializedView Unit Tests")
+class MaterializedViewTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+
+        public Product() {
+            fields(name, category, price);
+        }
+    }
+
+    private Repository<Product> repository;
+    private final Product prototype = new Product();
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+    }
+
+    private Product product(String name, String category, Integer price) {
+        Product product = new Product();
+        product.name.set(name);
+        product.category.set(category);
+        product.price.set(price);
+        return repository.save(product);
+    }
+
+    @Test
+    @DisplayName("Should include existing entities and follow inserts, updates and deletes")
+    void shouldFollowWrites() {
+        Product mug = product("Mug", "Kitchen", 12);
+        MaterializedView view = repository.materialize("byCategory",
+            ViewDefinition.groupBy(prototype.category).count().sum(prototype.price).min(prototype.price).max(prototype.price));
+        Product pan = product("Pan", "Kitchen", 40);
+        Product rake = product("Rake", "Garden", 25);
+
+        assertThat(view.count("Kitchen")).isEqualTo(2);
+        assertThat(view.sum("price", "Kitchen")).isEqualTo(52);
+        assertThat(view.max("price", "Kitchen")).isEqualTo(40L);
+
+        pan.category.set("Garden");
+        repository.save(pan);
+        repository.deleteById(mug.id.get());
+
+        assertThat(view.count("Kitchen")).isZero();
+        assertThat(view.min("price", "Kitchen")).isNull();
+        assertThat(view.count("Garden")).isEqualTo(2);
+        assertThat(view.sum("price", "Garden")).isEqualTo(65);
+
+        // Removing the current minimum falls back to the next value
+        repository.deleteById(rake.id.get());
+        assertThat(view.min("price", "Garden")).isEqualTo(40L);
+        assertThat(view.toJson())
+            .isEqualTo("{\"groups\":[{\"category\":\"Garden\",\"count\":1,\"sum\":{\"price\":40},"
+                + "\"min\":{\"price\":40},\"max\":{\"price\":40}}]}");
+    }
+
+    @Test
+    @DisplayName("Should track entities entering and leaving a filtered view")
+    void shouldApplyFilter() {
+        MaterializedView view = repository.materialize("expensive",
+            ViewDefinition.groupBy().count().avg(prototype.price).where(Condition.gte("price", 20)));
+        Product mug = product("Mug", "Kitchen", 12);
+        product("Pan", "Kitchen", 40);
+
+        assertThat(view.count()).isEqualTo(1);
+
+        mug.price.set(30);
+        repository.save(mug);
+        assertThat(view.count()).isEqualTo(2);
+        assertThat(view.avg("price")).isEqualTo(35.0);
+
+        mug.price.set(5);
+        repository.save(mug);
+        assertThat(view.toJson()).isEqualTo("{\"groups\":[{\"count\":1,\"avg\":{\"price\":40.0}}]}");
+    }
+
+    @Test
+    @DisplayName("Should reject duplicate names and metrics the view does not keep")
+    void shouldRejectInvalidUse() {
+        MaterializedView view = repository.materialize("revenue",
+            ViewDefinition.groupBy(prototype.category).sum(prototype.price));
+        product("Mug", null, 12);
+
+        assertThat(view.sum("price", (Object) null)).isEqualTo(12);
+        assertThat(repository.view("revenue")).isSameAs(view);
+        assertThat(repository.viewNames()).containsExactly("revenue");
+        assertThatThrownBy(() -> repository.materialize("revenue", ViewDefinition.groupBy().count()))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> view.min("price", "Kitchen"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> view.count())
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -351,4 +351,42 @@ class MatteEndToEndTest {
         // Should still process - might have null fields but won't crash
         assertThat(response.statusCode()).isEqualTo(200);
     }
+
+    @Test
+    @Order(16)
+    @DisplayName("E2E: Should filter collection by URL-encoded field value")
+    void shouldFilterCollectionByFieldValue() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(BASE_URL + "/api/users?email=alice%40example.com"))
+            .GET()
+            .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("\"name\":\"Alice\"");
+        assertThat(response.body()).doesNotContain("John");
+    }
+
+    @Test
+    @Order(17)
+    @DisplayName("E2E: Should answer several resource queries in one request")
+    void shouldAnswerCompositeQuery() throws IOException, InterruptedException {
+        String document = "{\"count\":\"/api/users/_count?name=Alice\","
+            + "\"alice\":{\"resource\":\"users\",\"name\":\"Alice\",\"fields\":\"email\"},"
+            + "\"missing\":\"/api/orders\"}";
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(BASE_URL + "/api/_query"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(document))
+            .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("{\"count\":{\"count\":1},"
+            + "\"alice\":[{\"email\":\"alice@example.com\"}],"
+            + "\"missing\":{\"error\":\"Not Found\",\"status\":404}}");
+    }
 }
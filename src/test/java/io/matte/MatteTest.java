@@ -75,6 +75,21 @@ class MatteTest {
         assertThat(controller).isNotNull();
     }
 
+    @Test
+    @DisplayName("Should register entity with a custom store")
+    void shouldRegisterEntityWithCustomStore() {
+        app = new Matte();
+        app.register("products", Product::new, ColumnarEntityStore::new);
+
+        Repository<Product> repository = app.getRepository("products");
+        Product product = new Product();
+        product.name.set("Lamp");
+        repository.save(product);
+
+        assertThat(repository.findById(product.id.get())).isNotSameAs(product);
+        assertThat(repository.findById(product.id.get()).name.get()).isEqualTo("Lamp");
+    }
+
     @Test
     @DisplayName("Should support method chaining for registration")
     void shouldSupportMethodChainingForRegistration() {
@@ -0,0 +1,213 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("OffHeapEntityStore Unit Tests")
+class OffHeapEntityStoreTest {
+
+    static class Event extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<Integer> level = field("level", Integer.class);
+        final Field<Long> timestamp = field("timestamp", Long.class);
+        final Field<Boolean> handled = field("handled", Boolean.class);
+
+        public Event() {
+            fields(name, level, timestamp, handled);
+        }
+    }
+
+    private OffHeapEntityStore<Event> store;
+
+    @BeforeEach
+    void setUp() {
+        store = new OffHeapEntityStore<>(Event::new, 4096);
+    }
+
+    private Event event(long id, String name, Integer level, Long timestamp, Boolean handled) {
+        Event event = new Event();
+        event.id.set(id);
+        event.name.set(name);
+        event.level.set(level);
+        event.timestamp.set(timestamp);
+        event.handled.set(handled);
+        return event;
+    }
+
+    @Test
+    @DisplayName("Should round-trip every field type through native memory")
+    void shouldRoundTripEveryFieldType() {
+        store.put(7L, event(7L, "déjà vu \"quoted\"", -3, Long.MIN_VALUE, false));
+
+        Event found = store.get(7L);
+
+        assertThat(found.id.get()).isEqualTo(7L);
+        assertThat(found.name.get()).isEqualTo("déjà vu \"quoted\"");
+        assertThat(found.level.get()).isEqualTo(-3);
+        assertThat(found.timestamp.get()).isEqualTo(Long.MIN_VALUE);
+        assertThat(found.handled.get()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should preserve null values")
+    void shouldPreserveNullValues() {
+        store.put(1L, event(1L, null, null, null, null));
+
+        Event found = store.get(1L);
+
+        assertThat(found.name.get()).isNull();
+        assertThat(found.level.get()).isNull();
+        assertThat(found.timestamp.get()).isNull();
+        assertThat(found.handled.get()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should move an entity to a bigger block when it grows")
+    void shouldMoveEntityToBiggerBlockWhenItGrows() {
+        store.put(1L, event(1L, "short", 1, 1L, true));
+        store.put(2L, event(2L, "neighbour", 2, 2L, true));
+
+        store.put(1L, event(1L, "x".repeat(500), 1, 1L, true));
+
+        assertThat(store.get(1L).name.get()).hasSize(500);
+        assertThat(store.get(2L).name.get()).isEqualTo("neighbour");
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should reuse freed blocks instead of reserving new slabs")
+    void shouldReuseFreedBlocks() {
+        for (int round = 0; round < 50; round++) {
+            for (long id = 1; id <= 100; id++) {
+                store.put(id, event(id, "event-" + id, round, id, true));
+            }
+            for (long id = 1; id <= 100; id++) {
+                assertThat(store.remove(id)).isTrue();
+            }
+        }
+
+        assertThat(store.size()).isZero();
+        assertThat(store.reservedBytes()).isLessThanOrEqualTo(4 * 4096);
+    }
+
+    @Test
+    @DisplayName("Should iterate all stored entities")
+    void shouldIterateAllStoredEntities() {
+        for (long id = 1; id <= 3_000; id++) {
+            store.put(id, event(id, "e" + id, 0, id, false));
+        }
+        store.remove(10L);
+
+        assertThat(store.values()).hasSize(2_999)
+            .extracting(e -> e.id.get()).doesNotContain(10L);
+    }
+
+    @Test
+    @DisplayName("Should reject entities larger than a slab and unsupported field types")
+    void shouldRejectOversizedEntitiesAndUnsupportedTypes() {
+        class Unsupported extends Entity {
+            final Field<Double> ratio = field("ratio", Double.class);
+
+            Unsupported() {
+                fields(ratio);
+            }
+        }
+
+        assertThatThrownBy(() -> store.put(1L, event(1L, "x".repeat(10_000), 1, 1L, true)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("record too large");
+        assertThat(store.get(1L)).isNull();
+        assertThatThrownBy(() -> new OffHeapEntityStore<>(Unsupported::new))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("ratio");
+    }
+
+    @Test
+    @DisplayName("Should keep indexes current using the store's copies as old values")
+    void shouldKeepIndexesCurrentFromStoreCopies() {
+        class Tagged extends Entity {
+            final Field<String> tag = field("tag", String.class);
+
+            Tagged() {
+                fields(tag);
+                indexes(hashIndex(tag));
+            }
+        }
+        Repository<Tagged> repository = new Repository<>("tagged", Tagged::new, new OffHeapEntityStore<>(Tagged::new));
+        Tagged saved = new Tagged();
+        saved.tag.set("old");
+        repository.save(saved);
+
+        Tagged copy = repository.findById(saved.id.get());
+        copy.tag.set("new");
+        repository.save(copy);
+
+        assertThat(repository.findBy("tag", "old")).isEmpty();
+        assertThat(repository.findBy("tag", "new")).hasSize(1);
+        repository.deleteById(saved.id.get());
+        assertThat(repository.findBy("tag", "new")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should return consistent entities to readers racing with writers")
+    void shouldReturnConsistentEntitiesToRacingReaders() throws InterruptedException {
+        for (long id = 1; id <= 100; id++) {
+            store.put(id, event(id, "v0", 0, 0L, true));
+        }
+        AtomicInteger torn = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        executor.submit(() -> {
+            start.await();
+            for (int version = 1; version < 2_000; version++) {
+                for (long id = 1; id <= 100; id++) {
+                    // name and level always change together, with varying lengths
+                    store.put(id, event(id, "v" + version + "x".repeat(version % 50), version, 0L, true));
+                }
+            }
+            return null;
+        });
+        for (int r = 0; r < 3; r++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200_000; i++) {
+                    Event e = store.get(1 + (i % 100));
+                    String expected = "v" + e.level.get() + "x".repeat(e.level.get() % 50);
+                    if (!expected.equals(e.name.get())) torn.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(torn.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should split iteration across a parallel stream")
+    void shouldSplitIterationAcrossParallelStream() {
+        for (long id = 1; id <= 10_000; id++) {
+            store.put(id, event(id, "e" + id, 1, id, false));
+        }
+        store.remove(10L);
+
+        assertThat(store.spliterator().trySplit()).isNotNull();
+        assertThat(StreamSupport.stream(store.spliterator(), true).map(e -> e.id.get()).collect(Collectors.toSet()))
+            .hasSize(9_999).doesNotContain(10L);
+        assertThat(StreamSupport.stream(store.spliterator(), true).mapToInt(e -> e.level.get()).sum()).isEqualTo(9_999);
+    }
+}
@@ -0,0 +1,127 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("PrefixIndex Unit Tests")
+class PrefixIndexTest {
+
+    static class User extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> city = field("city", String.class);
+        final Field<Integer> age = field("age", Integer.class);
+
+        public User() {
+            fields(name, city, age);
+            indexes(prefixIndex(name));
+        }
+    }
+
+    private Repository<User> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("users", User::new, new HeapEntityStore<>());
+    }
+
+    private User user(String name, String city) {
+        User user = new User();
+        user.name.set(name);
+        user.city.set(city);
+        return repository.save(user);
+    }
+
+    private PrefixIndex index() {
+        return (PrefixIndex) IndexDefinition.prefix(new User().name).create(repository.schema());
+    }
+
+    private Object[] row(String name) {
+        User user = new User();
+        user.name.set(name);
+        return repository.schema().snapshot(user);
+    }
+
+    @Test
+    @DisplayName("Should suggest matches in alphabetical order ignoring case")
+    void shouldSuggestMatchesInAlphabeticalOrder() {
+        user("Joseph", "Berlin");
+        user("john", "Paris");
+        user("Anna", "Rome");
+        user("Joanna", "Oslo");
+        user("JO", "Lima");
+
+        assertThat(repository.suggest("name", "jo", 10))
+            .extracting(u -> u.name.get()).containsExactly("JO", "Joanna", "john", "Joseph");
+        assertThat(repository.suggest("name", "JOH", 10))
+            .extracting(u -> u.name.get()).containsExactly("john");
+        assertThat(repository.suggest("name", "jo", 2)).hasSize(2);
+        assertThat(repository.suggest("name", "x", 10)).isEmpty();
+        assertThat(repository.suggest("name", "", 10)).hasSize(5);
+    }
+
+    @Test
+    @DisplayName("Should keep entities sharing a value and update on change and delete")
+    void shouldMaintainSuggestionsOnChangeAndDelete() {
+        User first = user("Jo", "Berlin");
+        User second = user("Jo", "Paris");
+        user("Jonas", "Rome");
+
+        first.name.set("Maria");
+        repository.save(first);
+        repository.deleteById(second.id.get());
+
+        assertThat(repository.suggest("name", "jo", 10))
+            .extracting(u -> u.name.get()).containsExactly("Jonas");
+        assertThat(repository.suggest("name", "ma", 10)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should compress single-child paths and prune removed branches")
+    void shouldCompressAndPruneTheTrie() {
+        PrefixIndex index = index();
+        index.onChange(1, null, row("romane"));
+        assertThat(index.nodeCount()).isEqualTo(2);
+
+        index.onChange(2, null, row("romanus"));
+        index.onChange(3, null, row("roman"));
+        // root, "roman" (holding 3), "e", "us"
+        assertThat(index.nodeCount()).isEqualTo(4);
+        assertThat(index.suggest("roma", 10)).containsExactly(3L, 1L, 2L);
+
+        index.onChange(3, row("roman"), null);
+        index.onChange(2, row("romanus"), null);
+        assertThat(index.nodeCount()).isEqualTo(2);
+        assertThat(index.suggest("rom", 10)).containsExactly(1L);
+
+        index.onChange(1, row("romane"), null);
+        assertThat(index.nodeCount()).isEqualTo(1);
+        assertThat(index.suggest("r", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should fall back to a scan for fields without a prefix index")
+    void shouldFallBackToScan() {
+        user("Jo", "Berlin");
+        user("Ann", "bern");
+        user("Bob", "Paris");
+
+        assertThat(repository.suggest("city", "BER", 10))
+            .extracting(u -> u.city.get()).containsExactly("Berlin", "bern");
+        assertThatThrownBy(() -> repository.suggest("age", "1", 10))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should narrow startsWith filters from the trie")
+    void shouldNarrowStartsWithFilters() {
+        user("Joseph", "Berlin");
+        user("joanna", "Paris");
+        user("Anna", "Rome");
+
+        assertThat(repository.find(Condition.startsWith("name", "Jo")))
+            .extracting(u -> u.name.get()).containsExactly("Joseph");
+    }
+}
@@ -0,0 +1,65 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Projection Unit Tests")
+class ProjectionTest {
+
+    static class User extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> email = field("email", String.class);
+        final Field<Integer> age = field("age", Integer.class);
+
+        public User() {
+            fields(name, email, age);
+        }
+    }
+
+    private Schema schema;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        schema = Schema.of(new User());
+        user = new User();
+        user.id.set(7L);
+        user.name.set("Jane \"J\" Doe");
+        user.age.set(41);
+    }
+
+    @Test
+    @DisplayName("Should write only the requested fields in request order")
+    void shouldWriteRequestedFieldsInOrder() {
+        assertThat(Projection.compile(schema, "name,id", false).toJson(user))
+            .isEqualTo("{\"name\":\"Jane \\\"J\\\" Doe\",\"id\":7}");
+        assertThat(Projection.compile(schema, " age , age,,", false).toJson(user)).isEqualTo("{\"age\":41}");
+        assertThat(Projection.compile(schema, "email", false).toJson(user)).isEqualTo("{\"email\":null}");
+    }
+
+    @Test
+    @DisplayName("Should omit null values when asked")
+    void shouldOmitNullValues() {
+        assertThat(Projection.compile(schema, "email", true).toJson(user)).isEqualTo("{}");
+        assertThat(Projection.compile(schema, null, true).toJson(user))
+            .contains("\"id\":7", "\"age\":41", "\"name\":").doesNotContain("email");
+        assertThat(Projection.compile(schema, null, false).toJson(user)).contains("\"email\":null");
+    }
+
+    @Test
+    @DisplayName("Should append into an existing buffer and reject unknown fields")
+    void shouldAppendAndRejectUnknownFields() {
+        StringBuilder json = new StringBuilder("[");
+        Projection projection = Projection.compile(schema, "id", false);
+        projection.write(user, json);
+        json.append(',');
+        projection.write(user, json);
+
+        assertThat(json.append(']').toString()).isEqualTo("[{\"id\":7},{\"id\":7}]");
+        assertThatThrownBy(() -> Projection.compile(schema, "id,password", false))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("password");
+    }
+}
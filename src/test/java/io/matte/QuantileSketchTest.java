@@ -0,0 +1,49 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("QuantileSketch Unit Tests")
+class QuantileSketchTest {
+
+    @Test
+    @DisplayName("Should answer quantiles within one percent relative error")
+    void shouldAnswerQuantiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (long value = -1_000; value <= 100_000; value++) {
+            sketch.add(value);
+        }
+
+        assertThat(sketch.count()).isEqualTo(101_001);
+        assertThat(sketch.quantile(0)).isCloseTo(-1_000L, withinPercentage(1));
+        assertThat(sketch.quantile(0.5)).isCloseTo(49_500L, withinPercentage(1));
+        assertThat(sketch.quantile(0.99)).isCloseTo(98_990L, withinPercentage(1));
+        assertThat(sketch.quantile(1)).isCloseTo(100_000L, withinPercentage(1));
+        // Small integers are exact
+        QuantileSketch small = new QuantileSketch();
+        for (long value : new long[] {0, 1, 2, 3, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            small.add(value);
+        }
+        assertThat(small.quantile(0.4)).isEqualTo(1L);
+        assertThat(small.quantile(0.6)).isEqualTo(2L);
+        assertThat(small.quantile(0)).isLessThan(0);
+    }
+
+    @Test
+    @DisplayName("Should take removed values out exactly")
+    void shouldRemoveValues() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertThat(sketch.quantile(0.5)).isNull();
+        for (long value = 1; value <= 1_000; value++) {
+            sketch.add(value);
+        }
+        for (long value = 501; value <= 1_000; value++) {
+            sketch.remove(value);
+        }
+
+        assertThat(sketch.quantile(1)).isCloseTo(500L, withinPercentage(1));
+        assertThat(sketch.quantile(0.5)).isCloseTo(250L, withinPercentage(1));
+    }
+}
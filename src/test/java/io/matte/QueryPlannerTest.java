@@ -0,0 +1,108 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("QueryPlanner Unit Tests")
+class QueryPlannerTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<Boolean> active = field("active", Boolean.class);
+        final Field<String> sku = field("sku", String.class);
+
+        public Product() {
+            fields(name, category, price, active, sku);
+            indexes(hashIndex(category), sortedIndex(price), bitmapIndex(active), uniqueIndex(sku));
+        }
+    }
+
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+        // 4 categories, prices 1..1000, 1 in 10 inactive
+        for (int i = 1; i <= 1_000; i++) {
+            Product product = new Product();
+            product.name.set("p" + i);
+            product.category.set("c" + (i % 4));
+            product.price.set(i);
+            product.active.set(i % 10 != 0);
+            product.sku.set("sku-" + i);
+            repository.save(product);
+        }
+    }
+
+    private String explain(Condition condition) {
+        return repository.explain(condition);
+    }
+
+    @Test
+    @DisplayName("Should pick the most selective index")
+    void shouldPickMostSelectiveIndex() {
+        String plan = explain(Condition.and(Condition.eq("category", "c1"), Condition.eq("sku", "sku-5")));
+
+        assertThat(plan).contains("\"access\":\"index\"", "\"index\":\"unique(sku)\"");
+        assertThat(plan).doesNotContain("hash(category)");
+        assertThat(repository.find(Condition.and(Condition.eq("category", "c1"), Condition.eq("sku", "sku-5"))))
+            .extracting(p -> p.price.get()).containsExactly(5);
+    }
+
+    @Test
+    @DisplayName("Should use a range index for narrow ranges and scan for wide ones")
+    void shouldChooseBetweenRangeIndexAndScan() {
+        assertThat(explain(Condition.between("price", 10, 20)))
+            .contains("\"index\":\"sorted(price)\"", "\"estimatedRows\":11");
+        assertThat(explain(Condition.gte("price", 50))).contains("\"access\":\"scan\"");
+        assertThat(repository.find(Condition.gte("price", 50))).hasSize(951);
+    }
+
+    @Test
+    @DisplayName("Should intersect indexes when that lowers the cost")
+    void shouldIntersectIndexesWhenCheaper() {
+        Condition condition = Condition.and(Condition.eq("category", "c2"), Condition.lt("price", 100));
+
+        String plan = explain(condition);
+
+        assertThat(plan).contains("sorted(price)", "hash(category)");
+        assertThat(repository.find(condition)).hasSize(25);
+    }
+
+    @Test
+    @DisplayName("Should answer bitmap-covered filters exactly")
+    void shouldAnswerBitmapCoveredFiltersExactly() {
+        String plan = explain(Condition.not(Condition.eq("active", true)));
+
+        assertThat(plan).contains("\"access\":\"bitmap\"", "\"estimatedRows\":100");
+        assertThat(repository.count(Condition.not(Condition.eq("active", true)))).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("Should follow statistics as data changes")
+    void shouldFollowStatisticsAsDataChanges() {
+        for (Product product : repository.find(Condition.eq("category", "c3"))) {
+            product.category.set("c0");
+            repository.save(product);
+        }
+
+        assertThat(explain(Condition.eq("category", "c0"))).contains("\"estimatedRows\":500");
+        assertThat(explain(Condition.eq("category", "c3"))).contains("\"estimatedRows\":0");
+    }
+
+    @Test
+    @DisplayName("Should explain full scans and repositories without indexes")
+    void shouldExplainScans() {
+        Repository<RepositoryTest.TestEntity> plain = new Repository<>("plain");
+
+        assertThat(explain(null)).contains("\"filter\":null", "\"access\":\"scan\"", "\"rows\":1000");
+        assertThat(plain.explain(Condition.eq("name", "x"))).contains("\"access\":\"scan\"", "\"rows\":0");
+        plain.save(new RepositoryTest.TestEntity());
+        assertThat(plain.explain(Condition.eq("name", "x"))).contains("\"filter\":\"name = x\"", "\"steps\":[]");
+    }
+}
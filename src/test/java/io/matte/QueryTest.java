@@ -0,0 +1,136 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Query Unit Tests")
+class QueryTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+
+        public Product() {
+            fields(name, category, price);
+            indexes(bitmapIndex(category), sortedIndex(price));
+        }
+    }
+
+    private final Product p = new Product();
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+        product("Mug", "Kitchen", 12);
+        product("Pan", "Kitchen", 40);
+        product("Rake", "Garden", 25);
+        product("Lamp", "Office", null);
+        product("Bowl", "Kitchen", 8);
+    }
+
+    private void product(String name, String category, Integer price) {
+        Product product = new Product();
+        product.name.set(name);
+        product.category.set(category);
+        product.price.set(price);
+        repository.save(product);
+    }
+
+    private static String names(List<Product> products) {
+        return products.stream().map(product -> product.name.get()).collect(Collectors.joining(","));
+    }
+
+    private static String sortedNames(List<Product> products) {
+        return names(products.stream().sorted(Comparator.comparing(product -> product.id.get())).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Should combine typed conditions with and")
+    void shouldCombineConditions() {
+        assertThat(sortedNames(repository.query().where(p.price).between(10, 30).list())).isEqualTo("Mug,Rake");
+        assertThat(sortedNames(repository.query().where(p.category).eq("Kitchen").where(p.price).gt(10).list()))
+            .isEqualTo("Mug,Pan");
+        assertThat(sortedNames(repository.query().where(p.category).in("Garden", "Office").list())).isEqualTo("Rake,Lamp");
+        assertThat(sortedNames(repository.query().where(p.price).isNull().list())).isEqualTo("Lamp");
+        assertThat(sortedNames(repository.query().where(p.name).startsWith("B").list())).isEqualTo("Bowl");
+        assertThat(repository.query().list()).hasSize(5);
+    }
+
+    @Test
+    @DisplayName("Should order by a field and apply the limit")
+    void shouldOrderAndLimit() {
+        assertThat(names(repository.query().where(p.price).between(10, 100).orderBy(p.price).limit(2).list()))
+            .isEqualTo("Mug,Rake");
+        assertThat(names(repository.query().where(p.category).eq("Kitchen").orderByDescending(p.price).list()))
+            .isEqualTo("Pan,Mug,Bowl");
+        assertThat(names(repository.query().orderBy(p.name).limit(3).list())).isEqualTo("Bowl,Lamp,Mug");
+        assertThat(repository.query().orderBy(p.price).first()).map(product -> product.name.get()).contains("Bowl");
+        assertThatThrownBy(() -> repository.query().limit(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should answer count and exists without listing")
+    void shouldCountAndCheckExistence() {
+        assertThat(repository.query().where(p.category).eq("Kitchen").count()).isEqualTo(3);
+        assertThat(repository.query().where(p.category).ne("Kitchen").count()).isEqualTo(2);
+        assertThat(repository.query().where(p.category).eq("Kitchen").limit(2).count()).isEqualTo(2);
+        assertThat(repository.query().count()).isEqualTo(5);
+        assertThat(repository.query().where(p.price).gt(30).exists()).isTrue();
+        assertThat(repository.query().where(p.price).gt(100).exists()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should stream lazily and rerun against current contents")
+    void shouldStreamLazily() {
+        Query<Product> kitchen = repository.query().where(p.category).eq("Kitchen");
+        assertThat(kitchen.stream().map(product -> product.name.get()).filter(name -> name.startsWith("P")).findFirst())
+            .contains("Pan");
+
+        product("Whisk", "Kitchen", 5);
+        assertThat(kitchen.count()).isEqualTo(4);
+        assertThat(names(kitchen.orderBy(p.price).limit(1).list())).isEqualTo("Whisk");
+    }
+
+    @Test
+    @DisplayName("Should page with after and skip")
+    void shouldPageWithAfterAndSkip() {
+        List<Product> first = repository.query().orderBy(p.price).limit(2).list();
+        List<Product> second = repository.query().orderBy(p.price).after(first.get(1)).limit(2).list();
+        List<Product> byId = repository.query().after(first.get(1)).list();
+
+        assertThat(names(first)).isEqualTo("Bowl,Mug");
+        assertThat(names(second)).isEqualTo("Rake,Pan");
+        assertThat(names(byId)).isEqualTo("Pan,Rake,Lamp,Bowl");
+        assertThat(names(repository.query().where(p.category).eq("Kitchen").skip(1).list()))
+            .isEqualTo("Pan,Bowl");
+        assertThat(repository.query().skip(4).count()).isEqualTo(1);
+        assertThat(repository.query().orderBy(p.price).after(second.get(1)).count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should order by several fields and page through them")
+    void shouldOrderBySeveralFields() {
+        product("Spoon", "Kitchen", 12);
+
+        Query<Product> query = repository.query().orderBy(p.category).thenByDescending(p.price);
+        List<Product> first = query.limit(3).list();
+        List<Product> rest = repository.query().orderBy(p.category).thenByDescending(p.price).after(first.get(2)).list();
+
+        assertThat(names(first)).isEqualTo("Rake,Pan,Mug");
+        assertThat(names(rest)).isEqualTo("Spoon,Bowl,Lamp");
+        assertThat(names(repository.query().orderByDescending(p.price).thenBy(p.name).limit(4).list()))
+            .isEqualTo("Lamp,Pan,Rake,Mug");
+        Product mug = repository.findBy("name", "Mug").get(0);
+        assertThat(names(repository.query().orderByDescending(p.price).thenBy(p.name).after(mug).list()))
+            .isEqualTo("Spoon,Bowl");
+    }
+}
@@ -0,0 +1,93 @@
+package io.matte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures Repository throughput under contention. Not part of the test suite;
+ * run it manually after {@code mvn test-compile}:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes io.matte.RepositoryContentionBenchmark [entities] [millisPerRun]
+ * </pre>
+ */
+public class RepositoryContentionBenchmark {
+
+    static class Item extends Entity {
+        final Field<String> name = field("name", String.class);
+
+        Item() {
+            fields(name);
+        }
+    }
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws InterruptedException {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2_000;
+
+        Repository<Item> repository = new Repository<>("items");
+        List<Item> items = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++) {
+            Item item = new Item();
+            item.name.set("item-" + i);
+            repository.save(item);
+            items.add(item);
+        }
+
+        System.out.printf("Repository contention benchmark: %,d entities, %d ms per run, %d cores%n",
+            entities, millis, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %20s %20s%n", "threads", "findById ops/s", "save ops/s");
+
+        // Warm up both paths before measuring
+        run(4, millis, () -> repository.findById(randomId(entities)));
+        run(4, millis, () -> repository.save(items.get((int) randomId(entities) - 1)));
+
+        for (int threads : THREAD_COUNTS) {
+            double reads = run(threads, millis, () -> repository.findById(randomId(entities)));
+            double writes = run(threads, millis, () -> repository.save(items.get((int) randomId(entities) - 1)));
+            System.out.printf("%8d %20.0f %20.0f%n", threads, reads, writes);
+        }
+    }
+
+    private static long randomId(int entities) {
+        return (long) ThreadLocalRandom.current().nextInt(entities) + 1;
+    }
+
+    private static double run(int threads, long millis, Runnable operation) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        List<Thread> workers = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                while ((done & 1023) != 0 || System.nanoTime() < deadline) {
+                    operation.run();
+                    done++;
+                }
+                operations.add(done);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return operations.sum() / seconds;
+    }
+}
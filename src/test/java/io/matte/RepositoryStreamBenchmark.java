@@ -0,0 +1,69 @@
+package io.matte;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Compares full scans over a Repository: findAll() followed by a loop, stream()
+ * and parallelStream(), for each storage backend. Not part of the test suite;
+ * run it manually after {@code mvn test-compile}:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes io.matte.RepositoryStreamBenchmark [entities] [runs]
+ * </pre>
+ */
+public class RepositoryStreamBenchmark {
+
+    static class Item extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+
+        Item() {
+            fields(name, price);
+        }
+    }
+
+    public static void main(String[] args) {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("Repository scan benchmark: %,d entities, best of %d runs, %d cores%n",
+            entities, runs, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-12s %16s %16s %16s%n", "store", "findAll ms", "stream ms", "parallel ms");
+
+        benchmark("heap", new Repository<>("items", Item::new, new HeapEntityStore<>()), entities, runs);
+        benchmark("columnar", new Repository<>("items", Item::new, new ColumnarEntityStore<>(Item::new)), entities, runs);
+        benchmark("off-heap", new Repository<>("items", Item::new, new OffHeapEntityStore<>(Item::new)), entities, runs);
+    }
+
+    private static void benchmark(String label, Repository<Item> repository, int entities, int runs) {
+        for (int i = 0; i < entities; i++) {
+            Item item = new Item();
+            item.name.set("item-" + i);
+            item.price.set(i % 1_000);
+            repository.save(item);
+        }
+        double copied = best(runs, () -> {
+            long sum = 0;
+            for (Item item : repository.findAll()) {
+                sum += item.price.get();
+            }
+            return sum;
+        });
+        double sequential = best(runs, () -> repository.stream().mapToLong(item -> item.price.get()).sum());
+        double parallel = best(runs, () -> repository.parallelStream().mapToLong(item -> item.price.get()).sum());
+        System.out.printf("%-12s %16.1f %16.1f %16.1f%n", label, copied, sequential, parallel);
+    }
+
+    private static double best(int runs, LongSupplier scan) {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            checksum += scan.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // Keeps the scans from being optimized away
+        if (checksum == Long.MIN_VALUE) System.out.println(checksum);
+        return best / 1e6;
+    }
+}
@@ -5,6 +5,13 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.BeforeEach;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -207,4 +214,86 @@ class RepositoryTest {
         assertThat(id1).isEqualTo(id2);
         assertThat(repository.count()).isEqualTo(1);
     }
+
+    @Test
+    @DisplayName("Should handle concurrent saves and deletes from many threads")
+    void shouldHandleConcurrentSavesAndDeletesFromManyThreads() throws InterruptedException {
+        int threads = 8;
+        int perThread = 2_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    TestEntity entity = new TestEntity();
+                    repository.save(entity);
+                    ids.add(entity.id.get());
+                    if (i % 2 == 0) {
+                        repository.deleteById(entity.id.get());
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(ids).hasSize(threads * perThread);
+        assertThat(repository.count()).isEqualTo(threads * perThread / 2);
+        assertThat(repository.findAll()).hasSize(threads * perThread / 2);
+    }
+
+    @Test
+    @DisplayName("Should not miss writes racing with listener registration")
+    void shouldNotMissWritesRacingWithListenerRegistration() throws InterruptedException {
+        TestEntity prototype = new TestEntity();
+        prototype.name.set("x");
+        repository.save(prototype);
+        int threads = 4;
+        int perThread = 5_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    TestEntity entity = new TestEntity();
+                    entity.name.set("x");
+                    repository.save(entity);
+                    if (i % 2 == 0) {
+                        repository.deleteById(entity.id.get());
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        Thread.sleep(5);
+        MaterializedView view = repository.materialize("all", ViewDefinition.groupBy(prototype.name).count());
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(view.count("x")).isEqualTo(repository.count());
+    }
+
+    @Test
+    @DisplayName("Should stream all entities sequentially and in parallel")
+    void shouldStreamAllEntities() {
+        for (int i = 0; i < 5_000; i++) {
+            TestEntity entity = new TestEntity();
+            entity.name.set(i % 2 == 0 ? "even" : "odd");
+            repository.save(entity);
+        }
+        repository.deleteById(1L);
+
+        assertThat(repository.stream().filter(e -> e.name.get().equals("even")).count()).isEqualTo(2_499);
+        assertThat(repository.parallelStream().isParallel()).isTrue();
+        assertThat(repository.parallelStream().map(e -> e.id.get()).collect(Collectors.toSet()))
+            .hasSize(4_999).doesNotContain(1L);
+    }
 }
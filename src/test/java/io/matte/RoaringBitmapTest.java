@@ -0,0 +1,110 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("RoaringBitmap Unit Tests")
+class RoaringBitmapTest {
+
+    private static long[] toArray(TreeSet<Long> set) {
+        return set.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Test
+    @DisplayName("Should add, remove and test ids including negative ones")
+    void shouldAddRemoveAndContainIds() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+
+        assertThat(bitmap.add(5)).isTrue();
+        assertThat(bitmap.add(5)).isFalse();
+        bitmap.add(-3);
+        bitmap.add(1L << 40);
+        bitmap.add(70_000);
+
+        assertThat(bitmap.toArray()).containsExactly(-3L, 5L, 70_000L, 1L << 40);
+        assertThat(bitmap.contains(70_000)).isTrue();
+        assertThat(bitmap.contains(70_001)).isFalse();
+        assertThat(bitmap.remove(5)).isTrue();
+        assertThat(bitmap.remove(5)).isFalse();
+        assertThat(bitmap.cardinality()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should switch between array and bitset containers")
+    void shouldSwitchContainerRepresentations() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (long id = 0; id < 10_000; id++) {
+            bitmap.add(id);
+        }
+        long dense = bitmap.sizeInBytes();
+        for (long id = 0; id < 10_000; id += 2) {
+            bitmap.remove(id);
+        }
+        for (long id = 1; id < 9_000; id += 2) {
+            bitmap.remove(id);
+        }
+
+        assertThat(dense).isLessThan(10_000L * 2);
+        assertThat(bitmap.cardinality()).isEqualTo(500);
+        assertThat(bitmap.sizeInBytes()).isLessThan(dense);
+        assertThat(bitmap.toArray()).startsWith(9_001L, 9_003L).endsWith(9_999L);
+    }
+
+    @Test
+    @DisplayName("Should match set semantics for and, or and andNot")
+    void shouldMatchSetSemantics() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            RoaringBitmap a = new RoaringBitmap();
+            RoaringBitmap b = new RoaringBitmap();
+            TreeSet<Long> x = new TreeSet<>();
+            TreeSet<Long> y = new TreeSet<>();
+            // Mix sparse and dense regions so every container pairing occurs
+            int bound = round % 2 == 0 ? 200_000 : 20_000;
+            for (int i = 0; i < 15_000; i++) {
+                long p = random.nextInt(bound) - 1_000;
+                long q = random.nextInt(bound / 4);
+                a.add(p);
+                x.add(p);
+                b.add(q);
+                y.add(q);
+            }
+
+            TreeSet<Long> and = new TreeSet<>(x);
+            and.retainAll(y);
+            TreeSet<Long> or = new TreeSet<>(x);
+            or.addAll(y);
+            TreeSet<Long> andNot = new TreeSet<>(x);
+            andNot.removeAll(y);
+
+            assertThat(a.and(b).toArray()).containsExactly(toArray(and));
+            assertThat(a.or(b).toArray()).containsExactly(toArray(or));
+            assertThat(a.andNot(b).toArray()).containsExactly(toArray(andNot));
+            assertThat(a.and(b).cardinality()).isEqualTo(and.size());
+            assertThat(a.andCardinality(b)).isEqualTo(and.size());
+            assertThat(b.andCardinality(a)).isEqualTo(and.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Should leave operands unchanged and copy independently")
+    void shouldLeaveOperandsUnchanged() {
+        RoaringBitmap a = RoaringBitmap.of(1, 2, 3);
+        RoaringBitmap b = RoaringBitmap.of(3, 4);
+
+        RoaringBitmap union = a.or(b);
+        union.add(99);
+        RoaringBitmap copy = a.copy();
+        copy.remove(1);
+
+        assertThat(a.toArray()).containsExactly(1L, 2L, 3L);
+        assertThat(b.toArray()).containsExactly(3L, 4L);
+        assertThat(copy.toArray()).containsExactly(2L, 3L);
+        assertThat(a.andNot(a).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,72 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Sketches Unit Tests")
+class SketchesTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> category = field("category", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+
+        public Product() {
+            fields(name, category, price);
+            sketches(category, price);
+        }
+    }
+
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+    }
+
+    private Product product(String category, Integer price) {
+        Product product = new Product();
+        product.category.set(category);
+        product.price.set(price);
+        return repository.save(product);
+    }
+
+    @Test
+    @DisplayName("Should sketch declared fields from existing and later writes")
+    void shouldSketchDeclaredFields() {
+        product("Kitchen", 10);
+        product("Kitchen", 10);
+        product("Garden", 30);
+        product(null, null);
+
+        assertThat(repository.sketches().toJson(List.of(), new double[] {0, 1}, 2)).isEqualTo(
+            "{\"count\":4,\"fields\":{"
+                + "\"category\":{\"nulls\":1,\"distinct\":2,\"top\":[{\"value\":\"Kitchen\",\"count\":2},{\"value\":\"Garden\",\"count\":1}]},"
+                + "\"price\":{\"nulls\":1,\"distinct\":2,\"quantiles\":{\"p0\":10,\"p100\":30},"
+                + "\"top\":[{\"value\":10,\"count\":2},{\"value\":30,\"count\":1}]}}}");
+        assertThat(repository.sketches().contains("category")).isTrue();
+        assertThat(repository.sketches().contains("name")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should move values on update and remove them on delete")
+    void shouldFollowUpdatesAndDeletes() {
+        Product mug = product("Kitchen", 10);
+        Product rake = product("Garden", 30);
+        mug.category.set("Garden");
+        mug.price.set(35);
+        repository.save(mug);
+        repository.deleteById(rake.id.get());
+
+        assertThat(repository.sketches().toJson(List.of(), new double[] {0.5, 0.999}, 5)).isEqualTo(
+            "{\"count\":1,\"fields\":{"
+                + "\"category\":{\"nulls\":0,\"distinct\":1,\"top\":[{\"value\":\"Garden\",\"count\":1}]},"
+                + "\"price\":{\"nulls\":0,\"distinct\":1,\"quantiles\":{\"p50\":35,\"p99.9\":35},"
+                + "\"top\":[{\"value\":35,\"count\":1}]}}}");
+    }
+}
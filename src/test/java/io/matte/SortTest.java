@@ -0,0 +1,97 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Sort Unit Tests")
+class SortTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<Long> stock = field("stock", Long.class);
+
+        public Product() {
+            fields(name, price, stock);
+        }
+    }
+
+    private Schema schema;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        schema = Schema.of(new Product());
+        products = new ArrayList<>();
+        Random random = new Random(42);
+        for (long id = 1; id <= 2_000; id++) {
+            Product product = new Product();
+            product.id.set(id);
+            product.name.set(random.nextInt(10) == 0 ? null : "n" + random.nextInt(50));
+            product.price.set(random.nextInt(10) == 0 ? null : random.nextInt(100) - 50);
+            product.stock.set((long) random.nextInt(5));
+            products.add(product);
+        }
+    }
+
+    private static List<Long> ids(List<Product> products) {
+        return products.stream().map(p -> p.id.get()).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Should parse sort specs and order by each field with nulls last")
+    void shouldParseAndOrder() {
+        Sort sort = Sort.parse(schema, "price, -name");
+        assertThat(sort.toString()).isEqualTo("price,-name");
+        assertThat(sort.size()).isEqualTo(2);
+        assertThat(Sort.parse(schema, "-id,price").toString()).isEqualTo("-id");
+
+        Product cheap = products.get(0);
+        Product none = products.get(1);
+        cheap.price.set(-100);
+        none.price.set(null);
+        assertThat(sort.compare(cheap, none)).isNegative();
+        assertThat(Sort.parse(schema, "-price").compare(cheap, none)).isPositive();
+        assertThatThrownBy(() -> Sort.parse(schema, "weight")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Sort.parse(schema, " , ")).hasMessageContaining("Missing sort field");
+    }
+
+    @Test
+    @DisplayName("Should select the same top-K as a full sort")
+    void shouldSelectTopK() {
+        for (String spec : new String[] {"price", "-price,name", "name,-stock", "-stock,-price", "-name"}) {
+            Sort sort = Sort.parse(schema, spec);
+            List<Product> sorted = new ArrayList<>(products);
+            sorted.sort(sort::compare);
+            for (int k : new int[] {0, 1, 10, 500, 5_000}) {
+                assertThat(ids(sort.top(products.stream(), k)))
+                    .as(spec + " top " + k)
+                    .isEqualTo(ids(sorted.subList(0, Math.min(k, sorted.size()))));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should resort runs that tie on the first field")
+    void shouldRegroupTies() {
+        Sort byStock = Sort.parse(schema, "stock");
+        Sort sort = Sort.parse(schema, "stock,-price");
+        List<Product> byFirst = new ArrayList<>(products);
+        byFirst.sort(byStock::compare);
+        List<Product> expected = new ArrayList<>(products);
+        expected.sort(sort::compare);
+
+        assertThat(ids(sort.regroup(byFirst.stream()).collect(Collectors.toList()))).isEqualTo(ids(expected));
+        Product last = expected.get(999);
+        assertThat(ids(expected.stream().filter(p -> sort.compareTo(p, sort.key(last), last.id.get()) > 0)
+            .collect(Collectors.toList()))).isEqualTo(ids(expected.subList(1_000, 2_000)));
+    }
+}
@@ -0,0 +1,164 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("SortedIndex Unit Tests")
+class SortedIndexTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<Integer> price = field("price", Integer.class);
+        final Field<String> category = field("category", String.class);
+
+        public Product() {
+            fields(name, price, category);
+            indexes(sortedIndex(price), sortedIndex(name));
+        }
+    }
+
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+    }
+
+    private Product product(String name, Integer price, String category) {
+        Product product = new Product();
+        product.name.set(name);
+        product.price.set(price);
+        product.category.set(category);
+        return repository.save(product);
+    }
+
+    private static List<String> names(List<Product> products) {
+        return products.stream().map(p -> p.name.get()).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Should answer inclusive and exclusive range queries")
+    void shouldAnswerRangeQueries() {
+        product("a", 5, "x");
+        product("b", 10, "x");
+        product("c", 50, "x");
+        product("d", 100, "x");
+        product("e", 150, "x");
+
+        assertThat(names(repository.find(Condition.range("price", 10, true, 100, false))))
+            .containsExactlyInAnyOrder("b", "c");
+        assertThat(names(repository.find(Condition.gt("price", 10)))).containsExactlyInAnyOrder("c", "d", "e");
+        assertThat(names(repository.find(Condition.lte("price", 10)))).containsExactlyInAnyOrder("a", "b");
+        assertThat(names(repository.find(Condition.between("price", "50", "100")))).containsExactlyInAnyOrder("c", "d");
+        assertThat(repository.find(Condition.range("price", 100, true, 10, true))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should keep the index in step with updates and deletes")
+    void shouldKeepIndexInStepWithUpdatesAndDeletes() {
+        Product mug = product("mug", 15, "kitchen");
+        Product lamp = product("lamp", 40, "home");
+
+        mug.price.set(45);
+        repository.save(mug);
+        repository.deleteById(lamp.id.get());
+
+        assertThat(repository.find(Condition.lt("price", 20))).isEmpty();
+        assertThat(repository.find(Condition.gte("price", 40))).containsExactly(mug);
+    }
+
+    @Test
+    @DisplayName("Should iterate in field order with nulls last")
+    void shouldIterateInFieldOrderWithNullsLast() {
+        product("b", 20, "x");
+        product("a", null, "x");
+        product("c", 10, "x");
+        product("d", 30, "x");
+
+        assertThat(names(repository.findOrderedBy("price", false, null, 10))).containsExactly("c", "b", "d", "a");
+        assertThat(names(repository.findOrderedBy("price", true, null, 2))).containsExactly("a", "d");
+        assertThat(names(repository.findOrderedBy("price", false, Condition.gte("price", 15), 10)))
+            .containsExactly("b", "d");
+    }
+
+    @Test
+    @DisplayName("Should order string fields and combine with other conditions")
+    void shouldOrderStringFieldsAndCombineWithOtherConditions() {
+        product("pear", 3, "fruit");
+        product("apple", 2, "fruit");
+        product("kale", 4, "vegetable");
+        product("banana", 1, "fruit");
+
+        List<Product> fruit = repository.findOrderedBy("name", false, Condition.eq("category", "fruit"), 10);
+        List<Product> cheapFruit = repository.find(
+            Condition.and(Condition.lt("price", 3), Condition.eq("category", "fruit")));
+
+        assertThat(names(fruit)).containsExactly("apple", "banana", "pear");
+        assertThat(names(cheapFruit)).containsExactlyInAnyOrder("apple", "banana");
+    }
+
+    @Test
+    @DisplayName("Should sort by unindexed fields with a scan")
+    void shouldSortByUnindexedFieldsWithScan() {
+        product("a", 1, "z");
+        product("b", 2, "y");
+        product("c", 3, null);
+
+        assertThat(names(repository.findOrderedBy("category", false, null, 10))).containsExactly("b", "a", "c");
+        assertThat(names(repository.findOrderedBy("category", true, null, 1))).containsExactly("c");
+    }
+
+    @Test
+    @DisplayName("Should reject sorted indexes on non-comparable fields")
+    void shouldRejectSortedIndexesOnNonComparableFields() {
+        class Blob extends Entity {
+            final Field<Object> payload = field("payload", Object.class);
+
+            Blob() {
+                fields(payload);
+                indexes(sortedIndex(payload));
+            }
+        }
+
+        assertThatThrownBy(() -> new Repository<>("blobs", Blob::new, new HeapEntityStore<>()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("payload");
+    }
+
+    @Test
+    @DisplayName("Should resume ordered iteration after a keyset cursor")
+    void shouldResumeAfterKeysetCursor() {
+        product("a", 10, "x");
+        product("b", 20, "x");
+        product("c", 20, "x");
+        product("d", 30, "x");
+        product("e", null, "x");
+        Schema schema = repository.schema();
+        SortedIndex index = new SortedIndex(schema, "price");
+        repository.findAll().forEach(p -> index.onChange(p.id.get(), null, schema.snapshot(p)));
+
+        // Ties on price resume by id: b is 2, c is 3
+        assertThat(ids(index.ids(null, false, 20, 2L))).containsExactly(3L, 4L, 5L);
+        assertThat(ids(index.ids(null, true, 20, 3L))).containsExactly(2L, 1L);
+        assertThat(ids(index.ids(null, true, null, 5L))).containsExactly(4L, 3L, 2L, 1L);
+        assertThat(ids(index.ids(null, false, 5, 9L))).containsExactly(1L, 2L, 3L, 4L, 5L);
+        Condition.Range range = new Condition.Range("price", 15, true, 30, false);
+        assertThat(ids(index.ids(range, false, 10, 1L))).containsExactly(2L, 3L);
+        assertThat(ids(index.ids(range, false, 20, 3L))).isEmpty();
+        assertThat(ids(index.ids(range, true, 40, 1L))).containsExactly(3L, 2L);
+    }
+
+    private static List<Long> ids(PrimitiveIterator.OfLong iterator) {
+        List<Long> ids = new ArrayList<>();
+        iterator.forEachRemaining((long id) -> ids.add(id));
+        return ids;
+    }
+}
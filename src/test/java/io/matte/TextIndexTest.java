@@ -0,0 +1,132 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("TextIndex Unit Tests")
+class TextIndexTest {
+
+    static class Product extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> description = field("description", String.class);
+        final Field<String> category = field("category", String.class);
+
+        public Product() {
+            fields(name, description, category);
+            indexes(textIndex(name, description));
+        }
+    }
+
+    private Repository<Product> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("products", Product::new, new HeapEntityStore<>());
+    }
+
+    private Product product(String name, String description, String category) {
+        Product product = new Product();
+        product.name.set(name);
+        product.description.set(description);
+        product.category.set(category);
+        return repository.save(product);
+    }
+
+    private static List<String> names(List<Product> products) {
+        return products.stream().map(p -> p.name.get()).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Should tokenize on non-alphanumeric characters and lower-case")
+    void shouldTokenizeText() {
+        assertThat(TextIndex.tokenize("Hello, World! Coffee-Mug 2000"))
+            .containsExactly("hello", "world", "coffee", "mug", "2000");
+        assertThat(TextIndex.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should rank documents by BM25 relevance")
+    void shouldRankDocumentsByRelevance() {
+        product("Coffee Mug", "A mug for coffee lovers, coffee coffee", "Kitchen");
+        product("Tea Cup", "Porcelain cup for tea", "Kitchen");
+        product("Travel Mug", "Keeps drinks warm", "Outdoor");
+        product("Laptop", "Fast laptop with a coffee-proof keyboard and a very long description of many features", "Electronics");
+
+        List<Product> coffee = repository.search("coffee", null, 10);
+        List<Product> mug = repository.search("MUG", null, 10);
+
+        assertThat(names(coffee)).containsExactly("Coffee Mug", "Laptop");
+        assertThat(names(mug)).containsExactlyInAnyOrder("Coffee Mug", "Travel Mug");
+        assertThat(names(repository.search("coffee mug", null, 1))).containsExactly("Coffee Mug");
+        assertThat(repository.search("unknown", null, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should update postings when text changes or entities are deleted")
+    void shouldUpdatePostingsIncrementally() {
+        Product mug = product("Coffee Mug", null, "Kitchen");
+        Product cup = product("Tea Cup", null, "Kitchen");
+
+        mug.name.set("Espresso Cup");
+        repository.save(mug);
+        repository.deleteById(cup.id.get());
+
+        assertThat(repository.search("coffee", null, 10)).isEmpty();
+        assertThat(repository.search("tea", null, 10)).isEmpty();
+        assertThat(names(repository.search("cup", null, 10))).containsExactly("Espresso Cup");
+    }
+
+    @Test
+    @DisplayName("Should combine search with filters and respect the limit")
+    void shouldCombineSearchWithFiltersAndLimit() {
+        for (int i = 0; i < 200; i++) {
+            product("Mug " + i, "ceramic mug", i % 2 == 0 ? "Kitchen" : "Office");
+        }
+
+        List<Product> kitchen = repository.search("mug", Condition.eq("category", "Kitchen"), 5);
+
+        assertThat(kitchen).hasSize(5).allMatch(p -> p.category.get().equals("Kitchen"));
+    }
+
+    @Test
+    @DisplayName("Should keep compressed posting lists correct across compaction")
+    void shouldKeepPostingListsCorrectAcrossCompaction() {
+        PostingList list = new PostingList();
+        for (long id = 1; id <= 1_000; id++) {
+            list.add(id, (int) (id % 7) + 1);
+        }
+        for (long id = 1; id <= 1_000; id += 3) {
+            list.remove(id);
+        }
+        list.add(5_000L, 2);
+        list.add(-4L, 1);
+
+        long[] ids = list.toSortedIds();
+        int[] frequencies = new int[1];
+        list.forEach((id, tf) -> {
+            if (id == 500) frequencies[0] = tf;
+        });
+
+        assertThat(list.size()).isEqualTo(1_000 - 334 + 2);
+        assertThat(ids).startsWith(-4L, 2L, 3L, 5L).endsWith(999L, 5_000L);
+        assertThat(frequencies[0]).isEqualTo(500 % 7 + 1);
+        assertThat(list.encodedBytes()).isLessThan(1_000 * 3);
+    }
+
+    @Test
+    @DisplayName("Should fail search on resources without a text index")
+    void shouldFailSearchWithoutTextIndex() {
+        Repository<RepositoryTest.TestEntity> plain = new Repository<>("plain");
+        plain.save(new RepositoryTest.TestEntity());
+
+        assertThatThrownBy(() -> plain.search("x", null, 10))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("No text index");
+    }
+}
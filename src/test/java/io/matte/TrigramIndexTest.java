@@ -0,0 +1,135 @@
+package io.matte;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("TrigramIndex Unit Tests")
+class TrigramIndexTest {
+
+    static class User extends Entity {
+        final Field<String> name = field("name", String.class);
+        final Field<String> email = field("email", String.class);
+        final Field<Integer> age = field("age", Integer.class);
+
+        public User() {
+            fields(name, email, age);
+            indexes(trigramIndex(email));
+        }
+    }
+
+    private Repository<User> repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new Repository<>("users", User::new, new HeapEntityStore<>());
+    }
+
+    private User user(String name, String email) {
+        User user = new User();
+        user.name.set(name);
+        user.email.set(email);
+        return repository.save(user);
+    }
+
+    private TrigramIndex index() {
+        return (TrigramIndex) IndexDefinition.trigram(new User().email).create(repository.schema());
+    }
+
+    private Object[] row(String email) {
+        User user = new User();
+        user.email.set(email);
+        return repository.schema().snapshot(user);
+    }
+
+    @Test
+    @DisplayName("Should find entities by substring, prefix and suffix")
+    void shouldFindEntitiesBySubstringPrefixAndSuffix() {
+        user("Alice", "alice@example.com");
+        user("Bob", "bob@example.org");
+        user("Carol", "carol@sample.com");
+
+        assertThat(repository.find(Condition.endsWith("email", "@example.com")))
+            .extracting(u -> u.name.get()).containsExactly("Alice");
+        assertThat(repository.find(Condition.contains("email", "ample")))
+            .extracting(u -> u.name.get()).containsExactly("Alice", "Bob", "Carol");
+        assertThat(repository.find(Condition.startsWith("email", "bo")))
+            .extracting(u -> u.name.get()).containsExactly("Bob");
+        assertThat(repository.find(Condition.contains("email", "nowhere"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should verify candidates whose trigrams match but text does not")
+    void shouldVerifyCandidates() {
+        user("Alice", "abcXbcd");
+
+        // Every trigram of "abcd" occurs in the value, but not contiguously
+        assertThat(repository.find(Condition.contains("email", "abcd"))).isEmpty();
+        assertThat(repository.find(Condition.contains("email", "bcd"))).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should narrow candidates using anchored trigrams")
+    void shouldNarrowCandidatesUsingAnchoredTrigrams() {
+        TrigramIndex index = index();
+        index.onChange(1, null, row("ann@example.com"));
+        index.onChange(2, null, row("example.com@other.org"));
+        index.onChange(3, null, row("bo"));
+
+        assertThat(index.lookup(Condition.endsWith("email", ".com"))).containsExactly(1L);
+        assertThat(index.lookup(Condition.startsWith("email", "ex"))).containsExactly(2L);
+        assertThat(index.lookup(Condition.contains("email", "example"))).containsExactly(1L, 2L);
+        assertThat(index.lookup(Condition.endsWith("email", "bo"))).containsExactly(3L);
+        // Too short for a single trigram: left to a scan
+        assertThat(index.lookup(Condition.contains("email", "ex"))).isNull();
+    }
+
+    @Test
+    @DisplayName("Should update trigrams when values change or entities are deleted")
+    void shouldUpdateTrigramsOnChangeAndDelete() {
+        User alice = user("Alice", "alice@example.com");
+        User bob = user("Bob", "bob@example.com");
+
+        alice.email.set("alice@other.org");
+        repository.save(alice);
+        repository.deleteById(bob.id.get());
+
+        assertThat(repository.find(Condition.contains("email", "example"))).isEmpty();
+        assertThat(repository.find(Condition.endsWith("email", "other.org"))).hasSize(1);
+
+        TrigramIndex index = index();
+        index.onChange(1, null, row("abcd"));
+        index.onChange(1, row("abcd"), null);
+        assertThat(index.trigramCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should combine substring filters with other conditions")
+    void shouldCombineSubstringFiltersWithOtherConditions() {
+        User alice = user("Alice", "alice@example.com");
+        alice.age.set(30);
+        repository.save(alice);
+        user("Alex", "alex@example.com");
+
+        List<User> result = repository.find(Condition.and(
+            Condition.endsWith("email", "@example.com"), Condition.eq("age", "30")));
+
+        assertThat(result).extracting(u -> u.name.get()).containsExactly("Alice");
+    }
+
+    @Test
+    @DisplayName("Should reject substring filters on non-String fields")
+    void shouldRejectSubstringFiltersOnNonStringFields() {
+        user("Alice", "alice@example.com");
+
+        assertThatThrownBy(() -> repository.find(Condition.contains("age", "3")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("does not support substring filters");
+        assertThatThrownBy(() -> IndexDefinition.trigram(new User().age).create(repository.schema()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}